@@ -33,6 +33,17 @@ public interface CryptoProvider {
      */
     boolean matches(String input, HashedPassword password);
 
+    /**
+     * Checks whether a password hashed by this provider was hashed with different parameters than the provider currently uses.
+     * Such passwords are rehashed once the player successfully logs in.
+     *
+     * @param password The hashed password, created by this provider.
+     * @return True if the password should be rehashed, false otherwise.
+     */
+    default boolean needsRehash(HashedPassword password) {
+        return false;
+    }
+
     /**
      * Gets the name of the algorithm.
      *
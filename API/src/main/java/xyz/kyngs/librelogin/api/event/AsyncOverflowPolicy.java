@@ -0,0 +1,31 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package xyz.kyngs.librelogin.api.event;
+
+/**
+ * What happens with an event, when the queue of an asynchronous handler is full.
+ *
+ * @see EventProvider#subscribeAsync(EventType, java.util.function.Consumer, int, AsyncOverflowPolicy)
+ */
+public enum AsyncOverflowPolicy {
+
+    /**
+     * The thread firing the event calls the handler with the queued events, until the queue has room again.
+     * If the handler is busy with another thread, the firing thread waits for it.
+     * The handler is still called by a single thread at a time, in the order the events were fired, and no events are lost.
+     */
+    RUN_SYNC,
+    /**
+     * The oldest queued event is discarded to make room for the new one.
+     */
+    DISCARD_OLDEST,
+    /**
+     * The new event is discarded.
+     */
+    DISCARD_NEWEST
+
+}
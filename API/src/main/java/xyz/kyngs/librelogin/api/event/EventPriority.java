@@ -0,0 +1,26 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package xyz.kyngs.librelogin.api.event;
+
+/**
+ * The order in which the handlers of an event are called.
+ * Handlers with a lower priority are called first, so handlers with a higher priority have the final say.
+ * Handlers with the same priority are called in the order they have subscribed.
+ */
+public enum EventPriority {
+
+    LOWEST,
+    LOW,
+    NORMAL,
+    HIGH,
+    HIGHEST,
+    /**
+     * The handler only observes the outcome of the event, and should not modify it.
+     */
+    MONITOR
+
+}
@@ -34,7 +34,56 @@ public interface EventProvider<P, S> {
      * @param <E>     The event type
      * @return The handler you passed as a parameter, this is useful for unsubscribing
      */
-    <E extends Event<P, S>> Consumer<E> subscribe(EventType<P, S, E> type, Consumer<E> handler);
+    default <E extends Event<P, S>> Consumer<E> subscribe(EventType<P, S, E> type, Consumer<E> handler) {
+        return subscribe(type, handler, EventPriority.NORMAL);
+    }
+
+    /**
+     * Allows you to subscribe to an event with a priority.
+     * Exceptions thrown by the handler are logged, and do not prevent other handlers from being called.
+     *
+     * @param type     The type of the event see {@link #getTypes()}
+     * @param handler  The handler to call when the event is fired
+     * @param priority The priority of the handler, see {@link EventPriority}
+     * @param <E>      The event type
+     * @return The handler you passed as a parameter, this is useful for unsubscribing
+     */
+    <E extends Event<P, S>> Consumer<E> subscribe(EventType<P, S, E> type, Consumer<E> handler, EventPriority priority);
+
+    /**
+     * Allows you to subscribe to an event, without delaying the thread firing it.
+     * The handler is called on a separate thread, after all synchronous handlers, and in the order the events were fired.
+     * Up to 1024 events are queued, afterwards the thread firing the event is held back until there's room, see {@link AsyncOverflowPolicy#RUN_SYNC}.
+     * <br>
+     * Only events, which only notify about something that happened, can be handled asynchronously.
+     * Changing the event from an asynchronous handler has no effect.
+     *
+     * @param type    The type of the event see {@link #getTypes()}
+     * @param handler The handler to call when the event is fired
+     * @param <E>     The event type
+     * @return The handler you passed as a parameter, this is useful for unsubscribing
+     * @throws IllegalArgumentException If the event is a {@link CancellableEvent} or a {@link ServerChooseEvent}
+     */
+    default <E extends Event<P, S>> Consumer<E> subscribeAsync(EventType<P, S, E> type, Consumer<E> handler) {
+        return subscribeAsync(type, handler, 1024, AsyncOverflowPolicy.RUN_SYNC);
+    }
+
+    /**
+     * Allows you to subscribe to an event, without delaying the thread firing it.
+     * The handler is called on a separate thread, after all synchronous handlers, and in the order the events were fired.
+     * <br>
+     * Only events, which only notify about something that happened, can be handled asynchronously.
+     * Changing the event from an asynchronous handler has no effect.
+     *
+     * @param type      The type of the event see {@link #getTypes()}
+     * @param handler   The handler to call when the event is fired
+     * @param queueSize How many events can wait for the handler
+     * @param overflow  What to do with an event, when the queue is full
+     * @param <E>       The event type
+     * @return The handler you passed as a parameter, this is useful for unsubscribing
+     * @throws IllegalArgumentException If the event is a {@link CancellableEvent} or a {@link ServerChooseEvent}
+     */
+    <E extends Event<P, S>> Consumer<E> subscribeAsync(EventType<P, S, E> type, Consumer<E> handler, int queueSize, AsyncOverflowPolicy overflow);
 
     /**
      * Allows you to unsubscribe from an event.
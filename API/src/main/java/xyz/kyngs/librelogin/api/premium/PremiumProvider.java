@@ -6,6 +6,9 @@
 
 package xyz.kyngs.librelogin.api.premium;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.UUID;
 
 /**
@@ -33,4 +36,22 @@ public interface PremiumProvider {
      */
     PremiumUser getUserForUUID(UUID uuid) throws PremiumException;
 
+    /**
+     * This method fetches multiple users by their usernames at once.
+     * Implementations may resolve multiple usernames in a single request, and may take longer to respond than {@link #getUserForName(String)}.
+     *
+     * @param names The usernames of the users.
+     * @return A map of lower-cased usernames to the users, the value is null if the user does not exist.
+     * @throws PremiumException If the users could not be fetched.
+     */
+    default Map<String, PremiumUser> getUsersForNames(Collection<String> names) throws PremiumException {
+        var result = new HashMap<String, PremiumUser>();
+
+        for (String name : names) {
+            result.put(name.toLowerCase(), getUserForName(name));
+        }
+
+        return result;
+    }
+
 }
@@ -36,22 +36,31 @@ import xyz.kyngs.librelogin.api.util.Release;
 import xyz.kyngs.librelogin.api.util.SemanticVersion;
 import xyz.kyngs.librelogin.api.util.ThrowableFunction;
 import xyz.kyngs.librelogin.common.authorization.AuthenticAuthorizationProvider;
+import xyz.kyngs.librelogin.common.authorization.FailureTracker;
+import xyz.kyngs.librelogin.common.cache.SharedCache;
+import xyz.kyngs.librelogin.common.cache.SharedCacheDatabaseProvider;
 import xyz.kyngs.librelogin.common.command.CommandProvider;
 import xyz.kyngs.librelogin.common.command.InvalidCommandArgument;
 import xyz.kyngs.librelogin.common.config.HoconMessages;
 import xyz.kyngs.librelogin.common.config.HoconPluginConfiguration;
 import xyz.kyngs.librelogin.common.crypto.Argon2IDCryptoProvider;
 import xyz.kyngs.librelogin.common.crypto.BCrypt2ACryptoProvider;
+import xyz.kyngs.librelogin.common.crypto.HashCalibrator;
 import xyz.kyngs.librelogin.common.crypto.MessageDigestCryptoProvider;
+import xyz.kyngs.librelogin.common.crypto.PasswordRehasher;
 import xyz.kyngs.librelogin.common.database.AuthenticDatabaseProvider;
+import xyz.kyngs.librelogin.common.database.NameFilterDatabaseProvider;
+import xyz.kyngs.librelogin.common.database.connector.AuthenticEmbeddedDatabaseConnector;
 import xyz.kyngs.librelogin.common.database.connector.AuthenticMySQLDatabaseConnector;
 import xyz.kyngs.librelogin.common.database.connector.AuthenticPostgreSQLDatabaseConnector;
 import xyz.kyngs.librelogin.common.database.connector.AuthenticSQLiteDatabaseConnector;
 import xyz.kyngs.librelogin.common.database.connector.DatabaseConnectorRegistration;
+import xyz.kyngs.librelogin.common.database.provider.LibreLoginEmbeddedDatabaseProvider;
 import xyz.kyngs.librelogin.common.database.provider.LibreLoginMySQLDatabaseProvider;
 import xyz.kyngs.librelogin.common.database.provider.LibreLoginPostgreSQLDatabaseProvider;
 import xyz.kyngs.librelogin.common.database.provider.LibreLoginSQLiteDatabaseProvider;
 import xyz.kyngs.librelogin.common.event.AuthenticEventProvider;
+import xyz.kyngs.librelogin.common.http.HttpService;
 import xyz.kyngs.librelogin.common.image.AuthenticImageProjector;
 import xyz.kyngs.librelogin.common.integration.FloodgateIntegration;
 import xyz.kyngs.librelogin.common.listener.LoginTryListener;
@@ -60,20 +69,25 @@ import xyz.kyngs.librelogin.common.log.SimpleLogFilter;
 import xyz.kyngs.librelogin.common.mail.AuthenticEMailHandler;
 import xyz.kyngs.librelogin.common.migrate.*;
 import xyz.kyngs.librelogin.common.premium.AuthenticPremiumProvider;
+import xyz.kyngs.librelogin.common.premium.RequestGovernor;
 import xyz.kyngs.librelogin.common.server.AuthenticServerHandler;
 import xyz.kyngs.librelogin.common.totp.AuthenticTOTPProvider;
 import xyz.kyngs.librelogin.common.util.CancellableTask;
+import xyz.kyngs.librelogin.common.util.ForbiddenPasswordIndex;
 import xyz.kyngs.librelogin.common.util.GeneralUtil;
+import xyz.kyngs.librelogin.common.util.StartupOrchestrator;
+import xyz.kyngs.librelogin.common.util.Statistics;
 
 import java.io.*;
-import java.net.URL;
 import java.nio.file.Files;
 import java.nio.file.StandardCopyOption;
+import java.time.Duration;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
 
 import static xyz.kyngs.librelogin.common.config.ConfigurationKeys.*;
 
@@ -81,10 +95,11 @@ public abstract class AuthenticLibreLogin<P, S> implements LibreLoginPlugin<P, S
 
     public static final Gson GSON = new Gson();
     public static final DateTimeFormatter DATE_TIME_FORMATTER = DateTimeFormatter.ofPattern("dd. MM. yyyy HH:mm");
+    public static final int EXECUTOR_THREADS = 4;
     public static final ExecutorService EXECUTOR;
 
     static {
-        EXECUTOR = new ForkJoinPool(4);
+        EXECUTOR = new ForkJoinPool(EXECUTOR_THREADS);
     }
 
     private final Map<String, CryptoProvider> cryptoProviders;
@@ -92,7 +107,8 @@ public abstract class AuthenticLibreLogin<P, S> implements LibreLoginPlugin<P, S
     private final Map<Class<?>, DatabaseConnectorRegistration<?, ?>> databaseConnectors;
     private final Multimap<P, CancellableTask> cancelOnExit;
     private final PlatformHandle<P, S> platformHandle;
-    private final Set<String> forbiddenPasswords;
+    private volatile ForbiddenPasswordIndex forbiddenPasswords;
+    private final Statistics statistics;
     protected Logger logger;
     private AuthenticPremiumProvider premiumProvider;
     private AuthenticEventProvider<P, S> eventProvider;
@@ -107,16 +123,25 @@ public abstract class AuthenticLibreLogin<P, S> implements LibreLoginPlugin<P, S
     private CommandProvider<P, S> commandProvider;
     private ReadWriteDatabaseProvider databaseProvider;
     private DatabaseConnector<?, ?> databaseConnector;
+    private SharedCache sharedCache;
+    private HttpService httpService;
     private AuthenticEMailHandler eMailHandler;
     private LoginTryListener<P, S> loginTryListener;
+    @Nullable
+    private FailureTracker failureTracker;
+    private PasswordRehasher passwordRehasher;
 
     protected AuthenticLibreLogin() {
         cryptoProviders = new ConcurrentHashMap<>();
         readProviders = new ConcurrentHashMap<>();
         databaseConnectors = new ConcurrentHashMap<>();
         platformHandle = providePlatformHandle();
-        forbiddenPasswords = new HashSet<>();
         cancelOnExit = HashMultimap.create();
+        statistics = new Statistics();
+    }
+
+    public Statistics getStatistics() {
+        return statistics;
     }
 
     public Map<Class<?>, DatabaseConnectorRegistration<?, ?>> getDatabaseConnectors() {
@@ -168,9 +193,9 @@ public abstract class AuthenticLibreLogin<P, S> implements LibreLoginPlugin<P, S
             return false;
         }
 
-        var upper = password.toUpperCase();
+        var forbidden = forbiddenPasswords;
 
-        return !forbiddenPasswords.contains(upper);
+        return forbidden == null || !forbidden.contains(password);
     }
 
     @Override
@@ -187,6 +212,15 @@ public abstract class AuthenticLibreLogin<P, S> implements LibreLoginPlugin<P, S
         return databaseProvider;
     }
 
+    public HttpService getHttpService() {
+        return httpService;
+    }
+
+    @Nullable
+    public SharedCache getSharedCache() {
+        return sharedCache;
+    }
+
     @Override
     public AuthenticPremiumProvider getPremiumProvider() {
         return premiumProvider;
@@ -250,34 +284,67 @@ public abstract class AuthenticLibreLogin<P, S> implements LibreLoginPlugin<P, S
         }
 
         eventProvider = new AuthenticEventProvider<>(this);
-        premiumProvider = new AuthenticPremiumProvider(this);
 
         registerCryptoProvider(new MessageDigestCryptoProvider("SHA-256"));
         registerCryptoProvider(new MessageDigestCryptoProvider("SHA-512"));
         registerCryptoProvider(new BCrypt2ACryptoProvider());
         registerCryptoProvider(new Argon2IDCryptoProvider(logger));
 
-        setupDB();
+        var startup = new StartupOrchestrator(logger);
 
-        checkDataFolder();
+        startup.run("setup", () -> {
+            setupDB();
+            checkDataFolder();
+        });
 
-        loadConfigs();
+        // Messages are only needed once players start connecting, so they can load alongside everything else
+        startup.submit("messages", this::loadMessages);
 
-        logger.info("Loading forbidden passwords...");
+        var config = startup.submit("configuration", () -> {
+            loadConfiguration();
+            configureCryptoProviders();
 
-        try {
-            loadForbiddenPasswords();
-        } catch (IOException e) {
-            e.printStackTrace();
-            logger.info("An unknown exception occurred while attempting to load the forbidden passwords, this most likely isn't your fault");
-            shutdownProxy(1);
-        }
+            httpService = new HttpService(statistics, new HttpService.HostPolicy(
+                    Duration.ofMillis(configuration.get(HTTP_TIMEOUT)),
+                    configuration.get(HTTP_MAX_CONCURRENT_PER_HOST),
+                    configuration.get(HTTP_MAX_QUEUED_PER_HOST)
+            ));
 
-        logger.info("Loaded %s forbidden passwords".formatted(forbiddenPasswords.size()));
+            // Premium sessions are verified against the session server on Paper, which has its own timeout
+            httpService.setPolicy("sessionserver.mojang.com", new HttpService.HostPolicy(
+                    Duration.ofMillis(configuration.get(SESSION_VERIFICATION_TIMEOUT)),
+                    configuration.get(HTTP_MAX_CONCURRENT_PER_HOST),
+                    configuration.get(HTTP_MAX_QUEUED_PER_HOST)
+            ));
+
+            premiumProvider = new AuthenticPremiumProvider(this);
+        });
+
+        startup.submit("database", () -> {
+            connectToDB();
+
+            if (configuration.get(DATABASE_NAME_FILTER) && !configuration.get(SHARED_CACHE_ENABLED) && !multiProxyEnabled()) {
+                enableNameFilter();
+            }
+
+            if (configuration.get(SHARED_CACHE_ENABLED)) {
+                connectToSharedCache();
+            }
+        }, config);
+
+        awaitStartup(startup, config);
+
+        // Paper can only create the limbo world on the main thread, the servers are pinged while connecting to the database
+        startup.run("servers", () -> serverHandler = new AuthenticServerHandler<>(this));
 
-        connectToDB();
+        awaitStartup(startup);
 
-        serverHandler = new AuthenticServerHandler<>(this);
+        if (configuration.get(BRUTE_FORCE_ENABLED)) {
+            failureTracker = new FailureTracker(this);
+            repeat(failureTracker::sweep, TimeUnit.MINUTES.toMillis(1), TimeUnit.MINUTES.toMillis(1));
+        }
+
+        passwordRehasher = new PasswordRehasher(this);
 
         this.loginTryListener = new LoginTryListener<>(this);
 
@@ -305,10 +372,41 @@ public abstract class AuthenticLibreLogin<P, S> implements LibreLoginPlugin<P, S
             logger.warn("!! YOU ARE RUNNING A DEVELOPMENT BUILD OF LIBRELOGIN !!");
             logger.warn("!! THIS IS NOT A RELEASE, USE THIS ONLY IF YOU WERE INSTRUCTED TO DO SO. DO NOT USE THIS IN PRODUCTION !!");
         } else {
-            initMetrics();
+            startup.defer("metrics", () -> initMetrics());
         }
 
-        delay(this::checkForUpdates, 1000);
+        var forbiddenList = new File(getDataFolder(), "forbidden-passwords.txt").toPath();
+        var forbiddenIndex = new File(getDataFolder(), "forbidden-passwords.index").toPath();
+
+        try {
+            // Mapping an index built on an earlier start is cheap, only downloading the list or building the index is deferred
+            forbiddenPasswords = ForbiddenPasswordIndex.openExisting(forbiddenList, forbiddenIndex);
+        } catch (IOException e) {
+            logger.warn("Failed to open the forbidden passwords index, it will be rebuilt: " + e.getMessage());
+        }
+
+        if (forbiddenPasswords == null) {
+            startup.defer("forbidden passwords", () -> {
+                logger.info("Loading forbidden passwords...");
+
+                try {
+                    loadForbiddenPasswords();
+                } catch (IOException | RuntimeException e) {
+                    e.printStackTrace();
+                    logger.error("!! FAILED TO LOAD THE FORBIDDEN PASSWORDS, NO PASSWORD WILL BE CONSIDERED FORBIDDEN !!");
+                    logger.error("Cause: %s: %s".formatted(e.getClass().getSimpleName(), e.getMessage()));
+                    return;
+                }
+
+                logger.info("Loaded %s forbidden passwords".formatted(forbiddenPasswords.size()));
+            });
+        } else {
+            logger.info("Loaded %s forbidden passwords".formatted(forbiddenPasswords.size()));
+        }
+
+        startup.defer("update check", this::checkForUpdates);
+
+        if (configuration.get(CRYPTO_BENCHMARK)) startup.defer("crypto benchmark", this::benchmarkCrypto);
 
         if (pluginPresent("floodgate")) {
             logger.info("Floodgate detected, enabling bedrock support...");
@@ -318,6 +416,61 @@ public abstract class AuthenticLibreLogin<P, S> implements LibreLoginPlugin<P, S
         if (multiProxyEnabled()) {
             logger.info("Detected MultiProxy setup, enabling MultiProxy support...");
         }
+
+        startup.complete(runnable -> delay(runnable, 0));
+    }
+
+    private void awaitStartup(StartupOrchestrator startup, StartupOrchestrator.Step... steps) {
+        try {
+            startup.await(steps);
+        } catch (StartupOrchestrator.AbortException e) {
+            shutdownProxy(e.getCode());
+        }
+    }
+
+    /**
+     * Shuts down the proxy. Parallel startup steps leave the shutdown to the enabling thread, as some platforms require it.
+     */
+    private void abortStartup(int code) {
+        if (StartupOrchestrator.inParallelStep()) throw new StartupOrchestrator.AbortException(code);
+
+        shutdownProxy(code);
+    }
+
+    /**
+     * Replaces the built-in crypto providers with ones using the configured cost parameters.
+     */
+    public void configureCryptoProviders() {
+        registerCryptoProvider(new BCrypt2ACryptoProvider(configuration.get(BCRYPT_COST)));
+        registerCryptoProvider(new Argon2IDCryptoProvider(logger, configuration.get(ARGON2_MEMORY), configuration.get(ARGON2_ITERATIONS)));
+    }
+
+    private void benchmarkCrypto() {
+        var provider = getDefaultCryptoProvider();
+
+        var nanos = switch (provider.getIdentifier()) {
+            case "Argon-2ID" -> HashCalibrator.timeArgon2(configuration.get(ARGON2_MEMORY), configuration.get(ARGON2_ITERATIONS));
+            case "BCrypt-2A" -> HashCalibrator.timeBCrypt(configuration.get(BCRYPT_COST));
+            default -> -1L;
+        };
+
+        // Message digests are too cheap to matter
+        if (nanos < 0) return;
+
+        var perCore = TimeUnit.SECONDS.toNanos(1) / (double) Math.max(1, nanos);
+        var threads = Math.min(EXECUTOR_THREADS, Runtime.getRuntime().availableProcessors());
+        var capacity = perCore * threads;
+        var peak = configuration.get(CRYPTO_PEAK_LOGINS);
+
+        logger.info("Crypto benchmark: %s takes %dms per hash, that is %.1f hashes per second per core, %.1f per second with %d threads".formatted(
+                provider.getIdentifier(), TimeUnit.NANOSECONDS.toMillis(nanos), perCore, capacity, threads
+        ));
+
+        if (peak > capacity) {
+            logger.warn("The expected peak of %d logins per second would saturate the crypto threads, which can only hash %.1f passwords per second. Logins will queue up, consider lowering the cost in the crypto section of the configuration.".formatted(
+                    peak, capacity
+            ));
+        }
     }
 
     public <C extends DatabaseConnector<?, ?>> DatabaseConnectorRegistration<?, C> getDatabaseConnector(Class<C> clazz) {
@@ -331,7 +484,7 @@ public abstract class AuthenticLibreLogin<P, S> implements LibreLoginPlugin<P, S
             var registration = readProviders.get(configuration.get(DATABASE_TYPE));
             if (registration == null) {
                 logger.error("Database type %s doesn't exist, please check your configuration".formatted(configuration.get(DATABASE_TYPE)));
-                shutdownProxy(1);
+                abortStartup(1);
             }
 
             DatabaseConnector<?, ?> connector = null;
@@ -341,7 +494,7 @@ public abstract class AuthenticLibreLogin<P, S> implements LibreLoginPlugin<P, S
 
                 if (connectorRegistration == null) {
                     logger.error("Database type %s is corrupted, please use a different one".formatted(configuration.get(DATABASE_TYPE)));
-                    shutdownProxy(1);
+                    abortStartup(1);
                 }
 
                 connector = connectorRegistration.factory().apply("database.properties." + connectorRegistration.id() + ".");
@@ -356,14 +509,14 @@ public abstract class AuthenticLibreLogin<P, S> implements LibreLoginPlugin<P, S
                 databaseConnector = connector;
             } else {
                 logger.error("Database type %s cannot be used for writing, please use a different one".formatted(configuration.get(DATABASE_TYPE)));
-                shutdownProxy(1);
+                abortStartup(1);
             }
 
         } catch (Exception e) {
             var cause = GeneralUtil.getFurthestCause(e);
             logger.error("!! THIS IS MOST LIKELY NOT AN ERROR CAUSED BY LIBRELOGIN !!");
             logger.error("Failed to connect to the database, this most likely is caused by wrong credentials. Cause: %s: %s".formatted(cause.getClass().getSimpleName(), cause.getMessage()));
-            shutdownProxy(1);
+            abortStartup(1);
         }
 
         logger.info("Successfully connected to the database");
@@ -377,14 +530,48 @@ public abstract class AuthenticLibreLogin<P, S> implements LibreLoginPlugin<P, S
                 var cause = GeneralUtil.getFurthestCause(e);
                 logger.error("Failed to validate schema! Cause: %s: %s".formatted(cause.getClass().getSimpleName(), cause.getMessage()));
                 logger.error("Please open an issue on our GitHub, or visit Discord support");
-                shutdownProxy(1);
+                abortStartup(1);
             }
 
             logger.info("Schema validated");
         }
     }
 
-    private void loadConfigs() {
+    private void enableNameFilter() {
+        if (!(databaseProvider instanceof AuthenticDatabaseProvider<?> provider)) return;
+
+        var filter = new NameFilterDatabaseProvider(provider, databaseConnector, this);
+
+        databaseProvider = filter;
+
+        // Lookups go straight to the database until the first build finishes
+        var interval = TimeUnit.SECONDS.toMillis(configuration.get(DATABASE_NAME_FILTER_REBUILD_INTERVAL));
+        repeat(filter::rebuild, 0, Math.max(interval, TimeUnit.MINUTES.toMillis(1)));
+    }
+
+    private void connectToSharedCache() {
+        logger.info("Connecting to the shared cache...");
+
+        var cache = new SharedCache(this);
+
+        try {
+            cache.connect();
+        } catch (IOException e) {
+            cache.disconnect();
+            logger.warn("Failed to connect to the shared cache, continuing without it. Cause: %s: %s".formatted(e.getClass().getSimpleName(), e.getMessage()));
+            return;
+        }
+
+        sharedCache = cache;
+
+        if (databaseProvider instanceof AuthenticDatabaseProvider<?> provider) {
+            databaseProvider = new SharedCacheDatabaseProvider(provider, databaseConnector, cache, this);
+        }
+
+        logger.info("Successfully connected to the shared cache");
+    }
+
+    private void loadMessages() {
         logger.info("Loading messages...");
 
         messages = new HoconMessages(logger);
@@ -394,14 +581,16 @@ public abstract class AuthenticLibreLogin<P, S> implements LibreLoginPlugin<P, S
         } catch (IOException e) {
             e.printStackTrace();
             logger.info("An unknown exception occurred while attempting to load the messages, this most likely isn't your fault");
-            shutdownProxy(1);
+            abortStartup(1);
         } catch (CorruptedConfigurationException e) {
             var cause = GeneralUtil.getFurthestCause(e);
             logger.error("!! THIS IS MOST LIKELY NOT AN ERROR CAUSED BY LIBRELOGIN !!");
             logger.error("!!The messages are corrupted, please look below for further clues. If you are clueless, delete the messages and a new ones will be created for you. Cause: %s: %s".formatted(cause.getClass().getSimpleName(), cause.getMessage()));
-            shutdownProxy(1);
+            abortStartup(1);
         }
+    }
 
+    private void loadConfiguration() {
         logger.info("Loading configuration...");
 
         var defaults = new ArrayList<BiHolder<Class<?>, String>>();
@@ -417,7 +606,7 @@ public abstract class AuthenticLibreLogin<P, S> implements LibreLoginPlugin<P, S
         try {
             if (configuration.reload(this)) {
                 logger.warn("!! A new configuration was generated, please fill it out, if in doubt, see the wiki !!");
-                shutdownProxy(0);
+                abortStartup(0);
             }
 
             var limbos = configuration.get(LIMBO);
@@ -431,12 +620,12 @@ public abstract class AuthenticLibreLogin<P, S> implements LibreLoginPlugin<P, S
         } catch (IOException e) {
             e.printStackTrace();
             logger.info("An unknown exception occurred while attempting to load the configuration, this most likely isn't your fault");
-            shutdownProxy(1);
+            abortStartup(1);
         } catch (CorruptedConfigurationException e) {
             var cause = GeneralUtil.getFurthestCause(e);
             logger.error("!! THIS IS MOST LIKELY NOT AN ERROR CAUSED BY LIBRELOGIN !!");
             logger.error("!!The configuration is corrupted, please look below for further clues. If you are clueless, delete the config and a new one will be created for you. Cause: %s: %s".formatted(cause.getClass().getSimpleName(), cause.getMessage()));
-            shutdownProxy(1);
+            abortStartup(1);
         }
     }
 
@@ -459,6 +648,12 @@ public abstract class AuthenticLibreLogin<P, S> implements LibreLoginPlugin<P, S
                         "postgresql"
                 ),
                 PostgreSQLDatabaseConnector.class);
+        registerDatabaseConnector(new DatabaseConnectorRegistration<>(
+                        prefix -> new AuthenticEmbeddedDatabaseConnector(this, prefix),
+                        AuthenticEmbeddedDatabaseConnector.Configuration.class,
+                        "embedded"
+                ),
+                AuthenticEmbeddedDatabaseConnector.class);
 
         registerReadProvider(new ReadDatabaseProviderRegistration<>(
                 connector -> new LibreLoginMySQLDatabaseProvider(connector, this),
@@ -475,6 +670,11 @@ public abstract class AuthenticLibreLogin<P, S> implements LibreLoginPlugin<P, S
                 "librelogin-postgresql",
                 PostgreSQLDatabaseConnector.class
         ));
+        registerReadProvider(new ReadDatabaseProviderRegistration<>(
+                connector -> new LibreLoginEmbeddedDatabaseProvider(connector, this),
+                "librelogin-embedded",
+                AuthenticEmbeddedDatabaseConnector.class
+        ));
 
 
         registerReadProvider(new ReadDatabaseProviderRegistration<>(
@@ -555,21 +755,20 @@ public abstract class AuthenticLibreLogin<P, S> implements LibreLoginPlugin<P, S
 
     }
 
+    /**
+     * Downloads the forbidden passwords list if it does not exist, and builds its index. Until this finishes, no password is considered forbidden.
+     */
     private void loadForbiddenPasswords() throws IOException {
         var file = new File(getDataFolder(), "forbidden-passwords.txt");
 
         if (!file.exists()) {
             logger.info("Forbidden passwords list doesn't exist, downloading...");
-            try (BufferedInputStream in = new BufferedInputStream(new URL("https://raw.githubusercontent.com/kyngs/LibreLogin/dev/forbidden-passwords.txt").openStream())) {
-                if (!file.createNewFile()) {
-                    throw new IOException("Failed to create file");
-                }
-                try (var fos = new FileOutputStream(file)) {
-                    var dataBuffer = new byte[1024];
-                    int bytesRead;
-                    while ((bytesRead = in.read(dataBuffer, 0, 1024)) != -1) {
-                        fos.write(dataBuffer, 0, bytesRead);
-                    }
+            try {
+                // Streamed to the file, the list can be large
+                var response = httpService.download("https://raw.githubusercontent.com/kyngs/LibreLogin/dev/forbidden-passwords.txt", file.toPath());
+
+                if (response.status() != 200) {
+                    throw new IOException("Unexpected response code " + response.status());
                 }
                 logger.info("Successfully downloaded forbidden passwords list");
             } catch (IOException e) {
@@ -579,30 +778,14 @@ public abstract class AuthenticLibreLogin<P, S> implements LibreLoginPlugin<P, S
             }
         }
 
-        try (var reader = new BufferedReader(new FileReader(file))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                if (line.startsWith("# ")) {
-                    continue;
-                }
-                forbiddenPasswords.add(line.toUpperCase(Locale.ROOT));
-            }
-        }
+        forbiddenPasswords = ForbiddenPasswordIndex.open(file.toPath(), new File(getDataFolder(), "forbidden-passwords.index").toPath(), logger);
     }
 
     private void checkForUpdates() {
         logger.info("Checking for updates...");
 
         try {
-            var connection = new URL("https://api.github.com/repos/kyngs/LibreLogin/releases").openConnection();
-
-            connection.setRequestProperty("User-Agent", "LibreLogin");
-
-            var in = connection.getInputStream();
-
-            var root = GSON.fromJson(new InputStreamReader(in), JsonArray.class);
-
-            in.close(); //Not the safest way, but a slight leak isn't a big deal
+            var root = httpService.get("https://api.github.com/repos/kyngs/LibreLogin/releases").json(JsonArray.class);
 
             List<Release> behind = new ArrayList<>();
             SemanticVersion latest = null;
@@ -653,6 +836,14 @@ public abstract class AuthenticLibreLogin<P, S> implements LibreLoginPlugin<P, S
     }
 
     protected void disable() {
+        if (eventProvider != null) {
+            eventProvider.shutdown();
+        }
+
+        if (sharedCache != null) {
+            sharedCache.disconnect();
+        }
+
         if (databaseConnector != null) {
             try {
                 databaseConnector.disconnect();
@@ -702,7 +893,7 @@ public abstract class AuthenticLibreLogin<P, S> implements LibreLoginPlugin<P, S
 
     public PremiumUser getUserOrThrowICA(String username) throws InvalidCommandArgument {
         try {
-            return getPremiumProvider().getUserForName(username);
+            return getPremiumProvider().getUserForName(username, RequestGovernor.Priority.BACKGROUND);
         } catch (PremiumException e) {
             throw new InvalidCommandArgument(getMessages().getMessage(
                     switch (e.getIssue()) {
@@ -752,6 +943,18 @@ public abstract class AuthenticLibreLogin<P, S> implements LibreLoginPlugin<P, S
         return loginTryListener;
     }
 
+    /**
+     * @return The tracker of failed login attempts, or null if it is disabled
+     */
+    @Nullable
+    public FailureTracker getFailureTracker() {
+        return failureTracker;
+    }
+
+    public PasswordRehasher getPasswordRehasher() {
+        return passwordRehasher;
+    }
+
     public void onExit(P player) {
         cancelOnExit.removeAll(player).forEach(CancellableTask::cancel);
         if (configuration.get(REMEMBER_LAST_SERVER)) {
@@ -11,6 +11,7 @@ import com.github.benmanes.caffeine.cache.Caffeine;
 import net.kyori.adventure.audience.Audience;
 import net.kyori.adventure.text.Component;
 import net.kyori.adventure.title.Title;
+import org.jetbrains.annotations.Nullable;
 import xyz.kyngs.librelogin.api.authorization.AuthorizationProvider;
 import xyz.kyngs.librelogin.api.database.User;
 import xyz.kyngs.librelogin.api.event.events.AuthenticatedEvent;
@@ -24,22 +25,27 @@ import java.sql.Timestamp;
 import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.HashSet;
-import java.util.Map;
 import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
+import java.util.function.UnaryOperator;
 
 public class AuthenticAuthorizationProvider<P, S> extends AuthenticHandler<P, S> implements AuthorizationProvider<P> {
 
-    private final Map<P, Boolean> unAuthorized;
-    private final Map<P, String> awaiting2FA;
+    /**
+     * The authorization state of players, which are not authorized or are awaiting 2FA. Players without an entry are authorized.
+     * The keys are compared by identity, so the (potentially expensive) equals and hashCode of the platform player are never called.
+     */
+    private final ConcurrentMap<P, AuthState> states;
     private final Cache<UUID, EmailVerifyData> emailConfirmCache;
     private final Cache<UUID, String> passwordResetCache;
 
     public AuthenticAuthorizationProvider(AuthenticLibreLogin<P, S> plugin) {
         super(plugin);
-        unAuthorized = new ConcurrentHashMap<>();
-        awaiting2FA = new ConcurrentHashMap<>();
+        states = Caffeine.newBuilder()
+                .weakKeys()
+                .<P, AuthState>build()
+                .asMap();
 
         var millis = plugin.getConfiguration().get(ConfigurationKeys.MILLISECONDS_TO_REFRESH_NOTIFICATION);
 
@@ -67,20 +73,21 @@ public class AuthenticAuthorizationProvider<P, S> extends AuthenticHandler<P, S>
     }
 
     public void onExit(P player) {
-        stopTracking(player);
-        awaiting2FA.remove(player);
+        states.remove(player);
         emailConfirmCache.invalidate(platformHandle.getUUIDForPlayer(player));
         passwordResetCache.invalidate(platformHandle.getUUIDForPlayer(player));
     }
 
     @Override
     public boolean isAuthorized(P player) {
-        return !unAuthorized.containsKey(player);
+        var state = states.get(player);
+        return state == null || !state.unauthorized();
     }
 
     @Override
     public boolean isAwaiting2FA(P player) {
-        return awaiting2FA.containsKey(player);
+        var state = states.get(player);
+        return state != null && state.secret() != null;
     }
 
     @Override
@@ -104,7 +111,8 @@ public class AuthenticAuthorizationProvider<P, S> extends AuthenticHandler<P, S>
 
     @Override
     public boolean confirmTwoFactorAuth(P player, Integer code, User user) {
-        var secret = awaiting2FA.get(player);
+        var state = states.get(player);
+        var secret = state == null ? null : state.secret();
         if (plugin.getTOTPProvider().verify(code, secret)) {
             user.setSecret(secret);
             plugin.getDatabaseProvider().updateUser(user);
@@ -116,10 +124,10 @@ public class AuthenticAuthorizationProvider<P, S> extends AuthenticHandler<P, S>
     public void startTracking(User user, P player) {
         var audience = platformHandle.getAudienceForPlayer(player);
 
-        unAuthorized.put(player, user.isRegistered());
+        update(player, state -> new AuthState(true, user.isRegistered(), state.secret()));
 
         plugin.cancelOnExit(plugin.delay(() -> {
-            if (!unAuthorized.containsKey(player)) return;
+            if (isAuthorized(player)) return;
             sendInfoMessage(user.isRegistered(), audience);
         }, 250), player);
 
@@ -127,7 +135,7 @@ public class AuthenticAuthorizationProvider<P, S> extends AuthenticHandler<P, S>
 
         if (limit > 0) {
             plugin.cancelOnExit(plugin.delay(() -> {
-                if (!unAuthorized.containsKey(player)) return;
+                if (isAuthorized(player)) return;
                 platformHandle.kick(player, plugin.getMessages().getMessage("kick-time-limit"));
             }, limit * 1000L), player);
         }
@@ -137,7 +145,9 @@ public class AuthenticAuthorizationProvider<P, S> extends AuthenticHandler<P, S>
 
     private void broadcastActionbars() {
         var wrong = new HashSet<P>();
-        unAuthorized.forEach((player, registered) -> {
+        states.forEach((player, state) -> {
+            if (!state.unauthorized()) return;
+
             var audience = platformHandle.getAudienceForPlayer(player);
 
             if (audience == null) {
@@ -145,11 +155,11 @@ public class AuthenticAuthorizationProvider<P, S> extends AuthenticHandler<P, S>
                 return;
             }
 
-            sendActionBar(registered, audience);
+            sendActionBar(state.registered(), audience);
 
         });
 
-        wrong.forEach(unAuthorized::remove);
+        wrong.forEach(this::stopTracking);
     }
 
     private void sendActionBar(boolean registered, Audience audience) {
@@ -178,12 +188,14 @@ public class AuthenticAuthorizationProvider<P, S> extends AuthenticHandler<P, S>
     }
 
     public void stopTracking(P player) {
-        unAuthorized.remove(player);
+        update(player, state -> new AuthState(false, state.registered(), state.secret()));
     }
 
     public void notifyUnauthorized() {
         var wrong = new HashSet<P>();
-        unAuthorized.forEach((player, registered) -> {
+        states.forEach((player, state) -> {
+            if (!state.unauthorized()) return;
+
             var audience = platformHandle.getAudienceForPlayer(player);
 
             if (audience == null) {
@@ -191,18 +203,35 @@ public class AuthenticAuthorizationProvider<P, S> extends AuthenticHandler<P, S>
                 return;
             }
 
-            sendInfoMessage(registered, audience);
+            sendInfoMessage(state.registered(), audience);
+
+        });
+
+        wrong.forEach(this::stopTracking);
+    }
 
+    /**
+     * Atomically replaces the state of the player, the entry is removed once the player is authorized and not awaiting 2FA.
+     */
+    private void update(P player, UnaryOperator<AuthState> function) {
+        states.compute(player, (key, state) -> {
+            var updated = function.apply(state == null ? AuthState.AUTHORIZED : state);
+            return updated.unauthorized() || updated.secret() != null ? updated : null;
         });
+    }
 
-        wrong.forEach(unAuthorized::remove);
+    /**
+     * @param secret The TOTP secret the player is confirming, or null if the player is not awaiting 2FA
+     */
+    private record AuthState(boolean unauthorized, boolean registered, @Nullable String secret) {
+        private static final AuthState AUTHORIZED = new AuthState(false, false, null);
     }
 
     public record EmailVerifyData(String email, String token, UUID uuid) {
     }
 
     public void beginTwoFactorAuth(User user, P player, TOTPData data) {
-        awaiting2FA.put(player, data.secret());
+        update(player, state -> new AuthState(state.unauthorized(), state.registered(), data.secret()));
 
         var limbo = plugin.getServerHandler().chooseLimboServer(user, player);
 
@@ -212,7 +241,7 @@ public class AuthenticAuthorizationProvider<P, S> extends AuthenticHandler<P, S>
         }
 
         platformHandle.movePlayer(player, limbo).whenComplete((t, e) -> {
-            if (t != null || e != null) awaiting2FA.remove(player);
+            if (t != null || e != null) update(player, state -> new AuthState(state.unauthorized(), state.registered(), null));
         });
     }
 }
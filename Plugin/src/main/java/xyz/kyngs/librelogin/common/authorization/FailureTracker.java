@@ -0,0 +1,217 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package xyz.kyngs.librelogin.common.authorization;
+
+import org.jetbrains.annotations.Nullable;
+import xyz.kyngs.librelogin.common.AuthenticLibreLogin;
+import xyz.kyngs.librelogin.common.cache.SharedCache;
+import xyz.kyngs.librelogin.common.util.Statistics;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static xyz.kyngs.librelogin.common.config.ConfigurationKeys.*;
+
+/**
+ * Remembers failed login attempts of accounts and IP addresses, independently of the connection they were made from.
+ * <br>
+ * After a few free attempts, every further failure blocks the account on the address (or the address itself) for exponentially longer,
+ * so that attempts can be rejected before the expensive password verification.
+ * The account alone is blocked only for a few seconds, so that nobody can lock the owner out by failing on purpose,
+ * while guessing a password from many addresses is still slowed down.
+ * The state of every key is packed into a single long: the amount of failures in the upper 16 bits, and the time of the last failure in the lower 48 bits.
+ * With the shared cache enabled, the failures are also counted atomically on the cache server, so attempts spread over several proxies add up.<br>
+ * <b>This implementation is thread-safe.</b>
+ */
+public class FailureTracker {
+
+    private static final int TIME_BITS = 48;
+    private static final long TIME_MASK = (1L << TIME_BITS) - 1;
+    private static final int MAX_FAILURES = 0xFFFF;
+
+    private final Map<Object, Long> failures;
+    private final Statistics statistics;
+    @Nullable
+    private final SharedCache sharedCache;
+    private final int accountFreeAttempts;
+    private final int ipFreeAttempts;
+    private final long baseDelay;
+    private final long maxDelay;
+    private final long accountMaxDelay;
+    private final long resetAfter;
+
+    public FailureTracker(AuthenticLibreLogin<?, ?> plugin) {
+        var configuration = plugin.getConfiguration();
+
+        this.failures = new ConcurrentHashMap<>();
+        this.statistics = plugin.getStatistics();
+        this.sharedCache = configuration.get(BRUTE_FORCE_SHARE) ? plugin.getSharedCache() : null;
+        this.accountFreeAttempts = configuration.get(BRUTE_FORCE_FREE_ATTEMPTS);
+        this.ipFreeAttempts = configuration.get(BRUTE_FORCE_IP_FREE_ATTEMPTS);
+        this.baseDelay = configuration.get(BRUTE_FORCE_BASE_DELAY);
+        this.maxDelay = Math.max(baseDelay, configuration.get(BRUTE_FORCE_MAX_DELAY));
+        this.accountMaxDelay = Math.min(maxDelay, configuration.get(BRUTE_FORCE_ACCOUNT_MAX_DELAY));
+        this.resetAfter = Math.max(maxDelay, TimeUnit.SECONDS.toMillis(configuration.get(BRUTE_FORCE_RESET_AFTER)));
+    }
+
+    /**
+     * Checks whether an attempt to log in can be made, and counts the rejected attempts.
+     *
+     * @param account The UUID of the account
+     * @param ip      The IP address of the player
+     * @return 0 if the attempt is allowed, otherwise the amount of milliseconds the player has to wait
+     */
+    public long checkAttempt(UUID account, String ip) {
+        var now = System.currentTimeMillis();
+        var keys = keys(account, ip);
+        var states = get(keys, now);
+        var blocked = 0L;
+
+        for (int i = 0; i < keys.size(); i++) {
+            var key = keys.get(i);
+
+            blocked = Math.max(blocked, remaining(states[i], key.freeAttempts(), key.maxDelay(), now));
+        }
+
+        if (blocked > 0) {
+            // Every rejected attempt is a password hash we did not have to compute
+            statistics.increment("brute-force.hashes-saved");
+        }
+
+        return blocked;
+    }
+
+    /**
+     * Records a failed attempt to log in.
+     */
+    public void recordFailure(UUID account, String ip) {
+        var now = System.currentTimeMillis();
+        var keys = keys(account, ip);
+        var shared = sharedCache == null ? null : sharedCache.incrementFailures(resetAfter, sharedKeys(keys));
+
+        for (int i = 0; i < keys.size(); i++) {
+            var key = keys.get(i);
+            // Includes this failure, and those counted by other proxies
+            var sharedCount = shared == null ? 0 : shared[i];
+
+            var updated = failures.compute(key.local(), (x, current) -> {
+                var count = current == null || expired(current, now) ? 0 : count(current);
+
+                return pack((int) Math.min(MAX_FAILURES, Math.max(count + 1, sharedCount)), now);
+            });
+
+            if (count(updated) == key.freeAttempts() + 1) statistics.increment("brute-force.lockouts");
+        }
+    }
+
+    /**
+     * Forgets the failed attempts of the account, the address is still remembered.
+     */
+    public void recordSuccess(UUID account, String ip) {
+        var accountAddress = new AccountAddress(account, ip);
+
+        failures.remove(accountAddress);
+        failures.remove(account);
+
+        if (sharedCache != null) sharedCache.deleteFailures(accountAddress.sharedKey(), "account:" + account);
+    }
+
+    /**
+     * Forgets keys, whose last failure is older than the reset period.
+     */
+    public void sweep() {
+        var now = System.currentTimeMillis();
+
+        failures.values().removeIf(state -> expired(state, now));
+    }
+
+    /**
+     * @return The state of every key, the local one unless another proxy knows about more failures
+     */
+    private long[] get(List<Key> keys, long now) {
+        var shared = sharedCache == null ? null : sharedCache.getFailures(sharedKeys(keys));
+        var states = new long[keys.size()];
+
+        for (int i = 0; i < keys.size(); i++) {
+            var local = failures.get(keys.get(i).local());
+            var state = local == null ? 0 : local;
+
+            if (shared != null && shared[i] != null && shared[i].count() > count(state)) {
+                // The shared key expires once the reset period passes without a failure, which reveals the time of the last one
+                state = pack(shared[i].count(), now - resetAfter + shared[i].expiresIn());
+            }
+
+            states[i] = state;
+        }
+
+        return states;
+    }
+
+    private List<Key> keys(UUID account, String ip) {
+        var accountAddress = new AccountAddress(account, ip);
+
+        return List.of(
+                new Key(accountAddress, accountAddress.sharedKey(), accountFreeAttempts, maxDelay),
+                new Key(account, "account:" + account, accountFreeAttempts, accountMaxDelay),
+                new Key(ip, "ip:" + ip, ipFreeAttempts, maxDelay)
+        );
+    }
+
+    private static String[] sharedKeys(List<Key> keys) {
+        return keys.stream().map(Key::shared).toArray(String[]::new);
+    }
+
+    private long remaining(long state, int freeAttempts, long maxDelay, long now) {
+        if (state == 0 || expired(state, now)) return 0;
+
+        var excess = count(state) - freeAttempts;
+
+        if (excess <= 0) return 0;
+
+        var delay = Math.min(maxDelay, baseDelay << Math.min(excess - 1, 30));
+
+        return Math.max(0, time(state) + delay - now);
+    }
+
+    private boolean expired(long state, long now) {
+        return now - time(state) > resetAfter;
+    }
+
+    private static long pack(int count, long time) {
+        return ((long) Math.min(count, MAX_FAILURES) << TIME_BITS) | (time & TIME_MASK);
+    }
+
+    private static int count(long state) {
+        return (int) (state >>> TIME_BITS);
+    }
+
+    private static long time(long state) {
+        return state & TIME_MASK;
+    }
+
+    /**
+     * A key failures are counted by.
+     *
+     * @param local    The key of the local state
+     * @param shared   The key of the state shared with other proxies
+     * @param maxDelay The longest the key can be blocked for
+     */
+    private record Key(Object local, String shared, int freeAttempts, long maxDelay) {
+    }
+
+    private record AccountAddress(UUID account, String ip) {
+
+        private String sharedKey() {
+            return "account:" + account + ":" + ip;
+        }
+
+    }
+
+}
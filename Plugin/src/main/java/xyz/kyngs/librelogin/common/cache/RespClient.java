@@ -0,0 +1,226 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package xyz.kyngs.librelogin.common.cache;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A minimal client for the Redis serialization protocol (RESP2), so any Redis compatible server can be used without an extra dependency.
+ * The connection is opened lazily and re-opened after any failure. Use {@link RespPool} to run commands concurrently.<br>
+ * <b>This implementation is thread-safe, commands are serialized over a single connection.</b>
+ */
+public class RespClient implements Closeable {
+
+    private final String host;
+    private final int port;
+    private final String password;
+    private final int database;
+    private final int timeout;
+    private Socket socket;
+    private InputStream in;
+    private OutputStream out;
+
+    /**
+     * @param timeout Connect and read timeout in milliseconds, 0 means the reads never time out
+     */
+    public RespClient(String host, int port, String password, int database, int timeout) {
+        this.host = host;
+        this.port = port;
+        this.password = password;
+        this.database = database;
+        this.timeout = timeout;
+    }
+
+    /**
+     * Sends a command and reads its reply.
+     *
+     * @return The reply, either a {@link String}, a {@link Long}, a {@link List} or null
+     * @throws IOException If the connection fails, or the server replies with an error
+     */
+    @Nullable
+    public synchronized Object command(String... args) throws IOException {
+        try {
+            ensureConnected();
+            write(args);
+            return read();
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Sends all commands at once and reads their replies, so they cost a single round trip.
+     *
+     * @return The replies, in the order of the commands
+     * @throws IOException If the connection fails, or the server replies to any of the commands with an error
+     */
+    public synchronized List<Object> pipeline(List<String[]> commands) throws IOException {
+        try {
+            ensureConnected();
+
+            for (String[] args : commands) {
+                append(args);
+            }
+
+            out.flush();
+
+            var replies = new ArrayList<>(commands.size());
+
+            for (int i = 0; i < commands.size(); i++) {
+                replies.add(read());
+            }
+
+            return replies;
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Sends a command without reading the reply. Used to enter the subscribed state, after which only {@link #read()} may be used.
+     */
+    public synchronized void send(String... args) throws IOException {
+        try {
+            ensureConnected();
+            write(args);
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Reads a single reply, blocking until one is available.
+     */
+    @Nullable
+    public Object read() throws IOException {
+        var type = in.read();
+
+        return switch (type) {
+            case '+' -> readLine();
+            case '-' -> throw new ErrorReplyException(readLine());
+            case ':' -> Long.parseLong(readLine());
+            case '$' -> {
+                var length = Integer.parseInt(readLine());
+
+                if (length < 0) yield null;
+
+                var bytes = in.readNBytes(length);
+                if (bytes.length != length) throw new EOFException();
+                readLine();
+
+                yield new String(bytes, StandardCharsets.UTF_8);
+            }
+            case '*' -> {
+                var length = Integer.parseInt(readLine());
+
+                if (length < 0) yield null;
+
+                var list = new ArrayList<>(length);
+
+                for (int i = 0; i < length; i++) {
+                    list.add(read());
+                }
+
+                yield list;
+            }
+            case -1 -> throw new EOFException("Connection closed by the server");
+            default -> throw new IOException("Unknown reply type: " + (char) type);
+        };
+    }
+
+    @Override
+    public synchronized void close() {
+        if (socket == null) return;
+
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+        }
+
+        socket = null;
+        in = null;
+        out = null;
+    }
+
+    private void ensureConnected() throws IOException {
+        if (socket != null) return;
+
+        var socket = new Socket();
+
+        socket.connect(new InetSocketAddress(host, port), timeout);
+        socket.setSoTimeout(timeout);
+        socket.setTcpNoDelay(true);
+
+        this.socket = socket;
+        this.in = new BufferedInputStream(socket.getInputStream());
+        this.out = new BufferedOutputStream(socket.getOutputStream());
+
+        if (!password.isEmpty()) {
+            write("AUTH", password);
+            read();
+        }
+
+        if (database != 0) {
+            write("SELECT", String.valueOf(database));
+            read();
+        }
+    }
+
+    private void write(String... args) throws IOException {
+        append(args);
+        out.flush();
+    }
+
+    private void append(String... args) throws IOException {
+        out.write(('*' + String.valueOf(args.length) + "\r\n").getBytes(StandardCharsets.UTF_8));
+
+        for (String arg : args) {
+            var bytes = arg.getBytes(StandardCharsets.UTF_8);
+
+            out.write(('$' + String.valueOf(bytes.length) + "\r\n").getBytes(StandardCharsets.UTF_8));
+            out.write(bytes);
+            out.write('\r');
+            out.write('\n');
+        }
+    }
+
+    private String readLine() throws IOException {
+        var builder = new StringBuilder();
+
+        int b;
+        while ((b = in.read()) != '\r') {
+            if (b == -1) throw new EOFException("Connection closed by the server");
+            builder.append((char) b);
+        }
+
+        if (in.read() != '\n') throw new IOException("Malformed reply");
+
+        return builder.toString();
+    }
+
+    /**
+     * Thrown if the server replies with an error, the connection itself is fine.
+     */
+    public static class ErrorReplyException extends IOException {
+
+        public ErrorReplyException(String message) {
+            super("Server replied with an error: " + message);
+        }
+
+    }
+
+}
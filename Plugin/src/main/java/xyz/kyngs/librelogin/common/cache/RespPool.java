@@ -0,0 +1,114 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package xyz.kyngs.librelogin.common.cache;
+
+import org.jetbrains.annotations.Nullable;
+import xyz.kyngs.librelogin.api.util.ThrowableFunction;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A small, fixed pool of {@link RespClient} connections, so concurrent commands do not wait for each other.
+ * <br>
+ * Once a connection fails, the server is considered unavailable for a while. Until then, all commands fail immediately,
+ * instead of each one paying the connect timeout again.<br>
+ * <b>This implementation is thread-safe.</b>
+ */
+public class RespPool implements Closeable {
+
+    private final List<RespClient> clients;
+    private final BlockingQueue<RespClient> idle;
+    private final int timeout;
+    private final long retryAfter;
+    private volatile long unavailableUntil;
+
+    /**
+     * @param timeout    Connect and read timeout in milliseconds, also the longest time to wait for a free connection
+     * @param size       The number of connections
+     * @param retryAfter How long (in milliseconds) to consider the server unavailable after a failure
+     */
+    public RespPool(String host, int port, String password, int database, int timeout, int size, long retryAfter) {
+        this.timeout = timeout;
+        this.retryAfter = retryAfter;
+        this.clients = new ArrayList<>(size);
+        this.idle = new ArrayBlockingQueue<>(size);
+
+        for (int i = 0; i < size; i++) {
+            var client = new RespClient(host, port, password, database, timeout);
+
+            clients.add(client);
+            idle.add(client);
+        }
+    }
+
+    /**
+     * @return False if a connection has recently failed, and commands are skipped for now
+     */
+    public boolean isAvailable() {
+        return System.currentTimeMillis() >= unavailableUntil;
+    }
+
+    /**
+     * Runs the command on a free connection.
+     *
+     * @see RespClient#command(String...)
+     * @throws IOException If the server is unavailable, no connection is free in time, the connection fails, or the server replies with an error
+     */
+    @Nullable
+    public Object command(String... args) throws IOException {
+        return run(client -> client.command(args));
+    }
+
+    /**
+     * Runs the commands on a free connection, in a single round trip.
+     *
+     * @see RespClient#pipeline(List)
+     * @throws IOException If the server is unavailable, no connection is free in time, the connection fails, or the server replies with an error
+     */
+    public List<Object> pipeline(List<String[]> commands) throws IOException {
+        return run(client -> client.pipeline(commands));
+    }
+
+    private <V> V run(ThrowableFunction<RespClient, V, IOException> action) throws IOException {
+        if (!isAvailable()) throw new IOException("Server unavailable, skipping");
+
+        RespClient client;
+
+        try {
+            client = idle.poll(timeout, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+
+        if (client == null) throw new IOException("No free connection");
+
+        try {
+            return action.apply(client);
+        } catch (RespClient.ErrorReplyException e) {
+            throw e;
+        } catch (IOException e) {
+            unavailableUntil = System.currentTimeMillis() + retryAfter;
+            throw e;
+        } finally {
+            idle.add(client);
+        }
+    }
+
+    @Override
+    public void close() {
+        clients.forEach(RespClient::close);
+    }
+
+}
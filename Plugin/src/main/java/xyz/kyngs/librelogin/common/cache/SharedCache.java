@@ -0,0 +1,438 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package xyz.kyngs.librelogin.common.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.gson.JsonObject;
+import org.jetbrains.annotations.Nullable;
+import xyz.kyngs.librelogin.api.database.User;
+import xyz.kyngs.librelogin.api.premium.PremiumUser;
+import xyz.kyngs.librelogin.common.AuthenticLibreLogin;
+import xyz.kyngs.librelogin.common.database.UserSerializer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static xyz.kyngs.librelogin.common.config.ConfigurationKeys.*;
+
+/**
+ * A cache shared by all proxies of a network, stored in a Redis compatible server.
+ * <br>
+ * It holds premium name resolutions, sessions, and if enabled, the users which have been recently loaded (most likely the ones online).
+ * Users contain credentials, so they are only cached if explicitly allowed.
+ * Each proxy additionally keeps the users in a short-lived local cache. Whenever a user is changed, the other proxies are notified
+ * through pub/sub, and drop their local copy.
+ * <br>
+ * The cache is strictly optional, every failure is treated as a miss, and the caller falls back to the database or the API.<br>
+ * <b>This implementation is thread-safe.</b>
+ */
+public class SharedCache {
+
+    private final AuthenticLibreLogin<?, ?> plugin;
+    private final RespPool client;
+    private final RespClient subscriber;
+    private final String prefix;
+    private final String channel;
+    private final String proxyId;
+    private final long ttl;
+    private final boolean cacheUsers;
+    private final Cache<UUID, String> localUsers;
+    private volatile boolean running;
+
+    public SharedCache(AuthenticLibreLogin<?, ?> plugin) {
+        this.plugin = plugin;
+
+        var configuration = plugin.getConfiguration();
+
+        this.client = new RespPool(
+                configuration.get(SHARED_CACHE_HOST),
+                configuration.get(SHARED_CACHE_PORT),
+                configuration.get(SHARED_CACHE_PASSWORD),
+                configuration.get(SHARED_CACHE_DATABASE),
+                configuration.get(SHARED_CACHE_TIMEOUT),
+                Math.max(1, configuration.get(SHARED_CACHE_CONNECTIONS)),
+                TimeUnit.SECONDS.toMillis(configuration.get(SHARED_CACHE_RETRY_AFTER))
+        );
+        this.subscriber = new RespClient(
+                configuration.get(SHARED_CACHE_HOST),
+                configuration.get(SHARED_CACHE_PORT),
+                configuration.get(SHARED_CACHE_PASSWORD),
+                configuration.get(SHARED_CACHE_DATABASE),
+                0
+        );
+        this.prefix = configuration.get(SHARED_CACHE_KEY_PREFIX);
+        this.channel = prefix + "invalidate";
+        this.proxyId = UUID.randomUUID().toString();
+        this.ttl = TimeUnit.SECONDS.toMillis(configuration.get(SHARED_CACHE_TTL));
+        this.cacheUsers = configuration.get(SHARED_CACHE_USERS);
+        this.localUsers = Caffeine.newBuilder()
+                .maximumSize(10000)
+                .expireAfterWrite(1, TimeUnit.MINUTES)
+                .build();
+    }
+
+    /**
+     * Verifies the connection and starts listening for invalidations.
+     */
+    public void connect() throws IOException {
+        client.command("PING");
+
+        // Only the local copies of users need invalidating
+        if (!cacheUsers) return;
+
+        running = true;
+
+        var thread = new Thread(this::listen, "LibreLogin Shared Cache Subscriber");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public void disconnect() {
+        running = false;
+        subscriber.close();
+        client.close();
+    }
+
+    /**
+     * @return Null if the name is not cached
+     */
+    @Nullable
+    public PremiumEntry getPremiumUser(String name) {
+        var raw = get("premium:" + name.toLowerCase(Locale.ROOT));
+
+        if (raw == null) return null;
+
+        var json = AuthenticLibreLogin.GSON.fromJson(raw, JsonObject.class);
+
+        if (json == null) return new PremiumEntry(null);
+
+        return new PremiumEntry(new PremiumUser(UUID.fromString(json.get("uuid").getAsString()), json.get("name").getAsString()));
+    }
+
+    public void putPremiumUser(String name, @Nullable PremiumUser user) {
+        var json = new JsonObject();
+
+        if (user != null) {
+            json.addProperty("uuid", user.uuid().toString());
+            json.addProperty("name", user.name());
+        }
+
+        set("premium:" + name.toLowerCase(Locale.ROOT), user == null ? "null" : json.toString(), ttl);
+    }
+
+    /**
+     * @return The IP address the session is bound to, or null if there's no shared session
+     */
+    @Nullable
+    public String getSession(UUID uuid) {
+        return get("session:" + uuid);
+    }
+
+    @Nullable
+    public User getUser(UUID uuid) {
+        if (!cacheUsers) return null;
+
+        // Users are mutable, so only the serialized form is kept locally, and every caller gets its own copy
+        var raw = localUsers.getIfPresent(uuid);
+
+        if (raw == null) {
+            raw = get("user:" + uuid);
+
+            if (raw == null) return null;
+
+            localUsers.put(uuid, raw);
+        }
+
+        return UserSerializer.deserialize(raw);
+    }
+
+    @Nullable
+    public User getUserByName(String name) {
+        if (!cacheUsers) return null;
+
+        var uuid = get("name:" + name.toLowerCase(Locale.ROOT));
+
+        if (uuid == null) return null;
+
+        var user = getUser(UUID.fromString(uuid));
+
+        // The player might have changed their name in the meantime
+        return user != null && user.getLastNickname().equalsIgnoreCase(name) ? user : null;
+    }
+
+    @Nullable
+    public User getUserByPremiumUUID(UUID premiumUUID) {
+        if (!cacheUsers) return null;
+
+        var uuid = get("premium-uuid:" + premiumUUID);
+
+        if (uuid == null) return null;
+
+        var user = getUser(UUID.fromString(uuid));
+
+        return user != null && premiumUUID.equals(user.getPremiumUUID()) ? user : null;
+    }
+
+    /**
+     * Stores the session of the user, and the user itself if allowed, without notifying the other proxies.
+     */
+    public void putUser(User user) {
+        var uuid = user.getUuid().toString();
+
+        if (cacheUsers) {
+            var raw = UserSerializer.serialize(user);
+
+            localUsers.put(user.getUuid(), raw);
+
+            set("user:" + uuid, raw, ttl);
+            set("name:" + user.getLastNickname().toLowerCase(Locale.ROOT), uuid, ttl);
+            if (user.getPremiumUUID() != null) set("premium-uuid:" + user.getPremiumUUID(), uuid, ttl);
+        }
+
+        var sessionTimeout = TimeUnit.SECONDS.toMillis(plugin.getConfiguration().get(SESSION_TIMEOUT));
+
+        if (sessionTimeout > 0 && user.getLastAuthentication() != null && user.getIp() != null) {
+            var remaining = user.getLastAuthentication().getTime() + sessionTimeout - System.currentTimeMillis();
+
+            if (remaining > 0) {
+                set("session:" + uuid, user.getIp(), remaining);
+                return;
+            }
+        }
+
+        delete("session:" + uuid);
+    }
+
+    /**
+     * Stores the changed user and tells the other proxies to drop their local copy.
+     */
+    public void updateUser(User user) {
+        putUser(user);
+        if (cacheUsers) publish(user.getUuid());
+    }
+
+    public void invalidateUser(UUID uuid) {
+        delete("session:" + uuid);
+
+        if (!cacheUsers) return;
+
+        localUsers.invalidate(uuid);
+        delete("user:" + uuid);
+        publish(uuid);
+    }
+
+    /**
+     * Reads the failed login attempts of all the keys in a single round trip.
+     *
+     * @return The failures of each key, an element is null if the key has none. Null if the cache is unavailable
+     */
+    @Nullable
+    public Failures[] getFailures(String... keys) {
+        var commands = new ArrayList<String[]>(keys.length * 2);
+
+        for (String key : keys) {
+            commands.add(new String[]{"GET", prefix + "failures:" + key});
+            commands.add(new String[]{"PTTL", prefix + "failures:" + key});
+        }
+
+        var replies = pipeline(commands);
+
+        if (replies == null) return null;
+
+        var failures = new Failures[keys.length];
+
+        for (int i = 0; i < keys.length; i++) {
+            // A key without an expiry was not written by us
+            if (!(replies.get(i * 2) instanceof String count) || !(replies.get(i * 2 + 1) instanceof Long ttl) || ttl < 0) continue;
+
+            try {
+                failures[i] = new Failures(Integer.parseInt(count), ttl);
+            } catch (NumberFormatException ignored) {
+            }
+        }
+
+        return failures;
+    }
+
+    /**
+     * Counts a failed login attempt of each key in a single round trip. The counter is incremented atomically on the server,
+     * so concurrent failures on different proxies are never lost. Every key expires once the ttl passes without another failure.
+     *
+     * @return The amount of failures of each key, including those counted by other proxies. Null if the cache is unavailable
+     */
+    @Nullable
+    public long[] incrementFailures(long ttl, String... keys) {
+        var commands = new ArrayList<String[]>(keys.length * 2);
+
+        for (String key : keys) {
+            commands.add(new String[]{"INCR", prefix + "failures:" + key});
+            commands.add(new String[]{"PEXPIRE", prefix + "failures:" + key, String.valueOf(ttl)});
+        }
+
+        var replies = pipeline(commands);
+
+        if (replies == null) return null;
+
+        var counts = new long[keys.length];
+
+        for (int i = 0; i < keys.length; i++) {
+            counts[i] = replies.get(i * 2) instanceof Long count ? count : 0;
+        }
+
+        return counts;
+    }
+
+    public void deleteFailures(String... keys) {
+        if (skip()) return;
+
+        var args = new String[keys.length + 1];
+
+        args[0] = "DEL";
+
+        for (int i = 0; i < keys.length; i++) {
+            args[i + 1] = prefix + "failures:" + keys[i];
+        }
+
+        try {
+            client.command(args);
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    private void publish(UUID uuid) {
+        if (skip()) return;
+
+        try {
+            client.command("PUBLISH", channel, proxyId + ":" + uuid);
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    private void listen() {
+        while (running) {
+            try {
+                subscriber.send("SUBSCRIBE", channel);
+
+                while (running) {
+                    if (!(subscriber.read() instanceof List<?> message) || message.size() < 3 || !"message".equals(message.get(0)))
+                        continue;
+
+                    var payload = String.valueOf(message.get(2));
+                    var separator = payload.lastIndexOf(':');
+
+                    // Ignore our own invalidations
+                    if (separator < 0 || payload.substring(0, separator).equals(proxyId)) continue;
+
+                    localUsers.invalidate(UUID.fromString(payload.substring(separator + 1)));
+                    plugin.getStatistics().increment("shared-cache.invalidations");
+                }
+            } catch (IOException | RuntimeException e) {
+                subscriber.close();
+
+                if (!running) return;
+
+                // Anything cached locally might be stale by now
+                localUsers.invalidateAll();
+                fail(e);
+
+                try {
+                    Thread.sleep(1000);
+                } catch (InterruptedException ex) {
+                    return;
+                }
+            }
+        }
+    }
+
+    @Nullable
+    private String get(String key) {
+        if (skip()) return null;
+
+        try {
+            var value = client.command("GET", prefix + key);
+
+            plugin.getStatistics().increment(value == null ? "shared-cache.misses" : "shared-cache.hits");
+
+            return (String) value;
+        } catch (IOException e) {
+            fail(e);
+            return null;
+        }
+    }
+
+    private void set(String key, String value, long ttl) {
+        if (skip()) return;
+
+        try {
+            client.command("SET", prefix + key, value, "PX", String.valueOf(ttl));
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    @Nullable
+    private List<Object> pipeline(List<String[]> commands) {
+        if (skip()) return null;
+
+        try {
+            return client.pipeline(commands);
+        } catch (IOException e) {
+            fail(e);
+            return null;
+        }
+    }
+
+    private void delete(String key) {
+        if (skip()) return;
+
+        try {
+            client.command("DEL", prefix + key);
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * @return True if the cache server has recently failed, and the cache should not be used for now
+     */
+    private boolean skip() {
+        if (client.isAvailable()) return false;
+
+        plugin.getStatistics().increment("shared-cache.skipped");
+        return true;
+    }
+
+    private void fail(Exception e) {
+        plugin.getStatistics().increment("shared-cache.errors");
+        plugin.getLogger().debug("Shared cache failure: %s: %s".formatted(e.getClass().getSimpleName(), e.getMessage()));
+    }
+
+    /**
+     * A cached premium name resolution.
+     *
+     * @param user The premium user, or null if the name is known not to be premium
+     */
+    public record PremiumEntry(@Nullable PremiumUser user) {
+    }
+
+    /**
+     * The failed login attempts of a key.
+     *
+     * @param count     The amount of failures
+     * @param expiresIn In how many milliseconds the failures are forgotten
+     */
+    public record Failures(int count, long expiresIn) {
+    }
+
+}
@@ -0,0 +1,129 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package xyz.kyngs.librelogin.common.cache;
+
+import org.jetbrains.annotations.Nullable;
+import xyz.kyngs.librelogin.api.database.User;
+import xyz.kyngs.librelogin.api.database.connector.DatabaseConnector;
+import xyz.kyngs.librelogin.common.AuthenticLibreLogin;
+import xyz.kyngs.librelogin.common.database.AuthenticDatabaseProvider;
+import xyz.kyngs.librelogin.common.database.PreLoginLookup;
+
+import java.util.Collection;
+import java.util.UUID;
+
+/**
+ * Serves single user lookups from the {@link SharedCache}, and falls back to the wrapped provider.
+ * Bulk operations always go straight to the wrapped provider.
+ */
+public class SharedCacheDatabaseProvider extends AuthenticDatabaseProvider<DatabaseConnector<?, ?>> {
+
+    private final AuthenticDatabaseProvider<?> delegate;
+    private final SharedCache cache;
+
+    public SharedCacheDatabaseProvider(AuthenticDatabaseProvider<?> delegate, DatabaseConnector<?, ?> connector, SharedCache cache, AuthenticLibreLogin<?, ?> plugin) {
+        super(connector, plugin);
+        this.delegate = delegate;
+        this.cache = cache;
+    }
+
+    public AuthenticDatabaseProvider<?> getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public User getByName(String name) {
+        var cached = cache.getUserByName(name);
+
+        if (cached != null) return cached;
+
+        return store(delegate.getByName(name));
+    }
+
+    @Override
+    public User getByUUID(UUID uuid) {
+        var cached = cache.getUser(uuid);
+
+        if (cached != null) return cached;
+
+        return store(delegate.getByUUID(uuid));
+    }
+
+    @Override
+    public User getByPremiumUUID(UUID uuid) {
+        var cached = cache.getUserByPremiumUUID(uuid);
+
+        if (cached != null) return cached;
+
+        return store(delegate.getByPremiumUUID(uuid));
+    }
+
+    @Override
+    public Collection<User> getAllUsers() {
+        return delegate.getAllUsers();
+    }
+
+    @Override
+    public Collection<User> getByIP(String ip) {
+        return delegate.getByIP(ip);
+    }
+
+    @Override
+    public void insertUser(User user) {
+        delegate.insertUser(user);
+        cache.updateUser(user);
+    }
+
+    @Override
+    public void insertUsers(Collection<User> users) {
+        delegate.insertUsers(users);
+    }
+
+    @Override
+    public void updateUser(User user) {
+        delegate.updateUser(user);
+        cache.updateUser(user);
+    }
+
+    @Override
+    public void deleteUser(User user) {
+        delegate.deleteUser(user);
+        cache.invalidateUser(user.getUuid());
+    }
+
+    @Override
+    public void validateSchema() {
+        delegate.validateSchema();
+    }
+
+    @Override
+    public boolean isAvailable() {
+        return delegate.isAvailable();
+    }
+
+    @Override
+    public void forEachIdentity(IdentityConsumer consumer) {
+        delegate.forEachIdentity(consumer);
+    }
+
+    @Override
+    public PreLoginLookup lookupForPreLogin(String name, @Nullable UUID premiumUUID, UUID newUUID) {
+        var lookup = delegate.lookupForPreLogin(name, premiumUUID, newUUID);
+
+        store(lookup.byPremiumUUID());
+        store(lookup.byName());
+        store(lookup.byNewUUID());
+
+        return lookup;
+    }
+
+    private User store(User user) {
+        if (user != null) cache.putUser(user);
+        return user;
+    }
+
+}
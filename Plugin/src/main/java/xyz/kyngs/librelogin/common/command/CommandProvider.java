@@ -29,24 +29,33 @@ import xyz.kyngs.librelogin.common.command.commands.premium.PremiumEnableCommand
 import xyz.kyngs.librelogin.common.command.commands.staff.LibreLoginCommand;
 import xyz.kyngs.librelogin.common.command.commands.tfa.TwoFactorAuthCommand;
 import xyz.kyngs.librelogin.common.command.commands.tfa.TwoFactorConfirmCommand;
+import xyz.kyngs.librelogin.common.database.DatabaseUnavailableException;
 import xyz.kyngs.librelogin.common.util.RateLimiter;
 
 import java.util.HashMap;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
 
+import static xyz.kyngs.librelogin.common.config.ConfigurationKeys.*;
+
 public class CommandProvider<P, S> extends AuthenticHandler<P, S> {
 
     public static final LegacyComponentSerializer ACF_SERIALIZER = LegacyComponentSerializer.legacySection();
 
     private final CommandManager<?, ?, ?, ?, ?, ?> manager;
     private final RateLimiter<UUID> limiter;
+    private final RateLimiter<UUID> eMailLimiter;
+    private final RateLimiter<UUID> twoFactorLimiter;
     private final Cache<UUID, Object> confirmCache;
 
     public CommandProvider(AuthenticLibreLogin<P, S> plugin) {
         super(plugin);
 
-        limiter = new RateLimiter<>(1, TimeUnit.SECONDS);
+        var configuration = plugin.getConfiguration();
+
+        limiter = new RateLimiter<>(configuration.get(RATE_LIMIT_COMMANDS_BURST), configuration.get(RATE_LIMIT_COMMANDS_PER_MINUTE), 1, TimeUnit.MINUTES);
+        eMailLimiter = new RateLimiter<>(configuration.get(RATE_LIMIT_EMAIL_BURST), configuration.get(RATE_LIMIT_EMAIL_PER_MINUTE), 1, TimeUnit.MINUTES);
+        twoFactorLimiter = new RateLimiter<>(configuration.get(RATE_LIMIT_TWO_FACTOR_BURST), configuration.get(RATE_LIMIT_TWO_FACTOR_PER_MINUTE), 1, TimeUnit.MINUTES);
 
         manager = plugin.provideManager();
 
@@ -80,6 +89,11 @@ public class CommandProvider<P, S> extends AuthenticHandler<P, S> {
         });
 
         manager.setDefaultExceptionHandler((command, registeredCommand, sender, args, t) -> {
+            if (t instanceof DatabaseUnavailableException) {
+                plugin.getAudienceFromIssuer(sender).sendMessage(plugin.getMessages().getMessage("error-database-unavailable"));
+                return true;
+            }
+
             if (!(t instanceof xyz.kyngs.librelogin.common.command.InvalidCommandArgument ourEx)) {
                 var logger = plugin.getLogger();
 
@@ -151,6 +165,20 @@ public class CommandProvider<P, S> extends AuthenticHandler<P, S> {
         return limiter;
     }
 
+    /**
+     * @return The limiter shared by all commands, which send an e-mail
+     */
+    public RateLimiter<UUID> getEMailLimiter() {
+        return eMailLimiter;
+    }
+
+    /**
+     * @return The limiter shared by all commands, which verify a 2FA code
+     */
+    public RateLimiter<UUID> getTwoFactorLimiter() {
+        return twoFactorLimiter;
+    }
+
     public void injectMessages() {
         var locales = manager.getLocales();
         var localeMap = new HashMap<String, String>();
@@ -16,6 +16,8 @@ import xyz.kyngs.librelogin.common.event.events.AuthenticWrongPasswordEvent;
 
 import java.util.concurrent.CompletionStage;
 
+import static xyz.kyngs.librelogin.common.config.ConfigurationKeys.REHASH_ON_LOGIN;
+
 @CommandAlias("login|l|log")
 public class LoginCommand<P> extends AuthorizationCommand<P> {
 
@@ -32,6 +34,16 @@ public class LoginCommand<P> extends AuthorizationCommand<P> {
             var user = getUser(player);
             if (!user.isRegistered()) throw new InvalidCommandArgument(getMessage("error-not-registered"));
 
+            var tracker = plugin.getFailureTracker();
+
+            if (tracker != null) {
+                // Reject before hashing, so that guessing costs the attacker time and us no CPU
+                var wait = tracker.checkAttempt(user.getUuid(), plugin.getPlatformHandle().getIP(player));
+
+                if (wait > 0)
+                    throw new InvalidCommandArgument(getMessage("error-login-throttled", "%seconds%", String.valueOf((wait + 999) / 1000)));
+            }
+
             sender.sendMessage(getMessage("info-logging-in"));
 
             var hashed = user.getHashedPassword();
@@ -62,6 +74,9 @@ public class LoginCommand<P> extends AuthorizationCommand<P> {
                         throw new InvalidCommandArgument(getMessage("totp-wrong"));
                     }
 
+                    if (plugin.getCommandProvider().getTwoFactorLimiter().tryAndLimit(user.getUuid()))
+                        throw new InvalidCommandArgument(getMessage("error-throttle"));
+
                     if (!totp.verify(parsedCode, secret)) {
                         plugin.getEventProvider()
                                 .unsafeFire(plugin.getEventTypes().wrongPassword,
@@ -73,6 +88,8 @@ public class LoginCommand<P> extends AuthorizationCommand<P> {
 
             sender.sendMessage(getMessage("info-logged-in"));
             getAuthorizationProvider().authorize(user, player, AuthenticatedEvent.AuthenticationReason.LOGIN);
+
+            if (plugin.getConfiguration().get(REHASH_ON_LOGIN)) plugin.getPasswordRehasher().rehashAsync(user, password);
         });
     }
 
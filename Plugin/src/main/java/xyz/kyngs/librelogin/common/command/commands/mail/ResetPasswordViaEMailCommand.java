@@ -15,17 +15,13 @@ import xyz.kyngs.librelogin.common.AuthenticLibreLogin;
 import xyz.kyngs.librelogin.common.command.InvalidCommandArgument;
 import xyz.kyngs.librelogin.common.config.ConfigurationKeys;
 import xyz.kyngs.librelogin.common.util.GeneralUtil;
-import xyz.kyngs.librelogin.common.util.RateLimiter;
 
 import java.util.UUID;
 import java.util.concurrent.CompletionStage;
-import java.util.concurrent.TimeUnit;
 
 @CommandAlias("resetpassword")
 public class ResetPasswordViaEMailCommand<P> extends EMailCommand<P> {
 
-    private final RateLimiter<UUID> limiter = new RateLimiter<>(1, TimeUnit.MINUTES);
-
     public ResetPasswordViaEMailCommand(AuthenticLibreLogin<P, ?> plugin) {
         super(plugin);
     }
@@ -40,7 +36,7 @@ public class ResetPasswordViaEMailCommand<P> extends EMailCommand<P> {
             if (user.getEmail() == null)
                 throw new InvalidCommandArgument(getMessage("error-no-email"));
 
-            if (limiter.tryAndLimit(uuid)) {
+            if (plugin.getCommandProvider().getEMailLimiter().tryAndLimit(uuid)) {
                 throw new InvalidCommandArgument(getMessage("error-mail-throttle"));
             }
 
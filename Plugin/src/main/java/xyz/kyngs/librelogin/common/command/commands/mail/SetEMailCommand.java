@@ -15,17 +15,13 @@ import xyz.kyngs.librelogin.common.command.InvalidCommandArgument;
 import xyz.kyngs.librelogin.common.config.ConfigurationKeys;
 import xyz.kyngs.librelogin.common.event.events.AuthenticWrongPasswordEvent;
 import xyz.kyngs.librelogin.common.util.GeneralUtil;
-import xyz.kyngs.librelogin.common.util.RateLimiter;
 
 import java.util.UUID;
 import java.util.concurrent.CompletionStage;
-import java.util.concurrent.TimeUnit;
 
 @CommandAlias("setemail")
 public class SetEMailCommand<P> extends EMailCommand<P> {
 
-    private final RateLimiter<UUID> limiter = new RateLimiter<>(1, TimeUnit.MINUTES);
-
     public SetEMailCommand(AuthenticLibreLogin<P, ?> premium) {
         super(premium);
     }
@@ -47,7 +43,7 @@ public class SetEMailCommand<P> extends EMailCommand<P> {
                 throw new InvalidCommandArgument(getMessage("error-password-wrong"));
             }
 
-            if (limiter.tryAndLimit(uuid)) {
+            if (plugin.getCommandProvider().getEMailLimiter().tryAndLimit(uuid)) {
                 throw new InvalidCommandArgument(getMessage("error-mail-throttle"));
             }
 
@@ -15,6 +15,7 @@ import xyz.kyngs.librelogin.api.database.User;
 import xyz.kyngs.librelogin.api.event.events.AuthenticatedEvent;
 import xyz.kyngs.librelogin.common.AuthenticLibreLogin;
 import xyz.kyngs.librelogin.common.command.InvalidCommandArgument;
+import xyz.kyngs.librelogin.common.crypto.HashCalibrator;
 import xyz.kyngs.librelogin.common.database.AuthenticUser;
 import xyz.kyngs.librelogin.common.event.events.AuthenticPasswordChangeEvent;
 import xyz.kyngs.librelogin.common.event.events.AuthenticPremiumLoginSwitchEvent;
@@ -62,6 +63,27 @@ public class LibreLoginCommand<P> extends StaffCommand<P> {
         });
     }
 
+    @Subcommand("calibrate")
+    @CommandPermission("librelogin.calibrate")
+    @Syntax("{@@syntax.calibrate}")
+    @CommandCompletion("%autocomplete.calibrate")
+    public CompletionStage<Void> onCalibrate(Audience audience, @Default("250") long targetMillis) {
+        return runAsync(() -> {
+            audience.sendMessage(getMessage("info-calibrating"));
+
+            var result = HashCalibrator.calibrate(Math.max(1, targetMillis));
+
+            audience.sendMessage(getMessage("info-calibrated",
+                    "%target%", String.valueOf(targetMillis),
+                    "%memory%", String.valueOf(result.memory()),
+                    "%iterations%", String.valueOf(result.iterations()),
+                    "%argon_millis%", String.valueOf(result.argonMillis()),
+                    "%cost%", String.valueOf(result.cost()),
+                    "%bcrypt_millis%", String.valueOf(result.bcryptMillis())
+            ));
+        });
+    }
+
     @Subcommand("dump")
     @CommandPermission("librelogin.dump")
     public CompletionStage<Void> onDump(Audience audience) {
@@ -141,6 +163,7 @@ public class LibreLoginCommand<P> extends StaffCommand<P> {
             server.add("threads", threads);
 
             dump.add("server", server);
+            dump.add("statistics", GSON.toJsonTree(plugin.getStatistics().snapshot()));
 
             try (var writer = new FileWriter(dumpFile)) {
                 writer.write(GSON.toJson(dump));
@@ -161,6 +184,7 @@ public class LibreLoginCommand<P> extends StaffCommand<P> {
 
             try {
                 plugin.getConfiguration().reload(plugin);
+                plugin.configureCryptoProviders();
             } catch (IOException e) {
                 e.printStackTrace();
                 throw new InvalidCommandArgument(getMessage("error-unknown"));
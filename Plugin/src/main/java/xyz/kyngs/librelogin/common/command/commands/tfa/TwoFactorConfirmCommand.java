@@ -44,6 +44,9 @@ public class TwoFactorConfirmCommand<P> extends Command<P> {
                 throw new InvalidCommandArgument(getMessage("totp-wrong"));
             }
 
+            if (plugin.getCommandProvider().getTwoFactorLimiter().tryAndLimit(user.getUuid()))
+                throw new InvalidCommandArgument(getMessage("error-throttle"));
+
             if (!auth.confirmTwoFactorAuth(player, parsedCode, user)) {
                 throw new InvalidCommandArgument(getMessage("totp-wrong"));
             }
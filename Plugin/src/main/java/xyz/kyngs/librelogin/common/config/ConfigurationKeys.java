@@ -86,6 +86,59 @@ public class ConfigurationKeys {
             ConfigurateHelper::getString
     );
 
+    public static final ConfigurationKey<Boolean> REHASH_ON_LOGIN = new ConfigurationKey<>(
+            "rehash-on-login",
+            true,
+            """
+                    Should passwords be rehashed with the default crypto provider when the player logs in?
+                    This upgrades passwords hashed by a different provider (e.g. migrated from AuthMe) or with different parameters. The rehashing happens in the background, after the player has logged in.
+                    """,
+            ConfigurateHelper::getBoolean
+    );
+
+    public static final ConfigurationKey<?> CRYPTO = ConfigurationKey.getComment(
+            "crypto",
+            """
+                    The cost of hashing passwords. Higher costs make stolen hashes harder to crack, but every login and registration takes longer and uses more CPU.
+                    Use /librelogin calibrate to find suitable values for your machine. Passwords hashed with different values are rehashed on login, if rehash-on-login is enabled.
+                    """
+    );
+
+    public static final ConfigurationKey<Integer> ARGON2_MEMORY = new ConfigurationKey<>(
+            "crypto.argon2-memory",
+            16384,
+            "The memory (in KiB) used by a single Argon-2ID hash.",
+            (helper, key) -> Math.max(8, helper.getInt(key))
+    );
+
+    public static final ConfigurationKey<Integer> ARGON2_ITERATIONS = new ConfigurationKey<>(
+            "crypto.argon2-iterations",
+            2,
+            "The amount of iterations of a single Argon-2ID hash.",
+            (helper, key) -> Math.max(1, helper.getInt(key))
+    );
+
+    public static final ConfigurationKey<Integer> BCRYPT_COST = new ConfigurationKey<>(
+            "crypto.bcrypt-cost",
+            10,
+            "The cost of a BCrypt-2A hash, between 4 and 31. Every increment doubles the time needed.",
+            (helper, key) -> Math.max(4, Math.min(31, helper.getInt(key)))
+    );
+
+    public static final ConfigurationKey<Boolean> CRYPTO_BENCHMARK = new ConfigurationKey<>(
+            "crypto.benchmark",
+            true,
+            "Should the default crypto provider be benchmarked after startup? The result is printed to the console.",
+            ConfigurateHelper::getBoolean
+    );
+
+    public static final ConfigurationKey<Integer> CRYPTO_PEAK_LOGINS = new ConfigurationKey<>(
+            "crypto.peak-logins-per-second",
+            10,
+            "How many logins and registrations per second do you expect at peak? The benchmark warns you, if the server could not hash that many passwords.",
+            ConfigurateHelper::getInt
+    );
+
     public static final ConfigurationKey<String> PROFILE_CONFLICT_RESOLUTION_STRATEGY = new ConfigurationKey<>(
             "profile-conflict-resolution-strategy",
             "BLOCK",
@@ -193,10 +246,383 @@ public class ConfigurationKeys {
                     librelogin-mysql - MySQL database, you must fill out the mysql section below.
                     librelogin-postgresql - PostgreSQL database, you must fill out the postgresql section below.
                     librelogin-sqlite - SQLite database, default file is "database.db", you can change it in the sqlite section below.
+                    librelogin-embedded - Embedded file database, the fastest option for a single proxy, cannot be shared between proxies. You can change the file in the embedded section below.
+                    """,
+            ConfigurateHelper::getString
+    );
+
+    public static final ConfigurationKey<Integer> DATABASE_RETRY_ATTEMPTS = new ConfigurationKey<>(
+            "database.retry-attempts",
+            3,
+            "How many times should a query be attempted, when the connection to the database is temporarily lost. After that, the database is considered unavailable.",
+            ConfigurateHelper::getInt
+    );
+
+    public static final ConfigurationKey<Long> DATABASE_RETRY_BACKOFF = new ConfigurationKey<>(
+            "database.retry-backoff",
+            250L,
+            "The delay in milliseconds before the first retry of a failed query. The delay doubles with every following retry.",
+            ConfigurateHelper::getLong
+    );
+
+    public static final ConfigurationKey<Long> DATABASE_UNAVAILABLE_COOLDOWN = new ConfigurationKey<>(
+            "database.unavailable-cooldown",
+            5000L,
+            "For how long in milliseconds should queries be refused after the database has been deemed unavailable. Players cannot join during this time, already authorized players are not affected.",
+            ConfigurateHelper::getLong
+    );
+
+    public static final ConfigurationKey<Integer> DATABASE_MAX_PENDING_WRITES = new ConfigurationKey<>(
+            "database.max-pending-writes",
+            10000,
+            "How many writes (e.g. last seen updates) should be kept in memory while the database is unavailable. They are written once the connection is restored.",
+            ConfigurateHelper::getInt
+    );
+
+    public static final ConfigurationKey<Boolean> DATABASE_NAME_FILTER = new ConfigurationKey<>(
+            "database.name-filter",
+            false,
+            """
+                    Should LibreLogin keep a compact in-memory filter of all known nicknames and UUIDs?
+                    Connections with unknown nicknames (such as bots) then don't need to query the database.
+                    !! ONLY ENABLE THIS IF THIS PROXY IS THE ONLY ONE USING THE DATABASE !!
+                    The filter only learns about players registered through this proxy. If another proxy (or server) writes to the same database, players registered there are treated as unknown until the next rebuild, which breaks the nickname conflict checks.
+                    The filter is automatically disabled with RedisBungee and with the shared cache, but other multi-proxy setups cannot be detected.
                     """,
+            ConfigurateHelper::getBoolean
+    );
+
+    public static final ConfigurationKey<Long> DATABASE_NAME_FILTER_REBUILD_INTERVAL = new ConfigurationKey<>(
+            "database.name-filter-rebuild-interval",
+            3600L,
+            "How often (in seconds) should the name filter be rebuilt, to forget deleted players and renamed nicknames.",
+            ConfigurateHelper::getLong
+    );
+
+    public static final ConfigurationKey<Integer> HTTP_TIMEOUT = new ConfigurationKey<>(
+            "http.timeout",
+            5000,
+            "How long (in milliseconds) to wait for responses of web services, such as the Mojang API.",
+            ConfigurateHelper::getInt
+    );
+
+    public static final ConfigurationKey<Integer> HTTP_MAX_CONCURRENT_PER_HOST = new ConfigurationKey<>(
+            "http.max-concurrent-per-host",
+            8,
+            "How many requests can be sent to a single web service at the same time. Others have to wait.",
+            ConfigurateHelper::getInt
+    );
+
+    public static final ConfigurationKey<Integer> HTTP_MAX_QUEUED_PER_HOST = new ConfigurationKey<>(
+            "http.max-queued-per-host",
+            256,
+            "How many requests can wait for a single web service. Any more fail immediately.",
+            ConfigurateHelper::getInt
+    );
+
+    public static final ConfigurationKey<?> MOJANG_RATE_LIMIT = ConfigurationKey.getComment(
+            "mojang-rate-limit",
+            """
+                    LibreLogin counts its own requests to the Mojang API, and uses PlayerDB and Ashcon instead, before Mojang starts refusing the requests.
+                    Lookups nobody waits for (migrations, staff commands) are postponed, so that they do not use up the limit for connecting players.
+                    """
+    );
+
+    public static final ConfigurationKey<Integer> MOJANG_RATE_LIMIT_REQUESTS = new ConfigurationKey<>(
+            "mojang-rate-limit.requests",
+            540,
+            "How many requests can be sent to a single Mojang endpoint in the period. Mojang allows about 600 per 10 minutes, keep some headroom.",
+            ConfigurateHelper::getInt
+    );
+
+    public static final ConfigurationKey<Long> MOJANG_RATE_LIMIT_PERIOD = new ConfigurationKey<>(
+            "mojang-rate-limit.period",
+            600L,
+            "The period (in seconds) of the limit above.",
+            ConfigurateHelper::getLong
+    );
+
+    public static final ConfigurationKey<Integer> MOJANG_RATE_LIMIT_LOGIN_RESERVE = new ConfigurationKey<>(
+            "mojang-rate-limit.login-reserve",
+            25,
+            "How much of the limit (in percent) can only be used by connecting players.",
+            ConfigurateHelper::getInt
+    );
+
+    public static final ConfigurationKey<Long> MOJANG_RATE_LIMIT_BACKGROUND_MAX_WAIT = new ConfigurationKey<>(
+            "mojang-rate-limit.background-max-wait",
+            60000L,
+            "How long (in milliseconds) can a postponed lookup wait for Mojang, before it is sent to PlayerDB or Ashcon instead.",
+            ConfigurateHelper::getLong
+    );
+
+    public static final ConfigurationKey<?> ADMISSION = ConfigurationKey.getComment(
+            "admission",
+            """
+                    Limits how fast players can connect, before LibreLogin contacts the database or the Mojang API.
+                    This protects the server from bot floods. Rejected players receive the kick-admission-* messages.
+                    """
+    );
+
+    public static final ConfigurationKey<Boolean> ADMISSION_ENABLED = new ConfigurationKey<>(
+            "admission.enabled",
+            false,
+            "Should the connection limits be enforced? Tune the limits to your player base before enabling, players behind a shared address (e.g. a school or a mobile carrier) count as one.",
+            ConfigurateHelper::getBoolean
+    );
+
+    public static final ConfigurationKey<Integer> ADMISSION_IP_PER_MINUTE = new ConfigurationKey<>(
+            "admission.ip-per-minute",
+            12,
+            "How many connections per minute are allowed from a single IP address.",
+            ConfigurateHelper::getInt
+    );
+
+    public static final ConfigurationKey<Integer> ADMISSION_IP_BURST = new ConfigurationKey<>(
+            "admission.ip-burst",
+            4,
+            "How many connections from a single IP address are allowed in a quick succession.",
+            ConfigurateHelper::getInt
+    );
+
+    public static final ConfigurationKey<Integer> ADMISSION_SUBNET_PER_MINUTE = new ConfigurationKey<>(
+            "admission.subnet-per-minute",
+            60,
+            "How many connections per minute are allowed from a single subnet (/24 for IPv4, /48 for IPv6).",
+            ConfigurateHelper::getInt
+    );
+
+    public static final ConfigurationKey<Integer> ADMISSION_SUBNET_BURST = new ConfigurationKey<>(
+            "admission.subnet-burst",
+            20,
+            "How many connections from a single subnet are allowed in a quick succession.",
+            ConfigurateHelper::getInt
+    );
+
+    public static final ConfigurationKey<Integer> ADMISSION_MAX_CONCURRENT = new ConfigurationKey<>(
+            "admission.max-concurrent",
+            32,
+            "How many connections can be processed at the same time. Others have to wait.",
+            ConfigurateHelper::getInt
+    );
+
+    public static final ConfigurationKey<Integer> ADMISSION_MAX_WAIT = new ConfigurationKey<>(
+            "admission.max-wait",
+            3000,
+            "How long (in milliseconds) can a connection wait for processing, before it is rejected.",
+            ConfigurateHelper::getInt
+    );
+
+    public static final ConfigurationKey<Integer> ADMISSION_MAX_WAITING = new ConfigurationKey<>(
+            "admission.max-waiting",
+            32,
+            "How many connections can wait for processing at the same time. Any more are rejected immediately.",
+            ConfigurateHelper::getInt
+    );
+
+    public static final ConfigurationKey<?> BRUTE_FORCE = ConfigurationKey.getComment(
+            "brute-force",
+            """
+                    Slows down guessing of passwords. After a few wrong attempts, the account (or the IP address) has to wait before trying again, and the wait doubles with every further wrong attempt.
+                    Unlike max-login-attempts, reconnecting does not help.
+                    """
+    );
+
+    public static final ConfigurationKey<Boolean> BRUTE_FORCE_ENABLED = new ConfigurationKey<>(
+            "brute-force.enabled",
+            true,
+            "Should the wrong attempts be tracked?",
+            ConfigurateHelper::getBoolean
+    );
+
+    public static final ConfigurationKey<Integer> BRUTE_FORCE_FREE_ATTEMPTS = new ConfigurationKey<>(
+            "brute-force.free-attempts",
+            3,
+            "How many wrong attempts can be made for a single account, before it has to wait.",
+            ConfigurateHelper::getInt
+    );
+
+    public static final ConfigurationKey<Integer> BRUTE_FORCE_IP_FREE_ATTEMPTS = new ConfigurationKey<>(
+            "brute-force.ip-free-attempts",
+            10,
+            "How many wrong attempts can be made from a single IP address, before it has to wait. Keep this higher, multiple players may share an IP address.",
+            ConfigurateHelper::getInt
+    );
+
+    public static final ConfigurationKey<Long> BRUTE_FORCE_BASE_DELAY = new ConfigurationKey<>(
+            "brute-force.base-delay",
+            2000L,
+            "How long (in milliseconds) to wait after the first wrong attempt over the limit.",
+            ConfigurateHelper::getLong
+    );
+
+    public static final ConfigurationKey<Long> BRUTE_FORCE_MAX_DELAY = new ConfigurationKey<>(
+            "brute-force.max-delay",
+            900000L,
+            "The longest (in milliseconds) wait of an IP address, or of an account from a single IP address.",
+            ConfigurateHelper::getLong
+    );
+
+    public static final ConfigurationKey<Long> BRUTE_FORCE_ACCOUNT_MAX_DELAY = new ConfigurationKey<>(
+            "brute-force.account-max-delay",
+            5000L,
+            "The longest (in milliseconds) wait of an account, regardless of the IP address. Keep this short, otherwise anyone could lock the owner out of their account by guessing wrong on purpose.",
+            ConfigurateHelper::getLong
+    );
+
+    public static final ConfigurationKey<Long> BRUTE_FORCE_RESET_AFTER = new ConfigurationKey<>(
+            "brute-force.reset-after",
+            3600L,
+            "After how many seconds without a wrong attempt are the previous wrong attempts forgotten.",
+            ConfigurateHelper::getLong
+    );
+
+    public static final ConfigurationKey<Boolean> BRUTE_FORCE_SHARE = new ConfigurationKey<>(
+            "brute-force.share",
+            true,
+            "Should the wrong attempts be shared with other proxies? Requires the shared cache.",
+            ConfigurateHelper::getBoolean
+    );
+
+    public static final ConfigurationKey<?> RATE_LIMIT = ConfigurationKey.getComment(
+            "rate-limit",
+            """
+                    Limits how often a single player can use commands. The burst is how many times in a quick succession, the rate is how many times per minute in the long run.
+                    """
+    );
+
+    public static final ConfigurationKey<Integer> RATE_LIMIT_COMMANDS_BURST = new ConfigurationKey<>(
+            "rate-limit.commands.burst",
+            1,
+            "Applies to all LibreLogin commands.",
+            ConfigurateHelper::getInt
+    );
+
+    public static final ConfigurationKey<Integer> RATE_LIMIT_COMMANDS_PER_MINUTE = new ConfigurationKey<>(
+            "rate-limit.commands.per-minute",
+            60,
+            "How many times per minute.",
+            ConfigurateHelper::getInt
+    );
+
+    public static final ConfigurationKey<Integer> RATE_LIMIT_EMAIL_BURST = new ConfigurationKey<>(
+            "rate-limit.email.burst",
+            1,
+            "Applies to commands sending an e-mail, on top of the limit for all commands.",
+            ConfigurateHelper::getInt
+    );
+
+    public static final ConfigurationKey<Integer> RATE_LIMIT_EMAIL_PER_MINUTE = new ConfigurationKey<>(
+            "rate-limit.email.per-minute",
+            1,
+            "How many times per minute.",
+            ConfigurateHelper::getInt
+    );
+
+    public static final ConfigurationKey<Integer> RATE_LIMIT_TWO_FACTOR_BURST = new ConfigurationKey<>(
+            "rate-limit.two-factor.burst",
+            3,
+            "Applies to attempts to enter a 2FA code, on top of the limit for all commands.",
+            ConfigurateHelper::getInt
+    );
+
+    public static final ConfigurationKey<Integer> RATE_LIMIT_TWO_FACTOR_PER_MINUTE = new ConfigurationKey<>(
+            "rate-limit.two-factor.per-minute",
+            6,
+            "How many times per minute.",
+            ConfigurateHelper::getInt
+    );
+
+    public static final ConfigurationKey<?> SHARED_CACHE = ConfigurationKey.getComment(
+            "shared-cache",
+            """
+                    A cache shared by all proxies of a network, stored in Redis (or any compatible server).
+                    It holds sessions, premium name lookups and recently loaded players, so a player switching proxies does not hit the database or Mojang again.
+                    Useful only if you run multiple proxies. If the cache is unreachable, LibreLogin falls back to the database.
+                    """
+    );
+
+    public static final ConfigurationKey<Boolean> SHARED_CACHE_ENABLED = new ConfigurationKey<>(
+            "shared-cache.enabled",
+            false,
+            "Should the shared cache be used?",
+            ConfigurateHelper::getBoolean
+    );
+
+    public static final ConfigurationKey<String> SHARED_CACHE_HOST = new ConfigurationKey<>(
+            "shared-cache.host",
+            "localhost",
+            "The host of the cache server.",
+            ConfigurateHelper::getString
+    );
+
+    public static final ConfigurationKey<Integer> SHARED_CACHE_PORT = new ConfigurationKey<>(
+            "shared-cache.port",
+            6379,
+            "The port of the cache server.",
+            ConfigurateHelper::getInt
+    );
+
+    public static final ConfigurationKey<String> SHARED_CACHE_PASSWORD = new ConfigurationKey<>(
+            "shared-cache.password",
+            "",
+            "The password of the cache server, leave empty if there's none.",
+            ConfigurateHelper::getString
+    );
+
+    public static final ConfigurationKey<Integer> SHARED_CACHE_DATABASE = new ConfigurationKey<>(
+            "shared-cache.database",
+            0,
+            "The index of the logical database to use.",
+            ConfigurateHelper::getInt
+    );
+
+    public static final ConfigurationKey<Integer> SHARED_CACHE_TIMEOUT = new ConfigurationKey<>(
+            "shared-cache.timeout",
+            2000,
+            "How long (in milliseconds) to wait for the cache server before falling back to the database.",
+            ConfigurateHelper::getInt
+    );
+
+    public static final ConfigurationKey<Integer> SHARED_CACHE_CONNECTIONS = new ConfigurationKey<>(
+            "shared-cache.connections",
+            4,
+            "How many connections to the cache server should be kept open.",
+            ConfigurateHelper::getInt
+    );
+
+    public static final ConfigurationKey<Long> SHARED_CACHE_RETRY_AFTER = new ConfigurationKey<>(
+            "shared-cache.retry-after",
+            10L,
+            "How long (in seconds) should the cache be skipped after the cache server fails to respond.",
+            ConfigurateHelper::getLong
+    );
+
+    public static final ConfigurationKey<String> SHARED_CACHE_KEY_PREFIX = new ConfigurationKey<>(
+            "shared-cache.key-prefix",
+            "librelogin:",
+            "The prefix of all keys. Must be the same on all proxies.",
             ConfigurateHelper::getString
     );
 
+    public static final ConfigurationKey<Boolean> SHARED_CACHE_USERS = new ConfigurationKey<>(
+            "shared-cache.cache-users",
+            false,
+            """
+                    Should whole players be kept in the cache, so switching proxies does not hit the database?
+                    This includes password hashes, 2FA secrets and emails, enable only if the cache server is protected as well as the database.
+                    Sessions, premium lookups and failed login attempts are shared regardless.
+                    """,
+            ConfigurateHelper::getBoolean
+    );
+
+    public static final ConfigurationKey<Long> SHARED_CACHE_TTL = new ConfigurationKey<>(
+            "shared-cache.ttl",
+            600L,
+            "How long (in seconds) should the players and premium lookups be kept in the cache. Sessions expire together with the session timeout.",
+            ConfigurateHelper::getLong
+    );
+
     public static final ConfigurationKey<?> MIGRATION = ConfigurationKey.getComment(
             "migration",
             """
@@ -233,6 +659,8 @@ public class ConfigurationKeys {
                     authy-sqlite - Can convert from SQLite Authy SHA256
                     librelogin-mysql - Can convert from MySQL LibreLogin, useful for migrating to a different database
                     librelogin-sqlite - Can convert from SQLite LibreLogin, useful for migrating to a different database
+                    librelogin-postgresql - Can convert from PostgreSQL LibreLogin, useful for migrating to a different database
+                    librelogin-embedded - Can convert from embedded LibreLogin, useful for migrating to a different database
                     """,
             ConfigurateHelper::getString
     );
@@ -292,6 +720,13 @@ public class ConfigurationKeys {
             ConfigurateHelper::getLong
     );
 
+    public static final ConfigurationKey<Boolean> PACKET_LEVEL_BLOCKING = new ConfigurationKey<>(
+            "packet-level-blocking",
+            false,
+            "!!THIS OPTION IS ONLY RELEVANT WHEN USING PAPER!! Should movement and interaction packets of unauthorized players be dropped by ProtocolLib, before the server processes them? This greatly reduces the load caused by many players (or bots) in the limbo. Unauthorized players will be able to move on their side, but the server will ignore it.",
+            ConfigurateHelper::getBoolean
+    );
+
     public static final ConfigurationKey<Boolean> PING_SERVERS = new ConfigurationKey<>(
             "ping-servers",
             false,
@@ -385,6 +820,14 @@ public class ConfigurationKeys {
                     """,
             ConfigurateHelper::getBoolean
     );
+
+    public static final ConfigurationKey<Integer> SESSION_VERIFICATION_TIMEOUT = new ConfigurationKey<>(
+            "session-verification-timeout",
+            5000,
+            "!!!THIS ONLY AFFECTS PAPER!!! How long (in milliseconds) to wait for Mojang to verify the session of a premium player, before kicking them.",
+            ConfigurateHelper::getInt
+    );
+
     public static final ConfigurationKey<String> LIMBO_PORT_RANGE = new ConfigurationKey<>(
             "limbo-port-range",
             "30000-40000",
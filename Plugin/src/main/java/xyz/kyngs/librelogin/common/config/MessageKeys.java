@@ -145,6 +145,27 @@ public class MessageKeys {
             ConfigurateHelper::getString
     );
 
+    public static final ConfigurationKey<String> KICK_DATABASE_UNAVAILABLE = new ConfigurationKey<>(
+            "kick-database-unavailable",
+            "The authentication service is temporarily unavailable, please try again in a moment.",
+            "This message is displayed when the player tries to join while the connection to the database is lost.",
+            ConfigurateHelper::getString
+    );
+
+    public static final ConfigurationKey<String> KICK_ADMISSION_THROTTLED = new ConfigurationKey<>(
+            "kick-admission-throttled",
+            "You are connecting too fast, please wait a moment before joining again.",
+            "This message is displayed when the player (or their network) connects too often.",
+            ConfigurateHelper::getString
+    );
+
+    public static final ConfigurationKey<String> KICK_ADMISSION_OVERLOADED = new ConfigurationKey<>(
+            "kick-admission-overloaded",
+            "The server is under heavy load, please try again in a moment.",
+            "This message is displayed when too many players are joining at once.",
+            ConfigurateHelper::getString
+    );
+
     /*
     Errors related to commands
      */
@@ -291,6 +312,13 @@ public class MessageKeys {
             ConfigurateHelper::getString
     );
 
+    public static final ConfigurationKey<String> ERROR_LOGIN_THROTTLED = new ConfigurationKey<>(
+            "error-login-throttled",
+            "Too many wrong attempts! Please try again in %seconds% seconds.",
+            "This message is displayed when the player has to wait after entering a wrong password too many times.",
+            ConfigurateHelper::getString
+    );
+
     public static final ConfigurationKey<String> ERROR_THROTTLE = new ConfigurationKey<>(
             "error-throttle",
             "You are sending commands too fast! Please wait a bit.",
@@ -417,6 +445,13 @@ public class MessageKeys {
             ConfigurateHelper::getString
     );
 
+    public static final ConfigurationKey<String> ERROR_DATABASE_UNAVAILABLE = new ConfigurationKey<>(
+            "error-database-unavailable",
+            "The database is temporarily unavailable, please try again in a moment.",
+            "This message is displayed when a command cannot be performed, because the connection to the database is lost.",
+            ConfigurateHelper::getString
+    );
+
     /*
     ACF Related errors
      */
@@ -558,6 +593,23 @@ public class MessageKeys {
             ConfigurateHelper::getString
     );
 
+    public static final ConfigurationKey<String> INFO_CALIBRATING = new ConfigurationKey<>(
+            "info-calibrating",
+            "Measuring the hashing speed, this may take a while...",
+            "This message is displayed when a user executes /librelogin calibrate.",
+            ConfigurateHelper::getString
+    );
+
+    public static final ConfigurationKey<String> INFO_CALIBRATED = new ConfigurationKey<>(
+            "info-calibrated",
+            """
+                    Suggested settings for hashing in %target% ms:
+                    Argon-2ID: memory %memory% KiB, iterations %iterations% (%argon_millis% ms)
+                    BCrypt-2A: cost %cost% (%bcrypt_millis% ms)""",
+            "This message is displayed when a user executes /librelogin calibrate.",
+            ConfigurateHelper::getString
+    );
+
     public static final ConfigurationKey<String> INFO_DELETING = new ConfigurationKey<>(
             "info-deleting",
             "Deleting...",
@@ -964,6 +1016,13 @@ public class MessageKeys {
             ConfigurateHelper::getString
     );
 
+    public static final ConfigurationKey<String> SYNTAX_CALIBRATE = new ConfigurationKey<>(
+            "syntax.calibrate",
+            "[target-millis]",
+            "This message is displayed when the player attempts to calibrate hashing with wrong syntax.",
+            ConfigurateHelper::getString
+    );
+
     public static final ConfigurationKey<String> SYNTAX_EMAIL_TEST = new ConfigurationKey<>(
             "syntax.email-test",
             "<address>",
@@ -1137,6 +1196,13 @@ public class MessageKeys {
             ConfigurateHelper::getString
     );
 
+    public static final ConfigurationKey<String> AUTOCOMPLETE_CALIBRATE = new ConfigurationKey<>(
+            "autocomplete.calibrate",
+            "target-millis",
+            "This hint is displayed when the player starts typing the /librelogin calibrate command.",
+            ConfigurateHelper::getString
+    );
+
     public static final ConfigurationKey<String> AUTOCOMPLETE_EMAIL_TEST = new ConfigurationKey<>(
             "autocomplete.email-test",
             "address",
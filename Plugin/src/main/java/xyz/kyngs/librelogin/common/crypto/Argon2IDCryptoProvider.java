@@ -19,11 +19,26 @@ import java.util.Arrays;
 
 public class Argon2IDCryptoProvider implements CryptoProvider {
 
+    public static final int DEFAULT_MEMORY = 1 << 14;
+    public static final int DEFAULT_ITERATIONS = 2;
+
     private final Logger logger;
+    private final int memory;
+    private final int iterations;
     private SecureRandom random;
 
     public Argon2IDCryptoProvider(Logger logger) {
+        this(logger, DEFAULT_MEMORY, DEFAULT_ITERATIONS);
+    }
+
+    /**
+     * @param memory     The memory cost in KiB
+     * @param iterations The amount of iterations
+     */
+    public Argon2IDCryptoProvider(Logger logger, int memory, int iterations) {
         this.logger = logger;
+        this.memory = memory;
+        this.iterations = iterations;
         random = new SecureRandom();
     }
 
@@ -38,8 +53,8 @@ public class Argon2IDCryptoProvider implements CryptoProvider {
 
         var params = new Argon2Parameters.Builder(Argon2Parameters.ARGON2_id)
                 .withSalt(salt)
-                .withMemoryAsKB(1 << 14)
-                .withIterations(2)
+                .withMemoryAsKB(memory)
+                .withIterations(iterations)
                 .build();
 
         var generator = new Argon2BytesGenerator();
@@ -63,6 +78,17 @@ public class Argon2IDCryptoProvider implements CryptoProvider {
         return Arrays.equals(hashBytes, params.hash());
     }
 
+    @Override
+    public boolean needsRehash(HashedPassword password) {
+        try {
+            var parameters = CryptoUtil.rawArgonFromHashed(password).parameters();
+
+            return parameters.getMemory() != memory || parameters.getIterations() != iterations;
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
     @Override
     public String getIdentifier() {
         return "Argon-2ID";
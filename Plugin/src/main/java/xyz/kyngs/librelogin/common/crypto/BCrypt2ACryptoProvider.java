@@ -19,13 +19,27 @@ public class BCrypt2ACryptoProvider implements CryptoProvider {
             .with(BCrypt.Version.VERSION_2A);
     public static final BCrypt.Verifyer VERIFIER = BCrypt
             .verifyer(BCrypt.Version.VERSION_2A);
+    public static final int DEFAULT_COST = 10;
+
+    private final int cost;
+
+    public BCrypt2ACryptoProvider() {
+        this(DEFAULT_COST);
+    }
+
+    /**
+     * @param cost The logarithmic cost, every increment doubles the time needed
+     */
+    public BCrypt2ACryptoProvider(int cost) {
+        this.cost = cost;
+    }
 
     @Override
     @Nullable
     public HashedPassword createHash(String password) {
         String hash;
         try {
-            hash = HASHER.hashToString(10, password.toCharArray());
+            hash = HASHER.hashToString(cost, password.toCharArray());
         } catch (IllegalArgumentException e) {
             return null;
         }
@@ -49,6 +63,15 @@ public class BCrypt2ACryptoProvider implements CryptoProvider {
         return result.verified;
     }
 
+    @Override
+    public boolean needsRehash(HashedPassword password) {
+        try {
+            return Integer.parseInt(CryptoUtil.convertHash(password.hash()).key()) != cost;
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
     @Override
     public String getIdentifier() {
         return "BCrypt-2A";
@@ -0,0 +1,141 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package xyz.kyngs.librelogin.common.crypto;
+
+import org.bouncycastle.crypto.generators.Argon2BytesGenerator;
+import org.bouncycastle.crypto.params.Argon2Parameters;
+import xyz.kyngs.librelogin.common.AuthenticLibreLogin;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how long hashing takes on this machine, and finds the most expensive parameters which still fit into the target time.
+ * <br>
+ * The time of Argon2ID grows linearly with both memory and iterations, the time of BCrypt doubles with every cost increment.
+ * The memory of Argon2ID is also limited by the heap, as every executor thread may be hashing at the same time.<br>
+ * <b>This implementation is thread-safe.</b>
+ */
+public final class HashCalibrator {
+
+    private static final int MIN_MEMORY = 1 << 13;
+    private static final int MAX_MEMORY = 1 << 20;
+    private static final int MIN_ITERATIONS = 2;
+    private static final int MIN_COST = 4;
+    private static final int MAX_COST = 31;
+    private static final int SAMPLES = 3;
+    private static final char[] PASSWORD = "calibration-password".toCharArray();
+
+    private HashCalibrator() {
+    }
+
+    /**
+     * Runs the calibration, this takes a few seconds and occupies a single core.
+     *
+     * @param targetMillis The desired time of a single hash in milliseconds
+     */
+    public static Result calibrate(long targetMillis) {
+        var target = TimeUnit.MILLISECONDS.toNanos(targetMillis);
+
+        // Warm up the JIT, so the first measurement is not skewed
+        timeArgon2(MIN_MEMORY, MIN_ITERATIONS);
+        timeBCrypt(MIN_COST);
+
+        var maxMemory = maxMemory();
+        var memory = MIN_MEMORY;
+        var argonTime = timeArgon2(memory, MIN_ITERATIONS);
+
+        while (memory < maxMemory) {
+            var doubled = timeArgon2(memory << 1, MIN_ITERATIONS);
+
+            if (doubled > target) break;
+
+            memory <<= 1;
+            argonTime = doubled;
+        }
+
+        var iterations = (int) Math.max(MIN_ITERATIONS, MIN_ITERATIONS * target / Math.max(1, argonTime));
+
+        if (iterations != MIN_ITERATIONS) argonTime = timeArgon2(memory, iterations);
+
+        var baseTime = timeBCrypt(BCrypt2ACryptoProvider.DEFAULT_COST);
+        var doublings = (int) Math.floor(Math.log((double) target / Math.max(1, baseTime)) / Math.log(2));
+        var cost = Math.max(MIN_COST, Math.min(MAX_COST, BCrypt2ACryptoProvider.DEFAULT_COST + doublings));
+        var bcryptTime = cost == BCrypt2ACryptoProvider.DEFAULT_COST ? baseTime : timeBCrypt(cost);
+
+        return new Result(
+                memory,
+                iterations,
+                TimeUnit.NANOSECONDS.toMillis(argonTime),
+                cost,
+                TimeUnit.NANOSECONDS.toMillis(bcryptTime)
+        );
+    }
+
+    /**
+     * Leaves half of the free heap to the server, the rest is split among the threads which may hash at the same time.
+     *
+     * @return The largest Argon2ID memory cost in KiB, which is safe to suggest
+     */
+    private static int maxMemory() {
+        var runtime = Runtime.getRuntime();
+        var free = runtime.maxMemory() - (runtime.totalMemory() - runtime.freeMemory());
+        var perThread = free / 2 / 1024 / AuthenticLibreLogin.EXECUTOR_THREADS;
+
+        return (int) Math.max(MIN_MEMORY, Math.min(MAX_MEMORY, Long.highestOneBit(perThread)));
+    }
+
+    /**
+     * @return The median time of hashing with Argon2ID in nanoseconds
+     */
+    public static long timeArgon2(int memory, int iterations) {
+        var params = new Argon2Parameters.Builder(Argon2Parameters.ARGON2_id)
+                .withSalt(new byte[16])
+                .withMemoryAsKB(memory)
+                .withIterations(iterations)
+                .build();
+        var hash = new byte[32];
+
+        return median(() -> {
+            var generator = new Argon2BytesGenerator();
+            generator.init(params);
+            generator.generateBytes(PASSWORD, hash);
+        });
+    }
+
+    /**
+     * @return The median time of hashing with BCrypt in nanoseconds
+     */
+    public static long timeBCrypt(int cost) {
+        return median(() -> BCrypt2ACryptoProvider.HASHER.hash(cost, PASSWORD));
+    }
+
+    private static long median(Runnable hash) {
+        var times = new long[SAMPLES];
+
+        for (int i = 0; i < SAMPLES; i++) {
+            var start = System.nanoTime();
+            hash.run();
+            times[i] = System.nanoTime() - start;
+        }
+
+        Arrays.sort(times);
+
+        return times[SAMPLES / 2];
+    }
+
+    /**
+     * @param memory       The suggested Argon2ID memory cost in KiB
+     * @param iterations   The suggested Argon2ID iterations
+     * @param argonMillis  The measured time of a single Argon2ID hash with the suggested parameters
+     * @param cost         The suggested BCrypt cost
+     * @param bcryptMillis The measured time of a single BCrypt hash with the suggested cost
+     */
+    public record Result(int memory, int iterations, long argonMillis, int cost, long bcryptMillis) {
+    }
+
+}
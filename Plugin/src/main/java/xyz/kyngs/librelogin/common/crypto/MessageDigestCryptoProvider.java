@@ -9,55 +9,199 @@ package xyz.kyngs.librelogin.common.crypto;
 import xyz.kyngs.librelogin.api.crypto.CryptoProvider;
 import xyz.kyngs.librelogin.api.crypto.HashedPassword;
 
-import java.math.BigInteger;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Salted message digest hashes, compatible with AuthMe: {@code hex(digest(hex(digest(password)) + salt))}.
+ * <br>
+ * Every thread has its own digest and buffers, so verifying a password only allocates the encoded input.
+ * The hex form keeps the quirk of the original {@code %064x} formatting, leading zeros are dropped as long as at least 64 digits remain.
+ * <br>
+ * Passwords are encoded in UTF-8. Older versions used the default charset of the host, so a non-ASCII password, which does not match,
+ * is checked once more in that charset. Such hashes are reported by {@link #needsRehash(HashedPassword)}, so they are rehashed on login.<br>
+ * <b>This implementation is thread-safe.</b>
+ *
+ * @author kyngs
+ */
 public class MessageDigestCryptoProvider implements CryptoProvider {
 
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+    private static final int HASH_WIDTH = 64;
+    private static final int SALT_WIDTH = 16;
+    private static final Charset LEGACY_CHARSET = legacyCharset();
+
     private final SecureRandom random;
-    private final MessageDigest sha256;
+    private final ThreadLocal<State> state;
     private final String identifier;
+    private final Set<String> legacyHashes;
 
     public MessageDigestCryptoProvider(String identifier) {
         this.identifier = identifier;
 
         random = new SecureRandom();
+        legacyHashes = ConcurrentHashMap.newKeySet();
+
+        // Fail early, instead of on the first login
+        newDigest(identifier);
+
+        state = ThreadLocal.withInitial(() -> new State(newDigest(identifier)));
+    }
 
+    private static MessageDigest newDigest(String identifier) {
         try {
-            sha256 = MessageDigest.getInstance(identifier);
+            return MessageDigest.getInstance(identifier);
         } catch (NoSuchAlgorithmException e) {
             throw new RuntimeException(e);
         }
     }
 
+    /**
+     * @return The charset passwords were encoded in before, the default one of the host. Since Java 18, the default is always UTF-8,
+     * the charset of the host is then the native encoding.
+     */
+    private static Charset legacyCharset() {
+        var charset = Charset.defaultCharset();
+
+        if (!charset.equals(StandardCharsets.UTF_8)) return charset;
+
+        try {
+            var nativeEncoding = System.getProperty("native.encoding");
+
+            return nativeEncoding == null ? charset : Charset.forName(nativeEncoding);
+        } catch (IllegalArgumentException e) {
+            return charset;
+        }
+    }
+
+    private static boolean isAscii(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) >= 0x80) return false;
+        }
+
+        return true;
+    }
+
     private String randomSalt() {
-        byte[] bytes = new byte[16];
-        this.random.nextBytes(bytes);
-        return String.format("%016x", new BigInteger(1, bytes));
+        var bytes = new byte[16];
+        var hex = new byte[32];
+
+        random.nextBytes(bytes);
+
+        var start = encodeHex(bytes, bytes.length, hex, SALT_WIDTH);
+
+        return new String(hex, start, hex.length - start, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Hashes the input, leaving the hex form in the buffer of the state.
+     *
+     * @return The offset of the hex form in the buffer
+     */
+    private static int plainHash(State state, String input, String salt, Charset charset) {
+        var digest = state.digest;
+
+        digest.update(input.getBytes(charset));
+
+        var start = digest(state);
+
+        if (salt == null) return start;
+
+        // The inner hex form is ASCII, feed it to the digest directly instead of concatenating strings
+        digest.update(state.hex, start, state.hex.length - start);
+        digest.update(salt.getBytes(charset));
+
+        return digest(state);
+    }
+
+    private static int digest(State state) {
+        try {
+            var length = state.digest.digest(state.hash, 0, state.hash.length);
+
+            return encodeHex(state.hash, length, state.hex, HASH_WIDTH);
+        } catch (DigestException e) {
+            throw new IllegalStateException(e);
+        }
     }
 
-    private String plainHash(String input) {
-        byte[] inputBytes = input.getBytes();
-        byte[] hashedBytes = this.sha256.digest(inputBytes);
-        return String.format("%064x", new BigInteger(1, hashedBytes));
+    /**
+     * Encodes the bytes to the end of the buffer, leading zeros are skipped as long as at least the given width of digits remains.
+     *
+     * @return The offset of the first digit
+     */
+    private static int encodeHex(byte[] bytes, int length, byte[] hex, int width) {
+        var end = hex.length;
+        var start = end - length * 2;
+
+        for (int i = 0; i < length; i++) {
+            var b = bytes[i];
+
+            hex[start + i * 2] = HEX[(b >> 4) & 0xF];
+            hex[start + i * 2 + 1] = HEX[b & 0xF];
+        }
+
+        var limit = end - Math.min(width, length * 2);
+
+        while (start < limit && hex[start] == '0') start++;
+
+        return start;
+    }
+
+    /**
+     * Compares the hex form with the stored hash, without revealing the position of the first difference.
+     */
+    private static boolean constantTimeEquals(byte[] hex, int start, String hash) {
+        var length = hex.length - start;
+
+        if (hash == null || hash.length() != length) return false;
+
+        var difference = 0;
+
+        for (int i = 0; i < length; i++) {
+            difference |= hex[start + i] ^ hash.charAt(i);
+        }
+
+        return difference == 0;
     }
 
     @Override
     public HashedPassword createHash(String password) {
         var salt = randomSalt();
-        var plain = plainHash(password);
-        var hash = plainHash(plain + salt);
+        var state = this.state.get();
+        var start = plainHash(state, password, salt, StandardCharsets.UTF_8);
+        var hash = new String(state.hex, start, state.hex.length - start, StandardCharsets.US_ASCII);
+
         return new HashedPassword(hash, salt, getIdentifier());
     }
 
     @Override
     public boolean matches(String input, HashedPassword password) {
-        var salt = password.salt();
-        var hash = password.hash();
-        var hashedInput = salt == null ? plainHash(input) : plainHash(plainHash(input) + salt);
-        return hashedInput.equals(hash);
+        var state = this.state.get();
+        var start = plainHash(state, input, password.salt(), StandardCharsets.UTF_8);
+
+        if (constantTimeEquals(state.hex, start, password.hash())) return true;
+
+        // ASCII is encoded the same in both charsets
+        if (LEGACY_CHARSET.equals(StandardCharsets.UTF_8) || (isAscii(input) && (password.salt() == null || isAscii(password.salt())))) return false;
+
+        start = plainHash(state, input, password.salt(), LEGACY_CHARSET);
+
+        if (!constantTimeEquals(state.hex, start, password.hash())) return false;
+
+        legacyHashes.add(password.hash());
+
+        return true;
+    }
+
+    @Override
+    public boolean needsRehash(HashedPassword password) {
+        return legacyHashes.contains(password.hash());
     }
 
     @Override
@@ -65,4 +209,18 @@ public class MessageDigestCryptoProvider implements CryptoProvider {
         return identifier;
     }
 
+    private static final class State {
+
+        private final MessageDigest digest;
+        private final byte[] hash;
+        private final byte[] hex;
+
+        private State(MessageDigest digest) {
+            this.digest = digest;
+            this.hash = new byte[digest.getDigestLength()];
+            this.hex = new byte[hash.length * 2];
+        }
+
+    }
+
 }
@@ -0,0 +1,91 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package xyz.kyngs.librelogin.common.crypto;
+
+import xyz.kyngs.librelogin.api.crypto.HashedPassword;
+import xyz.kyngs.librelogin.api.database.User;
+import xyz.kyngs.librelogin.common.AuthenticLibreLogin;
+
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Upgrades stored passwords to the default crypto provider and its current parameters.
+ * <br>
+ * The plaintext password is only known at the moment the player logs in, so the password is rehashed right after a successful login,
+ * outside the login itself, and written back through the regular update path.<br>
+ * <b>This implementation is thread-safe.</b>
+ */
+public class PasswordRehasher {
+
+    private final AuthenticLibreLogin<?, ?> plugin;
+    private final Set<UUID> pending;
+
+    public PasswordRehasher(AuthenticLibreLogin<?, ?> plugin) {
+        this.plugin = plugin;
+        this.pending = ConcurrentHashMap.newKeySet();
+    }
+
+    /**
+     * @return True if the password was hashed by a different provider than the default one, or with different parameters
+     */
+    public boolean needsRehash(HashedPassword password) {
+        var target = plugin.getDefaultCryptoProvider();
+
+        if (target == null) return false;
+
+        return !target.getIdentifier().equals(password.algo()) || target.needsRehash(password);
+    }
+
+    /**
+     * Rehashes the password of the user in the background, if needed.
+     *
+     * @param user     The user, who has just logged in
+     * @param password The verified password (in plaintext)
+     */
+    public void rehashAsync(User user, String password) {
+        var current = user.getHashedPassword();
+
+        if (current == null || !needsRehash(current) || !pending.add(user.getUuid())) return;
+
+        AuthenticLibreLogin.EXECUTOR.submit(() -> {
+            try {
+                rehash(user.getUuid(), current, password);
+            } catch (Exception e) {
+                plugin.getLogger().warn("Failed to rehash the password of %s: %s".formatted(user.getLastNickname(), e.getMessage()));
+            } finally {
+                pending.remove(user.getUuid());
+            }
+        });
+    }
+
+    private void rehash(UUID uuid, HashedPassword current, String password) {
+        var target = plugin.getDefaultCryptoProvider();
+        var start = System.nanoTime();
+        var hashed = target.createHash(password);
+
+        // E.g. the password is too long for BCrypt, keep the old hash
+        if (hashed == null) return;
+
+        var database = plugin.getDatabaseProvider();
+        var user = database.getByUUID(uuid);
+
+        // The password might have been changed in the meantime
+        if (user == null || !current.equals(user.getHashedPassword())) return;
+
+        user.setHashedPassword(hashed);
+        database.updateUser(user);
+
+        plugin.getStatistics().increment("crypto.rehashes");
+        plugin.getLogger().debug("Rehashed the password of %s from %s to %s in %dms".formatted(
+                user.getLastNickname(), current.algo(), hashed.algo(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)
+        ));
+    }
+
+}
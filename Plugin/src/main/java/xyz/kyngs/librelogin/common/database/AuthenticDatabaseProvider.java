@@ -6,10 +6,14 @@
 
 package xyz.kyngs.librelogin.common.database;
 
+import org.jetbrains.annotations.Nullable;
 import xyz.kyngs.librelogin.api.database.ReadWriteDatabaseProvider;
+import xyz.kyngs.librelogin.api.database.User;
 import xyz.kyngs.librelogin.api.database.connector.DatabaseConnector;
 import xyz.kyngs.librelogin.common.AuthenticLibreLogin;
 
+import java.util.UUID;
+
 public abstract class AuthenticDatabaseProvider<C extends DatabaseConnector<?, ?>> implements ReadWriteDatabaseProvider {
 
     protected final C connector;
@@ -23,4 +27,41 @@ public abstract class AuthenticDatabaseProvider<C extends DatabaseConnector<?, ?
     public void validateSchema() {
     }
 
+    /**
+     * @return False if the database is known to be unreachable at the moment, true otherwise
+     */
+    public boolean isAvailable() {
+        return true;
+    }
+
+    /**
+     * Passes the identifiers of every user to the consumer. Providers should stream them, instead of loading all users at once.
+     */
+    public void forEachIdentity(IdentityConsumer consumer) {
+        for (User user : getAllUsers()) {
+            consumer.accept(user.getUuid(), user.getPremiumUUID(), user.getLastNickname());
+        }
+    }
+
+    /**
+     * Resolves all users a connecting player might collide with. Providers should do so in a single round trip.
+     *
+     * @param name        The nickname of the player
+     * @param premiumUUID The premium UUID of the player, or null if they are not premium
+     * @param newUUID     The UUID, which would be assigned to the player if they were new
+     */
+    public PreLoginLookup lookupForPreLogin(String name, @Nullable UUID premiumUUID, UUID newUUID) {
+        return new PreLoginLookup(
+                premiumUUID == null ? null : getByPremiumUUID(premiumUUID),
+                getByName(name),
+                getByUUID(newUUID),
+                newUUID
+        );
+    }
+
+    @FunctionalInterface
+    public interface IdentityConsumer {
+        void accept(UUID uuid, @Nullable UUID premiumUUID, String lastNickname);
+    }
+
 }
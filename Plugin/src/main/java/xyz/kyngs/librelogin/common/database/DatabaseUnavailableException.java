@@ -0,0 +1,22 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package xyz.kyngs.librelogin.common.database;
+
+/**
+ * Thrown when a query cannot be performed, because the connection to the database is (temporarily) unavailable.
+ */
+public class DatabaseUnavailableException extends RuntimeException {
+
+    public DatabaseUnavailableException() {
+        super("The database is currently unavailable");
+    }
+
+    public DatabaseUnavailableException(Throwable cause) {
+        super("The database is currently unavailable", cause);
+    }
+
+}
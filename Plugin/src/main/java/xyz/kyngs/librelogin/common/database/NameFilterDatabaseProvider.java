@@ -0,0 +1,207 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package xyz.kyngs.librelogin.common.database;
+
+import org.jetbrains.annotations.Nullable;
+import xyz.kyngs.librelogin.api.database.User;
+import xyz.kyngs.librelogin.api.database.connector.DatabaseConnector;
+import xyz.kyngs.librelogin.common.AuthenticLibreLogin;
+import xyz.kyngs.librelogin.common.util.BloomFilter;
+
+import java.util.Collection;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps a {@link BloomFilter} of all nicknames, UUIDs and premium UUIDs in the database.
+ * Lookups, which the filter knows are absent, are answered without querying the wrapped provider.
+ * <br>
+ * The filter only sees users written through this proxy, so it must not be used, when other proxies share the database.
+ * Deleted users and old nicknames stay in the filter (causing only a harmless query) until it is rebuilt.<br>
+ * <b>This implementation is thread-safe.</b>
+ */
+public class NameFilterDatabaseProvider extends AuthenticDatabaseProvider<DatabaseConnector<?, ?>> {
+
+    private static final double FALSE_POSITIVE_RATE = 0.01;
+
+    private final AuthenticDatabaseProvider<?> delegate;
+    private final AtomicBoolean rebuilding;
+    private volatile BloomFilter filter;
+    private volatile BloomFilter building;
+    private long lastCount;
+
+    public NameFilterDatabaseProvider(AuthenticDatabaseProvider<?> delegate, DatabaseConnector<?, ?> connector, AuthenticLibreLogin<?, ?> plugin) {
+        super(connector, plugin);
+        this.delegate = delegate;
+        this.rebuilding = new AtomicBoolean();
+    }
+
+    /**
+     * Scans the database and replaces the filter. Users inserted during the scan are added to both filters.
+     */
+    public void rebuild() {
+        if (!rebuilding.compareAndSet(false, true)) return;
+
+        try {
+            var start = System.currentTimeMillis();
+            var count = new AtomicLong();
+            BloomFilter next;
+            long expected;
+
+            do {
+                // Size the filter generously, so new registrations don't degrade it before the next rebuild
+                expected = Math.max(100_000, Math.max(lastCount, count.get()) * 2);
+                next = new BloomFilter(expected, FALSE_POSITIVE_RATE);
+                count.set(0);
+
+                building = next;
+
+                var target = next;
+                delegate.forEachIdentity((uuid, premiumUUID, lastNickname) -> {
+                    put(target, uuid, premiumUUID, lastNickname);
+                    count.incrementAndGet();
+                });
+
+                // Scan once more with the right size, if there were more users than estimated
+            } while (count.get() > expected);
+
+            filter = next;
+            lastCount = count.get();
+
+            plugin.getLogger().debug("Rebuilt the name filter with %d users in %dms".formatted(count.get(), System.currentTimeMillis() - start));
+        } catch (RuntimeException e) {
+            plugin.getLogger().warn("Failed to build the name filter, the database will be queried for every nickname. Cause: %s: %s".formatted(e.getClass().getSimpleName(), e.getMessage()));
+        } finally {
+            building = null;
+            rebuilding.set(false);
+        }
+    }
+
+    @Override
+    public User getByName(String name) {
+        var current = filter;
+
+        if (current != null && !current.mightContain("n:" + name.toLowerCase(Locale.ROOT))) {
+            plugin.getStatistics().increment("name-filter.skipped-queries");
+            return null;
+        }
+
+        return delegate.getByName(name);
+    }
+
+    @Override
+    public User getByUUID(UUID uuid) {
+        var current = filter;
+
+        if (current != null && !current.mightContain("u:" + uuid)) {
+            plugin.getStatistics().increment("name-filter.skipped-queries");
+            return null;
+        }
+
+        return delegate.getByUUID(uuid);
+    }
+
+    @Override
+    public User getByPremiumUUID(UUID uuid) {
+        var current = filter;
+
+        if (current != null && !current.mightContain("p:" + uuid)) {
+            plugin.getStatistics().increment("name-filter.skipped-queries");
+            return null;
+        }
+
+        return delegate.getByPremiumUUID(uuid);
+    }
+
+    @Override
+    public Collection<User> getAllUsers() {
+        return delegate.getAllUsers();
+    }
+
+    @Override
+    public Collection<User> getByIP(String ip) {
+        return delegate.getByIP(ip);
+    }
+
+    @Override
+    public void insertUser(User user) {
+        add(user);
+        delegate.insertUser(user);
+        add(user);
+    }
+
+    @Override
+    public void insertUsers(Collection<User> users) {
+        users.forEach(this::add);
+        delegate.insertUsers(users);
+        users.forEach(this::add);
+    }
+
+    @Override
+    public void updateUser(User user) {
+        // The nickname or the premium UUID might have changed
+        add(user);
+        delegate.updateUser(user);
+        add(user);
+    }
+
+    @Override
+    public void deleteUser(User user) {
+        delegate.deleteUser(user);
+    }
+
+    @Override
+    public void validateSchema() {
+        delegate.validateSchema();
+    }
+
+    @Override
+    public boolean isAvailable() {
+        return delegate.isAvailable();
+    }
+
+    @Override
+    public void forEachIdentity(IdentityConsumer consumer) {
+        delegate.forEachIdentity(consumer);
+    }
+
+    @Override
+    public PreLoginLookup lookupForPreLogin(String name, @Nullable UUID premiumUUID, UUID newUUID) {
+        var current = filter;
+
+        if (current != null
+                && (premiumUUID == null || !current.mightContain("p:" + premiumUUID))
+                && !current.mightContain("n:" + name.toLowerCase(Locale.ROOT))
+                && !current.mightContain("u:" + newUUID)) {
+            plugin.getStatistics().increment("name-filter.skipped-queries");
+            return new PreLoginLookup(null, null, null, newUUID);
+        }
+
+        return delegate.lookupForPreLogin(name, premiumUUID, newUUID);
+    }
+
+    /**
+     * Called both before and after the write. Before, so a concurrent lookup never misses a user which is already in the database.
+     * After, so the user also reaches a filter, whose scan started before the write was committed.
+     */
+    private void add(User user) {
+        var current = filter;
+        var next = building;
+
+        if (current != null) put(current, user.getUuid(), user.getPremiumUUID(), user.getLastNickname());
+        if (next != null) put(next, user.getUuid(), user.getPremiumUUID(), user.getLastNickname());
+    }
+
+    private static void put(BloomFilter filter, UUID uuid, UUID premiumUUID, String lastNickname) {
+        filter.put("u:" + uuid);
+        filter.put("n:" + lastNickname.toLowerCase(Locale.ROOT));
+        if (premiumUUID != null) filter.put("p:" + premiumUUID);
+    }
+
+}
@@ -0,0 +1,23 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package xyz.kyngs.librelogin.common.database;
+
+import org.jetbrains.annotations.Nullable;
+import xyz.kyngs.librelogin.api.database.User;
+
+import java.util.UUID;
+
+/**
+ * All users a connecting player might collide with, resolved at once.
+ *
+ * @param byPremiumUUID The user with the player's premium UUID
+ * @param byName        The user with the player's nickname, not case-sensitively
+ * @param byNewUUID     The user occupying the UUID, which would be assigned to the player if they were new
+ * @param newUUID       The UUID, which would be assigned to the player if they were new
+ */
+public record PreLoginLookup(@Nullable User byPremiumUUID, @Nullable User byName, @Nullable User byNewUUID, UUID newUUID) {
+}
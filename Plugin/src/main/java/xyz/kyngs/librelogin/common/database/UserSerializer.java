@@ -0,0 +1,85 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package xyz.kyngs.librelogin.common.database;
+
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import org.jetbrains.annotations.Nullable;
+import xyz.kyngs.librelogin.api.crypto.HashedPassword;
+import xyz.kyngs.librelogin.api.database.User;
+import xyz.kyngs.librelogin.common.AuthenticLibreLogin;
+
+import java.sql.Timestamp;
+import java.util.UUID;
+
+/**
+ * Converts users to and from JSON. Users are mutable, so caches keep them serialized, and hand out a new copy to every caller.
+ */
+public final class UserSerializer {
+
+    private UserSerializer() {
+    }
+
+    public static String serialize(User user) {
+        var json = new JsonObject();
+        var password = user.getHashedPassword();
+
+        json.addProperty("uuid", user.getUuid().toString());
+        json.addProperty("premiumUUID", user.getPremiumUUID() == null ? null : user.getPremiumUUID().toString());
+        json.addProperty("hash", password == null ? null : password.hash());
+        json.addProperty("salt", password == null ? null : password.salt());
+        json.addProperty("algo", password == null ? null : password.algo());
+        json.addProperty("lastNickname", user.getLastNickname());
+        json.addProperty("joined", toMillis(user.getJoinDate()));
+        json.addProperty("lastSeen", toMillis(user.getLastSeen()));
+        json.addProperty("secret", user.getSecret());
+        json.addProperty("ip", user.getIp());
+        json.addProperty("lastAuthentication", toMillis(user.getLastAuthentication()));
+        json.addProperty("lastServer", user.getLastServer());
+        json.addProperty("email", user.getEmail());
+
+        return json.toString();
+    }
+
+    public static User deserialize(String raw) {
+        var json = AuthenticLibreLogin.GSON.fromJson(raw, JsonObject.class);
+        var premiumUUID = getString(json, "premiumUUID");
+        var hash = getString(json, "hash");
+
+        return new AuthenticUser(
+                UUID.fromString(json.get("uuid").getAsString()),
+                premiumUUID == null ? null : UUID.fromString(premiumUUID),
+                hash == null ? null : new HashedPassword(hash, getString(json, "salt"), getString(json, "algo")),
+                getString(json, "lastNickname"),
+                getTimestamp(json, "joined"),
+                getTimestamp(json, "lastSeen"),
+                getString(json, "secret"),
+                getString(json, "ip"),
+                getTimestamp(json, "lastAuthentication"),
+                getString(json, "lastServer"),
+                getString(json, "email")
+        );
+    }
+
+    @Nullable
+    private static Long toMillis(@Nullable Timestamp timestamp) {
+        return timestamp == null ? null : timestamp.getTime();
+    }
+
+    @Nullable
+    private static String getString(JsonObject json, String key) {
+        var element = json.get(key);
+        return element == null || element instanceof JsonNull ? null : element.getAsString();
+    }
+
+    @Nullable
+    private static Timestamp getTimestamp(JsonObject json, String key) {
+        var element = json.get(key);
+        return element == null || element instanceof JsonNull ? null : new Timestamp(element.getAsLong());
+    }
+
+}
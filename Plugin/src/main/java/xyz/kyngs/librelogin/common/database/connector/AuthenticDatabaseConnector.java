@@ -7,6 +7,7 @@
 package xyz.kyngs.librelogin.common.database.connector;
 
 import xyz.kyngs.librelogin.api.database.connector.DatabaseConnector;
+import xyz.kyngs.librelogin.api.util.ThrowableFunction;
 import xyz.kyngs.librelogin.common.AuthenticLibreLogin;
 import xyz.kyngs.librelogin.common.config.key.ConfigurationKey;
 
@@ -14,13 +15,31 @@ public abstract class AuthenticDatabaseConnector<E extends Exception, I> impleme
 
     protected final AuthenticLibreLogin<?, ?> plugin;
     private final String prefix;
-    protected boolean connected = true;
+    protected final DatabaseCircuitBreaker circuitBreaker;
+    protected volatile boolean connected = true;
 
     public AuthenticDatabaseConnector(AuthenticLibreLogin<?, ?> plugin, String prefix) {
         this.plugin = plugin;
         this.prefix = prefix;
+        this.circuitBreaker = new DatabaseCircuitBreaker(plugin);
     }
 
+    public DatabaseCircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    @Override
+    public <V> V runQuery(ThrowableFunction<I, V, E> function) throws IllegalStateException {
+        return runQuery(function, true);
+    }
+
+    /**
+     * Runs a query on the database, like {@link #runQuery(ThrowableFunction)}.
+     *
+     * @param retry Whether the query may be retried after a transient failure, must be false for queries which are not idempotent
+     */
+    public abstract <V> V runQuery(ThrowableFunction<I, V, E> function, boolean retry) throws IllegalStateException;
+
     @Override
     public boolean connected() {
         return connected;
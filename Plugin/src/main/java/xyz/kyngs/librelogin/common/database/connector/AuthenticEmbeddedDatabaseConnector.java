@@ -0,0 +1,74 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package xyz.kyngs.librelogin.common.database.connector;
+
+import xyz.kyngs.librelogin.api.util.ThrowableFunction;
+import xyz.kyngs.librelogin.common.AuthenticLibreLogin;
+import xyz.kyngs.librelogin.common.config.ConfigurateHelper;
+import xyz.kyngs.librelogin.common.config.key.ConfigurationKey;
+import xyz.kyngs.librelogin.common.database.embedded.EmbeddedUserStore;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+public class AuthenticEmbeddedDatabaseConnector extends AuthenticDatabaseConnector<IOException, EmbeddedUserStore> {
+
+    private final EmbeddedUserStore store;
+
+    public AuthenticEmbeddedDatabaseConnector(AuthenticLibreLogin<?, ?> plugin, String prefix) {
+        super(plugin, prefix);
+
+        this.store = new EmbeddedUserStore(
+                plugin.getDataFolder().toPath().resolve(get(Configuration.PATH)),
+                get(Configuration.FORCE_WRITES),
+                plugin.getLogger()
+        );
+    }
+
+    @Override
+    public void connect() throws IOException {
+        store.open();
+        connected = true;
+    }
+
+    @Override
+    public void disconnect() throws IOException {
+        connected = false;
+        store.close();
+    }
+
+    @Override
+    public EmbeddedUserStore obtainInterface() throws IllegalStateException {
+        if (!connected()) throw new IllegalStateException("Not connected to the database!");
+        return store;
+    }
+
+    @Override
+    public <V> V runQuery(ThrowableFunction<EmbeddedUserStore, V, IOException> function, boolean retry) throws IllegalStateException {
+        try {
+            return function.apply(obtainInterface());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to access the embedded database file", e);
+        }
+    }
+
+    public static final class Configuration {
+        public static final ConfigurationKey<String> PATH = new ConfigurationKey<>(
+                "path",
+                "user-data.lldb",
+                "Path to the embedded database file. Relative to plugin datafolder.",
+                ConfigurateHelper::getString
+        );
+
+        public static final ConfigurationKey<Boolean> FORCE_WRITES = new ConfigurationKey<>(
+                "force-writes",
+                true,
+                "Should every write be flushed to the disk immediately? Disabling this speeds up writes, but the most recent changes may be lost if the machine (not just the server) crashes.",
+                ConfigurateHelper::getBoolean
+        );
+    }
+}
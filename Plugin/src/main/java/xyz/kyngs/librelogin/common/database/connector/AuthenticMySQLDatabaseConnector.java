@@ -16,7 +16,6 @@ import xyz.kyngs.librelogin.common.config.key.ConfigurationKey;
 
 import java.sql.Connection;
 import java.sql.SQLException;
-import java.sql.SQLTransientConnectionException;
 
 public class AuthenticMySQLDatabaseConnector extends AuthenticDatabaseConnector<SQLException, Connection> implements MySQLDatabaseConnector {
 
@@ -33,6 +32,8 @@ public class AuthenticMySQLDatabaseConnector extends AuthenticDatabaseConnector<
         hikariConfig.addDataSourceProperty("cachePrepStmts", "true");
         hikariConfig.addDataSourceProperty("prepStmtCacheSize", "250");
         hikariConfig.addDataSourceProperty("prepStmtCacheSqlLimit", "2048");
+        // Without server-side prepared statements, the driver has nothing to cache
+        hikariConfig.addDataSourceProperty("useServerPrepStmts", "true");
         hikariConfig.setUsername(get(Configuration.USER));
         hikariConfig.setPassword(get(Configuration.PASSWORD));
         hikariConfig.setJdbcUrl(get(Configuration.JDBC_URL)
@@ -63,20 +64,12 @@ public class AuthenticMySQLDatabaseConnector extends AuthenticDatabaseConnector<
     }
 
     @Override
-    public <V> V runQuery(ThrowableFunction<Connection, V, SQLException> function) throws IllegalStateException {
-        try {
+    public <V> V runQuery(ThrowableFunction<Connection, V, SQLException> function, boolean retry) throws IllegalStateException {
+        return circuitBreaker.execute(() -> {
             try (var connection = obtainInterface()) {
                 return function.apply(connection);
             }
-        } catch (SQLTransientConnectionException e) {
-            plugin.getLogger().error("!! LOST CONNECTION TO THE DATABASE, THE PROXY IS GOING TO SHUT DOWN TO PREVENT DAMAGE !!");
-            e.printStackTrace();
-            System.exit(1);
-            //Won't return anyway
-            return null;
-        } catch (SQLException e) {
-            throw new RuntimeException(e);
-        }
+        }, retry);
     }
 
     public static final class Configuration {
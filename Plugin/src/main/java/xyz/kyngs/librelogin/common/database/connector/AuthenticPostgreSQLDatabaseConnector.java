@@ -16,7 +16,6 @@ import xyz.kyngs.librelogin.common.config.key.ConfigurationKey;
 
 import java.sql.Connection;
 import java.sql.SQLException;
-import java.sql.SQLTransientConnectionException;
 
 public class AuthenticPostgreSQLDatabaseConnector extends AuthenticDatabaseConnector<SQLException, Connection> implements PostgreSQLDatabaseConnector {
 
@@ -33,6 +32,9 @@ public class AuthenticPostgreSQLDatabaseConnector extends AuthenticDatabaseConne
         hikariConfig.addDataSourceProperty("cachePrepStmts", "true");
         hikariConfig.addDataSourceProperty("prepStmtCacheSize", "250");
         hikariConfig.addDataSourceProperty("prepStmtCacheSqlLimit", "2048");
+        // Use server-side prepared statements from the first execution, the driver caches them per connection
+        hikariConfig.addDataSourceProperty("prepareThreshold", "1");
+        hikariConfig.addDataSourceProperty("preparedStatementCacheQueries", "256");
         hikariConfig.addDataSourceProperty("ssl", "false");
         hikariConfig.addDataSourceProperty("sslmode", "disable");
 
@@ -62,20 +64,12 @@ public class AuthenticPostgreSQLDatabaseConnector extends AuthenticDatabaseConne
     }
 
     @Override
-    public <V> V runQuery(ThrowableFunction<Connection, V, SQLException> function) throws IllegalStateException {
-        try {
+    public <V> V runQuery(ThrowableFunction<Connection, V, SQLException> function, boolean retry) throws IllegalStateException {
+        return circuitBreaker.execute(() -> {
             try (var connection = obtainInterface()) {
                 return function.apply(connection);
             }
-        } catch (SQLTransientConnectionException e) {
-            plugin.getLogger().error("!! LOST CONNECTION TO THE DATABASE, THE PROXY IS GOING TO SHUT DOWN TO PREVENT DAMAGE !!");
-            e.printStackTrace();
-            System.exit(1);
-            //Won't return anyway
-            return null;
-        } catch (SQLException e) {
-            throw new RuntimeException(e);
-        }
+        }, retry);
     }
 
     public static final class Configuration {
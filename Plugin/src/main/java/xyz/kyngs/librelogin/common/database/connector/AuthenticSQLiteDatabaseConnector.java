@@ -16,24 +16,42 @@ import xyz.kyngs.librelogin.common.config.key.ConfigurationKey;
 
 import java.sql.Connection;
 import java.sql.SQLException;
-import java.sql.SQLTransientConnectionException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 public class AuthenticSQLiteDatabaseConnector extends AuthenticDatabaseConnector<SQLException, Connection> implements SQLiteDatabaseConnector {
 
+    /**
+     * The maximum amount of writes committed in a single transaction.
+     */
+    private static final int MAX_WRITE_BATCH = 64;
+
     private final HikariConfig hikariConfig;
+    private final BlockingQueue<WriteTask<?>> writes;
     private HikariDataSource dataSource;
+    private Thread writer;
 
     public AuthenticSQLiteDatabaseConnector(AuthenticLibreLogin<?, ?> plugin, String prefix) {
         super(plugin, prefix);
 
         this.hikariConfig = new HikariConfig();
+        this.writes = new LinkedBlockingQueue<>();
 
         hikariConfig.setPoolName("LibreLogin SQLite Pool");
         hikariConfig.setDriverClassName("org.sqlite.JDBC");
         hikariConfig.setMaxLifetime(60000);
-        hikariConfig.addDataSourceProperty("cachePrepStmts", "true");
-        hikariConfig.addDataSourceProperty("prepStmtCacheSize", "250");
-        hikariConfig.addDataSourceProperty("prepStmtCacheSqlLimit", "2048");
+
+        // Passed to the driver, which applies them as pragmas on every new connection
+        hikariConfig.addDataSourceProperty("journal_mode", get(Configuration.JOURNAL_MODE));
+        hikariConfig.addDataSourceProperty("synchronous", get(Configuration.SYNCHRONOUS));
+        hikariConfig.addDataSourceProperty("cache_size", String.valueOf(get(Configuration.CACHE_SIZE)));
+        hikariConfig.addDataSourceProperty("mmap_size", String.valueOf(get(Configuration.MMAP_SIZE)));
+        hikariConfig.addDataSourceProperty("busy_timeout", String.valueOf(get(Configuration.BUSY_TIMEOUT)));
 
         hikariConfig.setJdbcUrl("jdbc:sqlite:" + plugin.getDataFolder().getAbsolutePath() + "/" + get(Configuration.PATH));
     }
@@ -43,11 +61,28 @@ public class AuthenticSQLiteDatabaseConnector extends AuthenticDatabaseConnector
         dataSource = new HikariDataSource(hikariConfig);
         obtainInterface().close(); //Verify connection
         connected = true;
+
+        if (get(Configuration.SINGLE_WRITER)) {
+            writer = new Thread(this::runWriter, "LibreLogin SQLite Writer");
+            writer.setDaemon(true);
+            writer.start();
+        }
     }
 
     @Override
     public void disconnect() throws SQLException {
         connected = false;
+
+        if (writer != null) {
+            try {
+                // Let the writer flush the pending writes
+                writer.join(5000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            writer = null;
+        }
+
         dataSource.close();
     }
 
@@ -58,22 +93,129 @@ public class AuthenticSQLiteDatabaseConnector extends AuthenticDatabaseConnector
     }
 
     @Override
-    public <V> V runQuery(ThrowableFunction<Connection, V, SQLException> function) throws IllegalStateException {
-        try {
+    public <V> V runQuery(ThrowableFunction<Connection, V, SQLException> function, boolean retry) throws IllegalStateException {
+        return circuitBreaker.execute(() -> {
             try (var connection = obtainInterface()) {
                 return function.apply(connection);
             }
-        } catch (SQLTransientConnectionException e) {
-            plugin.getLogger().error("!! LOST CONNECTION TO THE DATABASE, THE PROXY IS GOING TO SHUT DOWN TO PREVENT DAMAGE !!");
-            e.printStackTrace();
-            System.exit(1);
-            //Won't return anyway
-            return null;
+        }, retry);
+    }
+
+    /**
+     * Runs a query modifying data. If the single writer is enabled, the query is handed over to the writer thread,
+     * which batches concurrent writes into a single transaction. The calling thread waits until the write is committed.
+     *
+     * @param retry Whether the write may be retried after a transient failure, must be false for writes which are not idempotent
+     */
+    public <V> V runWrite(ThrowableFunction<Connection, V, SQLException> function, boolean retry) throws IllegalStateException {
+        if (writer == null) return runQuery(function, retry);
+
+        return circuitBreaker.execute(() -> {
+            if (!connected()) throw new IllegalStateException("Not connected to the database!");
+
+            var task = new WriteTask<>(function, new CompletableFuture<>());
+
+            writes.add(task);
+
+            try {
+                return task.future().get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            } catch (ExecutionException e) {
+                var cause = e.getCause();
+                if (cause instanceof SQLException sql) throw sql;
+                if (cause instanceof RuntimeException runtime) throw runtime;
+                throw new RuntimeException(cause);
+            }
+        }, retry);
+    }
+
+    private void runWriter() {
+        var batch = new ArrayList<WriteTask<?>>(MAX_WRITE_BATCH);
+
+        while (connected || !writes.isEmpty()) {
+            try {
+                var first = writes.poll(1, TimeUnit.SECONDS);
+                if (first == null) continue;
+
+                batch.add(first);
+                writes.drainTo(batch, MAX_WRITE_BATCH - 1);
+
+                writeBatch(batch);
+            } catch (InterruptedException e) {
+                break;
+            } finally {
+                batch.clear();
+            }
+        }
+
+        WriteTask<?> remaining;
+        while ((remaining = writes.poll()) != null) {
+            remaining.future().completeExceptionally(new IllegalStateException("Not connected to the database!"));
+        }
+    }
+
+    private void writeBatch(List<WriteTask<?>> batch) {
+        try (var connection = dataSource.getConnection()) {
+            if (batch.size() == 1) {
+                batch.get(0).run(connection);
+                return;
+            }
+
+            var completions = new ArrayList<Runnable>(batch.size());
+
+            connection.setAutoCommit(false);
+
+            try {
+                for (WriteTask<?> task : batch) {
+                    completions.add(task.apply(connection));
+                }
+
+                connection.commit();
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                connection.setAutoCommit(true);
+
+                // Run the writes one by one, so only the faulty one fails
+                for (WriteTask<?> task : batch) {
+                    task.run(connection);
+                }
+
+                return;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+
+            completions.forEach(Runnable::run);
+            plugin.getStatistics().add("database.batched-writes", batch.size());
         } catch (SQLException e) {
-            throw new RuntimeException(e);
+            for (WriteTask<?> task : batch) {
+                task.future().completeExceptionally(e);
+            }
         }
     }
 
+    private record WriteTask<V>(ThrowableFunction<Connection, V, SQLException> function, CompletableFuture<V> future) {
+
+        /**
+         * Applies the write without completing the future, returns the completion to be run once the transaction commits.
+         */
+        private Runnable apply(Connection connection) throws SQLException {
+            var result = function.apply(connection);
+            return () -> future.complete(result);
+        }
+
+        private void run(Connection connection) {
+            try {
+                future.complete(function.apply(connection));
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            }
+        }
+
+    }
+
     public static final class Configuration {
         public static final ConfigurationKey<String> PATH = new ConfigurationKey<>(
                 "path",
@@ -81,5 +223,47 @@ public class AuthenticSQLiteDatabaseConnector extends AuthenticDatabaseConnector
                 "Path to SQLite database file. Relative to plugin datafolder.",
                 ConfigurateHelper::getString
         );
+
+        public static final ConfigurationKey<String> JOURNAL_MODE = new ConfigurationKey<>(
+                "journal-mode",
+                "WAL",
+                "The journal mode of the database. WAL lets players be loaded while data is being written. Don't touch this if you don't know what you're doing.",
+                ConfigurateHelper::getString
+        );
+
+        public static final ConfigurationKey<String> SYNCHRONOUS = new ConfigurationKey<>(
+                "synchronous",
+                "NORMAL",
+                "How strictly should SQLite wait for data to reach the disk. NORMAL is safe with WAL, use FULL for the highest durability at the cost of write speed.",
+                ConfigurateHelper::getString
+        );
+
+        public static final ConfigurationKey<Integer> CACHE_SIZE = new ConfigurationKey<>(
+                "cache-size",
+                -8000,
+                "The page cache size of each connection. Negative values are in kibibytes, positive values in pages.",
+                ConfigurateHelper::getInt
+        );
+
+        public static final ConfigurationKey<Long> MMAP_SIZE = new ConfigurationKey<>(
+                "mmap-size",
+                67108864L,
+                "How many bytes of the database file may be memory-mapped for faster reads. Set to 0 to disable.",
+                ConfigurateHelper::getLong
+        );
+
+        public static final ConfigurationKey<Integer> BUSY_TIMEOUT = new ConfigurationKey<>(
+                "busy-timeout",
+                5000,
+                "For how long in milliseconds should a connection wait for a lock on the database before failing.",
+                ConfigurateHelper::getInt
+        );
+
+        public static final ConfigurationKey<Boolean> SINGLE_WRITER = new ConfigurationKey<>(
+                "single-writer",
+                true,
+                "Should all writes be performed by a single thread, batching concurrent writes into one transaction? This avoids lock contention between connections.",
+                ConfigurateHelper::getBoolean
+        );
     }
 }
@@ -0,0 +1,211 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package xyz.kyngs.librelogin.common.database.connector;
+
+import xyz.kyngs.librelogin.common.AuthenticLibreLogin;
+import xyz.kyngs.librelogin.common.database.DatabaseUnavailableException;
+import xyz.kyngs.librelogin.common.util.GeneralUtil;
+
+import java.sql.SQLException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientException;
+import java.util.Deque;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static xyz.kyngs.librelogin.common.config.ConfigurationKeys.*;
+
+/**
+ * Guards queries against a temporary loss of the database connection.
+ * <br>
+ * Transient failures of idempotent queries are retried with an exponential backoff. Once the retries are exhausted, the breaker opens and every query
+ * fails fast with {@link DatabaseUnavailableException} until the cooldown elapses. After that, a single query is let through to probe the connection.
+ * Idempotent writes, which could not be performed while the breaker was open, are replayed in order once the connection is restored.<br>
+ * <b>This implementation is thread-safe.</b>
+ */
+public class DatabaseCircuitBreaker {
+
+    private final AuthenticLibreLogin<?, ?> plugin;
+    private final Deque<Runnable> pendingWrites;
+    private final AtomicInteger pendingWriteCount;
+    private final AtomicBoolean probing;
+    private final AtomicBoolean replaying;
+    private volatile boolean open;
+    private volatile long retryAt;
+
+    public DatabaseCircuitBreaker(AuthenticLibreLogin<?, ?> plugin) {
+        this.plugin = plugin;
+        this.pendingWrites = new ConcurrentLinkedDeque<>();
+        this.pendingWriteCount = new AtomicInteger();
+        this.probing = new AtomicBoolean();
+        this.replaying = new AtomicBoolean();
+    }
+
+    /**
+     * @return Whether the breaker is open, meaning that the database is considered unavailable
+     */
+    public boolean isOpen() {
+        return open;
+    }
+
+    /**
+     * @return False if queries are currently being refused, true otherwise
+     */
+    public boolean isAvailable() {
+        return !open || System.currentTimeMillis() >= retryAt;
+    }
+
+    public int getPendingWriteCount() {
+        return pendingWriteCount.get();
+    }
+
+    public <V> V execute(Query<V> query) {
+        return execute(query, true);
+    }
+
+    /**
+     * Runs the query, unless the breaker is open.
+     *
+     * @param query The query
+     * @param retry Whether the query may be retried after a transient failure. This must be false for queries which are not idempotent,
+     *              as it is unknown whether a failed attempt has been committed
+     * @return The result of the query
+     * @throws DatabaseUnavailableException If the database is unavailable
+     */
+    public <V> V execute(Query<V> query, boolean retry) {
+        var probe = false;
+
+        if (open) {
+            if (System.currentTimeMillis() < retryAt || !probing.compareAndSet(false, true)) {
+                plugin.getStatistics().increment("database.rejected-queries");
+                throw new DatabaseUnavailableException();
+            }
+            probe = true;
+        }
+
+        try {
+            var attempts = probe || !retry ? 1 : Math.max(1, plugin.getConfiguration().get(DATABASE_RETRY_ATTEMPTS));
+            long backoff = plugin.getConfiguration().get(DATABASE_RETRY_BACKOFF);
+
+            for (int attempt = 1; ; attempt++) {
+                try {
+                    var result = query.run();
+                    if (probe) close();
+                    return result;
+                } catch (SQLTransientException | SQLRecoverableException e) {
+                    if (attempt >= attempts) {
+                        // A single failure of a query we are not allowed to retry is not enough to consider the database lost
+                        if (retry || probe) trip(e);
+                        throw new DatabaseUnavailableException(e);
+                    }
+
+                    plugin.getStatistics().increment("database.retried-queries");
+                    plugin.getLogger().debug("Query failed due to a transient error, retrying (%s/%s). Cause: %s".formatted(attempt, attempts, e.getMessage()));
+
+                    try {
+                        Thread.sleep(backoff << (attempt - 1));
+                    } catch (InterruptedException interrupted) {
+                        Thread.currentThread().interrupt();
+                        throw new DatabaseUnavailableException(e);
+                    }
+                } catch (SQLException e) {
+                    // We've reached the database, the query itself is at fault
+                    if (probe) close();
+                    throw new RuntimeException(e);
+                }
+            }
+        } finally {
+            if (probe) probing.set(false);
+        }
+    }
+
+    /**
+     * Queues a write to be replayed once the database becomes available again.
+     *
+     * @param write The write, must be idempotent, as it might have been committed before the connection was lost
+     * @return False if the queue is full and the write was dropped, true otherwise
+     */
+    public boolean deferWrite(Runnable write) {
+        if (pendingWriteCount.incrementAndGet() > plugin.getConfiguration().get(DATABASE_MAX_PENDING_WRITES)) {
+            pendingWriteCount.decrementAndGet();
+            plugin.getStatistics().increment("database.dropped-writes");
+            return false;
+        }
+
+        pendingWrites.offer(write);
+        plugin.getStatistics().increment("database.deferred-writes");
+
+        // The connection might have been restored in the meantime
+        if (!open) scheduleReplay();
+
+        return true;
+    }
+
+    private synchronized void trip(Exception cause) {
+        retryAt = System.currentTimeMillis() + plugin.getConfiguration().get(DATABASE_UNAVAILABLE_COOLDOWN);
+
+        if (open) return;
+
+        open = true;
+        plugin.getStatistics().increment("database.outages");
+        plugin.getLogger().error("!! LOST CONNECTION TO THE DATABASE, PLAYERS WILL NOT BE ABLE TO JOIN UNTIL IT IS RESTORED !!");
+        plugin.getLogger().error("Cause: %s: %s".formatted(cause.getClass().getSimpleName(), cause.getMessage()));
+    }
+
+    private synchronized void close() {
+        if (!open) return;
+
+        open = false;
+        plugin.getLogger().info("Connection to the database has been restored");
+
+        scheduleReplay();
+    }
+
+    private void scheduleReplay() {
+        if (pendingWrites.isEmpty() || !replaying.compareAndSet(false, true)) return;
+
+        GeneralUtil.ASYNC_POOL.submit(() -> {
+            try {
+                replayPendingWrites();
+            } finally {
+                replaying.set(false);
+            }
+        });
+    }
+
+    private void replayPendingWrites() {
+        var replayed = 0;
+        Runnable write;
+
+        while (!open && (write = pendingWrites.poll()) != null) {
+            try {
+                write.run();
+                pendingWriteCount.decrementAndGet();
+                replayed++;
+            } catch (DatabaseUnavailableException e) {
+                // Lost the connection again, keep the order and wait for the next recovery
+                pendingWrites.offerFirst(write);
+                break;
+            } catch (Exception e) {
+                pendingWriteCount.decrementAndGet();
+                plugin.getLogger().error("Failed to replay a pending write, dropping it. Cause: %s: %s".formatted(e.getClass().getSimpleName(), e.getMessage()));
+            }
+        }
+
+        if (replayed > 0) {
+            plugin.getStatistics().add("database.replayed-writes", replayed);
+            plugin.getLogger().info("Replayed %s pending writes".formatted(replayed));
+        }
+    }
+
+    @FunctionalInterface
+    public interface Query<V> {
+        V run() throws SQLException;
+    }
+
+}
@@ -0,0 +1,631 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package xyz.kyngs.librelogin.common.database.embedded;
+
+import org.jetbrains.annotations.Nullable;
+import xyz.kyngs.librelogin.api.Logger;
+import xyz.kyngs.librelogin.api.crypto.HashedPassword;
+import xyz.kyngs.librelogin.api.database.User;
+import xyz.kyngs.librelogin.common.database.AuthenticUser;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * An embedded user store backed by a single memory-mapped, append-only file.
+ * <br>
+ * The file starts with a header (magic and version), followed by records laid out as [length][crc32][type][payload].
+ * The length covers the type and the payload, a zero length marks the end of the data. Every change appends a new record,
+ * the old one becomes dead. Deletions append a tombstone. The length of a record is written last, so a record torn by a crash
+ * is never picked up, and the checksum guards against pages written out of order.
+ * <br>
+ * All live records are indexed in memory by UUID, premium UUID, lower-cased name and IP, so lookups don't have to scan the file.
+ * Once dead records take up more space than live ones, the file is compacted: live records are copied into a temporary file,
+ * which then atomically replaces the original. Where a mapped file cannot be replaced (Windows), the records are copied over the original instead,
+ * with the temporary file kept until then, so an interrupted copy is completed on the next start.<br>
+ * <b>This implementation is thread-safe.</b>
+ */
+public class EmbeddedUserStore {
+
+    private static final int MAGIC = 0x4C4C4442; // LLDB
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final byte TYPE_PUT = 1;
+    private static final byte TYPE_DELETE = 2;
+    private static final int MIN_CAPACITY = 1 << 20;
+    private static final long MIN_COMPACTION_SIZE = 1 << 20;
+
+    private final Path path;
+    private final Path compactionPath;
+    private final Path pendingCompactionPath;
+    private final boolean forceWrites;
+    private final Logger logger;
+    private final ReentrantReadWriteLock lock;
+    private final Map<UUID, UUID> premiumIndex;
+    private final Map<String, UUID> nameIndex;
+    private final Map<String, Set<UUID>> ipIndex;
+    private Map<UUID, Entry> entries;
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int end;
+    private long liveBytes;
+    private long deadBytes;
+
+    public EmbeddedUserStore(Path path, boolean forceWrites, Logger logger) {
+        this.path = path;
+        this.compactionPath = path.resolveSibling(path.getFileName() + ".compact");
+        this.pendingCompactionPath = path.resolveSibling(path.getFileName() + ".compact-pending");
+        this.forceWrites = forceWrites;
+        this.logger = logger;
+        this.lock = new ReentrantReadWriteLock();
+        this.entries = new HashMap<>();
+        this.premiumIndex = new HashMap<>();
+        this.nameIndex = new HashMap<>();
+        this.ipIndex = new HashMap<>();
+    }
+
+    public void open() throws IOException {
+        lock.writeLock().lock();
+        try {
+            // Leftover of an interrupted compaction, the original file is still intact
+            Files.deleteIfExists(compactionPath);
+            // A complete compacted copy, the original file may have been left broken while copying it in place
+            if (Files.exists(pendingCompactionPath)) Files.move(pendingCompactionPath, path, REPLACE_EXISTING);
+
+            channel = FileChannel.open(path, CREATE, READ, WRITE);
+
+            var size = channel.size();
+
+            if (size > Integer.MAX_VALUE) throw new IOException("The database file is too large");
+
+            map((int) Math.max(size, MIN_CAPACITY));
+
+            if (buffer.getInt(0) == 0) {
+                buffer.putInt(0, MAGIC);
+                buffer.putInt(4, VERSION);
+                end = HEADER_SIZE;
+                return;
+            }
+
+            if (buffer.getInt(0) != MAGIC) throw new IOException("%s is not a LibreLogin database file".formatted(path));
+            if (buffer.getInt(4) != VERSION)
+                throw new IOException("Unsupported version %s of the database file".formatted(buffer.getInt(4)));
+
+            load();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        compactIfNeeded();
+    }
+
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            if (channel == null) return;
+
+            buffer.force();
+            channel.close();
+            channel = null;
+            buffer = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Nullable
+    public User get(UUID uuid) {
+        lock.readLock().lock();
+        try {
+            var entry = entries.get(uuid);
+            return entry == null ? null : decode(entry.offset());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Nullable
+    public User getByPremiumUUID(UUID premiumUUID) {
+        lock.readLock().lock();
+        try {
+            var uuid = premiumIndex.get(premiumUUID);
+            return uuid == null ? null : decode(entries.get(uuid).offset());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Nullable
+    public User getByName(String name) {
+        lock.readLock().lock();
+        try {
+            var uuid = nameIndex.get(name.toLowerCase(Locale.ROOT));
+            return uuid == null ? null : decode(entries.get(uuid).offset());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public List<User> getByIP(String ip) {
+        lock.readLock().lock();
+        try {
+            var uuids = ipIndex.get(ip);
+            if (uuids == null) return new ArrayList<>();
+
+            var users = new ArrayList<User>(uuids.size());
+
+            for (UUID uuid : uuids) {
+                users.add(decode(entries.get(uuid).offset()));
+            }
+
+            return users;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public List<User> getAll() {
+        lock.readLock().lock();
+        try {
+            var users = new ArrayList<User>(entries.size());
+
+            for (Entry entry : entries.values()) {
+                users.add(decode(entry.offset()));
+            }
+
+            return users;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Inserts or replaces the user.
+     *
+     * @throws IllegalArgumentException If the premium UUID of the user already belongs to someone else
+     */
+    public void put(User user) throws IOException {
+        var record = encode(user);
+
+        lock.writeLock().lock();
+        try {
+            checkPremiumUUID(user);
+            append(TYPE_PUT, record, user);
+            if (forceWrites) buffer.force();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        compactIfNeeded();
+    }
+
+    /**
+     * Inserts all the users, which are not present yet. Users with a conflicting premium UUID are skipped.
+     */
+    public void putAll(Collection<User> users) throws IOException {
+        lock.writeLock().lock();
+        try {
+            for (User user : users) {
+                if (entries.containsKey(user.getUuid())) continue;
+                if (user.getPremiumUUID() != null && premiumIndex.containsKey(user.getPremiumUUID())) continue;
+
+                append(TYPE_PUT, encode(user), user);
+            }
+
+            buffer.force();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        compactIfNeeded();
+    }
+
+    public void delete(UUID uuid) throws IOException {
+        var tombstone = ByteBuffer.allocate(16)
+                .putLong(uuid.getMostSignificantBits())
+                .putLong(uuid.getLeastSignificantBits())
+                .array();
+
+        lock.writeLock().lock();
+        try {
+            if (!entries.containsKey(uuid)) return;
+
+            append(TYPE_DELETE, tombstone, null);
+
+            unindex(uuid);
+            deadBytes += RECORD_HEADER_SIZE + 1 + tombstone.length;
+
+            if (forceWrites) buffer.force();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        compactIfNeeded();
+    }
+
+    /**
+     * Compacts the file if dead records take up more space than live ones.
+     */
+    public void compactIfNeeded() throws IOException {
+        lock.writeLock().lock();
+        try {
+            if (channel == null || deadBytes < MIN_COMPACTION_SIZE || deadBytes < liveBytes) return;
+
+            compact();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void compact() throws IOException {
+        var start = System.currentTimeMillis();
+        var live = new ArrayList<>(entries.entrySet());
+        var compacted = new HashMap<UUID, Entry>(entries.size());
+        var position = HEADER_SIZE;
+
+        // Records only ever move towards the start of the file, which allows copying them in place
+        live.sort(Comparator.comparingInt(entry -> entry.getValue().offset()));
+
+        // Written through the channel, some platforms (Windows) can neither move nor delete a mapped file
+        try (var target = FileChannel.open(compactionPath, CREATE, TRUNCATE_EXISTING, WRITE)) {
+            write(target, ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(VERSION).flip(), 0);
+
+            for (Map.Entry<UUID, Entry> entry : live) {
+                var value = entry.getValue();
+
+                write(target, buffer.slice(value.offset(), value.size()), position);
+                compacted.put(entry.getKey(), value.withOffset(position));
+
+                position += value.size();
+            }
+
+            target.force(true);
+        }
+
+        var reclaimed = deadBytes;
+
+        var replaced = true;
+
+        try {
+            Files.move(compactionPath, path, ATOMIC_MOVE, REPLACE_EXISTING);
+        } catch (IOException e) {
+            replaced = false;
+        }
+
+        if (replaced) {
+            channel.close();
+            channel = FileChannel.open(path, READ, WRITE);
+            map((int) Math.min(Integer.MAX_VALUE, Math.max(MIN_CAPACITY, (long) position * 2)));
+        } else {
+            // Some platforms (Windows) refuse to replace a mapped file, copy the records over it instead.
+            // The file does not shrink, but the reclaimed space is reused by later records
+            Files.move(compactionPath, pendingCompactionPath, REPLACE_EXISTING);
+            compactInPlace(live, position);
+            Files.delete(pendingCompactionPath);
+        }
+
+        entries = compacted;
+        end = position;
+        deadBytes = 0;
+
+        logger.debug("Compacted the database file, reclaimed %s bytes in %s ms".formatted(reclaimed, System.currentTimeMillis() - start));
+    }
+
+    /**
+     * Copies the live records, sorted by their offset, to the start of the current file. A crash in the middle of this
+     * leaves the file broken, which is why the compacted copy must be kept in {@link #pendingCompactionPath} until this finishes.
+     */
+    private void compactInPlace(List<Map.Entry<UUID, Entry>> live, int size) {
+        var position = HEADER_SIZE;
+
+        for (Map.Entry<UUID, Entry> entry : live) {
+            var value = entry.getValue();
+            var record = new byte[value.size()];
+
+            buffer.get(value.offset(), record);
+            buffer.put(position, record);
+
+            position += record.length;
+        }
+
+        // Leftovers of moved records must never be picked up behind a new record
+        for (int i = size; i < end; i++) {
+            buffer.put(i, (byte) 0);
+        }
+
+        buffer.force();
+    }
+
+    private static void write(FileChannel channel, ByteBuffer source, long position) throws IOException {
+        while (source.hasRemaining()) {
+            position += channel.write(source, position);
+        }
+    }
+
+    private void load() {
+        var position = HEADER_SIZE;
+        var torn = false;
+
+        while (position + RECORD_HEADER_SIZE < buffer.capacity()) {
+            var length = buffer.getInt(position);
+
+            if (length == 0) break;
+
+            if (length < 0 || (long) position + RECORD_HEADER_SIZE + length > buffer.capacity()
+                    || buffer.getInt(position + 4) != checksum(position + RECORD_HEADER_SIZE, length)) {
+                torn = true;
+                break;
+            }
+
+            var size = RECORD_HEADER_SIZE + length;
+            var type = buffer.get(position + RECORD_HEADER_SIZE);
+
+            if (type == TYPE_PUT) {
+                var user = decode(position);
+                var old = entries.get(user.getUuid());
+
+                if (old != null) {
+                    unindex(user.getUuid());
+                    deadBytes += old.size();
+                }
+
+                index(user, position, size);
+            } else if (type == TYPE_DELETE) {
+                var in = buffer.duplicate().position(position + RECORD_HEADER_SIZE + 1);
+                var uuid = new UUID(in.getLong(), in.getLong());
+                var old = entries.get(uuid);
+
+                if (old != null) {
+                    unindex(uuid);
+                    deadBytes += old.size();
+                }
+
+                deadBytes += size;
+            }
+
+            position += size;
+        }
+
+        end = position;
+
+        if (torn) {
+            logger.warn("The database file ends with an incomplete record, most likely due to a crash. The incomplete record has been discarded.");
+
+            // Make sure the garbage never resurfaces behind a new record
+            for (int i = end; i < buffer.capacity(); i++) {
+                buffer.put(i, (byte) 0);
+            }
+            buffer.force();
+        }
+    }
+
+    private void append(byte type, byte[] payload, @Nullable User user) throws IOException {
+        var length = 1 + payload.length;
+        var size = RECORD_HEADER_SIZE + length;
+
+        ensureCapacity(size);
+
+        var position = end;
+
+        buffer.put(position + RECORD_HEADER_SIZE, type);
+        buffer.put(position + RECORD_HEADER_SIZE + 1, payload);
+        buffer.putInt(position + 4, checksum(position + RECORD_HEADER_SIZE, length));
+        // Written last, the record doesn't exist until this is set
+        buffer.putInt(position, length);
+
+        end += size;
+
+        if (user != null) {
+            var old = entries.get(user.getUuid());
+
+            if (old != null) {
+                unindex(user.getUuid());
+                deadBytes += old.size();
+            }
+
+            index(user, position, size);
+        }
+    }
+
+    private void ensureCapacity(int size) throws IOException {
+        // Keep space for the terminating zero length
+        var required = (long) end + size + 4;
+
+        if (required <= buffer.capacity()) return;
+        if (required > Integer.MAX_VALUE) throw new IOException("The database file has reached its maximum size");
+
+        long capacity = buffer.capacity();
+
+        while (capacity < required) {
+            capacity *= 2;
+        }
+
+        map((int) Math.min(capacity, Integer.MAX_VALUE));
+    }
+
+    private void map(int capacity) throws IOException {
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+    }
+
+    private void checkPremiumUUID(User user) {
+        if (user.getPremiumUUID() == null) return;
+
+        var owner = premiumIndex.get(user.getPremiumUUID());
+
+        if (owner != null && !owner.equals(user.getUuid()))
+            throw new IllegalArgumentException("Premium UUID %s already belongs to %s".formatted(user.getPremiumUUID(), owner));
+    }
+
+    private void index(User user, int position, int size) {
+        var name = user.getLastNickname().toLowerCase(Locale.ROOT);
+
+        entries.put(user.getUuid(), new Entry(position, size, user.getPremiumUUID(), name, user.getIp()));
+        liveBytes += size;
+
+        nameIndex.put(name, user.getUuid());
+        if (user.getPremiumUUID() != null) premiumIndex.put(user.getPremiumUUID(), user.getUuid());
+        if (user.getIp() != null) ipIndex.computeIfAbsent(user.getIp(), x -> new HashSet<>()).add(user.getUuid());
+    }
+
+    private void unindex(UUID uuid) {
+        var entry = entries.remove(uuid);
+
+        if (entry == null) return;
+
+        liveBytes -= entry.size();
+
+        nameIndex.remove(entry.name(), uuid);
+        if (entry.premiumUUID() != null) premiumIndex.remove(entry.premiumUUID(), uuid);
+        if (entry.ip() != null) {
+            var uuids = ipIndex.get(entry.ip());
+            if (uuids != null) {
+                uuids.remove(uuid);
+                if (uuids.isEmpty()) ipIndex.remove(entry.ip());
+            }
+        }
+    }
+
+    private int checksum(int position, int length) {
+        var crc = new CRC32();
+        crc.update(buffer.slice(position, length));
+        return (int) crc.getValue();
+    }
+
+    private static byte[] encode(User user) throws IOException {
+        var bytes = new ByteArrayOutputStream(256);
+        var out = new DataOutputStream(bytes);
+        var password = user.getHashedPassword();
+
+        out.writeLong(user.getUuid().getMostSignificantBits());
+        out.writeLong(user.getUuid().getLeastSignificantBits());
+        writeUUID(out, user.getPremiumUUID());
+        writeString(out, password == null ? null : password.hash());
+        writeString(out, password == null ? null : password.salt());
+        writeString(out, password == null ? null : password.algo());
+        writeString(out, user.getLastNickname());
+        writeTimestamp(out, user.getJoinDate());
+        writeTimestamp(out, user.getLastSeen());
+        writeString(out, user.getSecret());
+        writeString(out, user.getIp());
+        writeTimestamp(out, user.getLastAuthentication());
+        writeString(out, user.getLastServer());
+        writeString(out, user.getEmail());
+
+        return bytes.toByteArray();
+    }
+
+    private User decode(int position) {
+        var in = buffer.duplicate().position(position + RECORD_HEADER_SIZE + 1);
+
+        var uuid = new UUID(in.getLong(), in.getLong());
+        var premiumUUID = readUUID(in);
+        var hash = readString(in);
+        var salt = readString(in);
+        var algo = readString(in);
+
+        return new AuthenticUser(
+                uuid,
+                premiumUUID,
+                hash == null ? null : new HashedPassword(hash, salt, algo),
+                readString(in),
+                readTimestamp(in),
+                readTimestamp(in),
+                readString(in),
+                readString(in),
+                readTimestamp(in),
+                readString(in),
+                readString(in)
+        );
+    }
+
+    private static void writeUUID(DataOutputStream out, @Nullable UUID uuid) throws IOException {
+        out.writeBoolean(uuid != null);
+        if (uuid == null) return;
+        out.writeLong(uuid.getMostSignificantBits());
+        out.writeLong(uuid.getLeastSignificantBits());
+    }
+
+    @Nullable
+    private static UUID readUUID(ByteBuffer in) {
+        return in.get() == 0 ? null : new UUID(in.getLong(), in.getLong());
+    }
+
+    private static void writeString(DataOutputStream out, @Nullable String string) throws IOException {
+        if (string == null) {
+            out.writeInt(-1);
+            return;
+        }
+
+        var bytes = string.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    @Nullable
+    private static String readString(ByteBuffer in) {
+        var length = in.getInt();
+
+        if (length < 0) return null;
+
+        var bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeTimestamp(DataOutputStream out, @Nullable Timestamp timestamp) throws IOException {
+        out.writeBoolean(timestamp != null);
+        if (timestamp == null) return;
+        out.writeLong(timestamp.getTime());
+        out.writeInt(timestamp.getNanos());
+    }
+
+    @Nullable
+    private static Timestamp readTimestamp(ByteBuffer in) {
+        if (in.get() == 0) return null;
+
+        var timestamp = new Timestamp(in.getLong());
+        timestamp.setNanos(in.getInt());
+        return timestamp;
+    }
+
+    /**
+     * The location of a live record, along with the indexed values, so the indexes can be updated without decoding the old record.
+     */
+    private record Entry(int offset, int size, @Nullable UUID premiumUUID, String name, @Nullable String ip) {
+
+        private Entry withOffset(int offset) {
+            return new Entry(offset, size, premiumUUID, name, ip);
+        }
+
+    }
+
+}
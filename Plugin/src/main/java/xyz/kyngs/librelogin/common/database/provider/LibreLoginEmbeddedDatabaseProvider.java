@@ -0,0 +1,85 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package xyz.kyngs.librelogin.common.database.provider;
+
+import xyz.kyngs.librelogin.api.database.User;
+import xyz.kyngs.librelogin.api.util.ThrowableConsumer;
+import xyz.kyngs.librelogin.api.util.ThrowableFunction;
+import xyz.kyngs.librelogin.common.AuthenticLibreLogin;
+import xyz.kyngs.librelogin.common.database.AuthenticDatabaseProvider;
+import xyz.kyngs.librelogin.common.database.connector.AuthenticEmbeddedDatabaseConnector;
+import xyz.kyngs.librelogin.common.database.embedded.EmbeddedUserStore;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.UUID;
+
+/**
+ * A provider for single-proxy setups, which keeps the users in an embedded file instead of an SQL database.
+ */
+public class LibreLoginEmbeddedDatabaseProvider extends AuthenticDatabaseProvider<AuthenticEmbeddedDatabaseConnector> {
+
+    public LibreLoginEmbeddedDatabaseProvider(AuthenticEmbeddedDatabaseConnector connector, AuthenticLibreLogin<?, ?> plugin) {
+        super(connector, plugin);
+    }
+
+    @Override
+    public User getByName(String name) {
+        return read(store -> store.getByName(name));
+    }
+
+    @Override
+    public User getByUUID(UUID uuid) {
+        return read(store -> store.get(uuid));
+    }
+
+    @Override
+    public User getByPremiumUUID(UUID uuid) {
+        return read(store -> store.getByPremiumUUID(uuid));
+    }
+
+    @Override
+    public Collection<User> getAllUsers() {
+        return read(EmbeddedUserStore::getAll);
+    }
+
+    @Override
+    public Collection<User> getByIP(String ip) {
+        return read(store -> store.getByIP(ip));
+    }
+
+    @Override
+    public void insertUser(User user) {
+        write(store -> store.put(user));
+    }
+
+    @Override
+    public void insertUsers(Collection<User> users) {
+        write(store -> store.putAll(users));
+    }
+
+    @Override
+    public void updateUser(User user) {
+        write(store -> store.put(user));
+    }
+
+    @Override
+    public void deleteUser(User user) {
+        write(store -> store.delete(user.getUuid()));
+    }
+
+    private <V> V read(ThrowableFunction<EmbeddedUserStore, V, IOException> query) {
+        plugin.reportMainThread();
+        return connector.runQuery(query);
+    }
+
+    private void write(ThrowableConsumer<EmbeddedUserStore, IOException> action) {
+        plugin.reportMainThread();
+        connector.runQuery(action);
+    }
+
+}
@@ -22,15 +22,16 @@ public class LibreLoginMySQLDatabaseProvider extends LibreLoginSQLDatabaseProvid
 
     @Override
     protected List<String> getColumnNames(Connection connection) throws SQLException {
-        var resultSet = connection.prepareStatement("SELECT column_name FROM INFORMATION_SCHEMA.COLUMNS WHERE TABLE_NAME='librepremium_data' and TABLE_SCHEMA='" + ((AuthenticMySQLDatabaseConnector) connector).get(AuthenticMySQLDatabaseConnector.Configuration.NAME) + "'")
-                .executeQuery();
+        try (var ps = connection.prepareStatement("SELECT column_name FROM INFORMATION_SCHEMA.COLUMNS WHERE TABLE_NAME='librepremium_data' and TABLE_SCHEMA='" + ((AuthenticMySQLDatabaseConnector) connector).get(AuthenticMySQLDatabaseConnector.Configuration.NAME) + "'");
+             var resultSet = ps.executeQuery()) {
+            var columns = new ArrayList<String>();
 
-        var columns = new ArrayList<String>();
-        while (resultSet.next()) {
-            columns.add(resultSet.getString("column_name"));
-        }
+            while (resultSet.next()) {
+                columns.add(resultSet.getString("column_name"));
+            }
 
-        return columns;
+            return columns;
+        }
     }
 
     @Override
@@ -38,6 +39,36 @@ public class LibreLoginMySQLDatabaseProvider extends LibreLoginSQLDatabaseProvid
         return "IGNORE";
     }
 
+    @Override
+    protected void lockSchema(Connection connection) throws SQLException {
+        try (var ps = connection.prepareStatement("SELECT GET_LOCK(?, 300)")) {
+            ps.setString(1, schemaLockName(connection));
+
+            try (var rs = ps.executeQuery()) {
+                if (!rs.next() || rs.getInt(1) != 1)
+                    throw new SQLException("Timed out while waiting for another proxy to migrate the schema");
+            }
+        }
+    }
+
+    @Override
+    protected void unlockSchema(Connection connection) throws SQLException {
+        try (var ps = connection.prepareStatement("SELECT RELEASE_LOCK(?)")) {
+            ps.setString(1, schemaLockName(connection));
+            ps.executeQuery().close();
+        }
+    }
+
+    /**
+     * Named locks are global to the whole server, include the database, so that separate networks on a single server do not wait for each other.
+     */
+    private static String schemaLockName(Connection connection) throws SQLException {
+        var name = "librelogin_schema_" + connection.getCatalog();
+
+        // MySQL refuses longer names
+        return name.length() > 64 ? name.substring(0, 64) : name;
+    }
+
     @Override
     protected String addUnique(String column) {
         return "CREATE UNIQUE INDEX %s_index ON librepremium_data(%s)".formatted(column, column);
@@ -15,21 +15,30 @@ import java.util.ArrayList;
 import java.util.List;
 
 public class LibreLoginPostgreSQLDatabaseProvider extends LibreLoginSQLDatabaseProvider {
+
+    private static final long SCHEMA_LOCK = "librelogin_schema".hashCode();
+
     public LibreLoginPostgreSQLDatabaseProvider(PostgreSQLDatabaseConnector connector, AuthenticLibreLogin<?, ?> plugin) {
         super(connector, plugin);
     }
 
     @Override
     protected List<String> getColumnNames(Connection connection) throws SQLException {
-        var resultSet = connection.prepareStatement("SELECT column_name FROM INFORMATION_SCHEMA.COLUMNS WHERE TABLE_NAME='librepremium_data' and TABLE_SCHEMA='public'")
-                .executeQuery();
+        try (var ps = connection.prepareStatement("SELECT column_name FROM INFORMATION_SCHEMA.COLUMNS WHERE TABLE_NAME='librepremium_data' and TABLE_SCHEMA='public'");
+             var resultSet = ps.executeQuery()) {
+            var columns = new ArrayList<String>();
 
-        var columns = new ArrayList<String>();
-        while (resultSet.next()) {
-            columns.add(resultSet.getString("column_name"));
+            while (resultSet.next()) {
+                columns.add(resultSet.getString("column_name"));
+            }
+
+            return columns;
         }
+    }
 
-        return columns;
+    @Override
+    protected boolean supportsTransactionalSchemaChanges() {
+        return true;
     }
 
     @Override
@@ -37,6 +46,22 @@ public class LibreLoginPostgreSQLDatabaseProvider extends LibreLoginSQLDatabaseP
         return " ON CONFLICT DO NOTHING";
     }
 
+    @Override
+    protected void lockSchema(Connection connection) throws SQLException {
+        try (var ps = connection.prepareStatement("SELECT pg_advisory_lock(?)")) {
+            ps.setLong(1, SCHEMA_LOCK);
+            ps.executeQuery().close();
+        }
+    }
+
+    @Override
+    protected void unlockSchema(Connection connection) throws SQLException {
+        try (var ps = connection.prepareStatement("SELECT pg_advisory_unlock(?)")) {
+            ps.setLong(1, SCHEMA_LOCK);
+            ps.executeQuery().close();
+        }
+    }
+
     @Override
     protected String addUnique(String column) {
         return "CREATE UNIQUE INDEX %s_index ON librepremium_data(%s)".formatted(column, column);
@@ -6,173 +6,359 @@
 
 package xyz.kyngs.librelogin.common.database.provider;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import org.jetbrains.annotations.Nullable;
 import xyz.kyngs.librelogin.api.crypto.HashedPassword;
 import xyz.kyngs.librelogin.api.database.User;
 import xyz.kyngs.librelogin.api.database.connector.SQLDatabaseConnector;
+import xyz.kyngs.librelogin.api.util.ThrowableConsumer;
+import xyz.kyngs.librelogin.api.util.ThrowableFunction;
 import xyz.kyngs.librelogin.common.AuthenticLibreLogin;
 import xyz.kyngs.librelogin.common.database.AuthenticDatabaseProvider;
 import xyz.kyngs.librelogin.common.database.AuthenticUser;
+import xyz.kyngs.librelogin.common.database.DatabaseUnavailableException;
+import xyz.kyngs.librelogin.common.database.PreLoginLookup;
+import xyz.kyngs.librelogin.common.database.UserSerializer;
+import xyz.kyngs.librelogin.common.database.connector.AuthenticDatabaseConnector;
+import xyz.kyngs.librelogin.common.database.connector.DatabaseCircuitBreaker;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.Locale;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 
 public abstract class LibreLoginSQLDatabaseProvider extends AuthenticDatabaseProvider<SQLDatabaseConnector> {
 
+    /**
+     * The columns of the user table, always selected in this order, so they can be read by index.
+     */
+    protected static final String COLUMNS = "uuid, premium_uuid, hashed_password, salt, algo, last_nickname, joined, last_seen, secret, ip, last_authentication, last_server, email";
+
+    private static final int UUID_COLUMN = 1;
+    private static final int PREMIUM_UUID = 2;
+    private static final int HASHED_PASSWORD = 3;
+    private static final int SALT = 4;
+    private static final int ALGO = 5;
+    private static final int LAST_NICKNAME = 6;
+    private static final int JOINED = 7;
+    private static final int LAST_SEEN = 8;
+    private static final int SECRET = 9;
+    private static final int IP = 10;
+    private static final int LAST_AUTHENTICATION = 11;
+    private static final int LAST_SERVER = 12;
+    private static final int EMAIL = 13;
+
+    /**
+     * Serialized players of this proxy, used to serve reads while the database is unavailable.
+     */
+    private final Cache<UUID, String> recentUsers;
+    private final Cache<String, UUID> recentNames;
+    private final Cache<UUID, UUID> recentPremiumUUIDs;
+    @Nullable
+    private final DatabaseCircuitBreaker circuitBreaker;
+    protected final PreparedStatementCache statements;
+    /**
+     * The migrations of the schema, in the order they are applied. A released migration must never change, append a new one instead.
+     */
+    private final List<SchemaMigration> migrations = List.of(
+            new SchemaMigration(1, "Initial schema", this::createInitialSchema)
+    );
+
     public LibreLoginSQLDatabaseProvider(SQLDatabaseConnector connector, AuthenticLibreLogin<?, ?> plugin) {
         super(connector, plugin);
+
+        this.recentUsers = Caffeine.newBuilder()
+                .maximumSize(10000)
+                .expireAfterAccess(1, TimeUnit.HOURS)
+                .build();
+        this.recentNames = Caffeine.newBuilder()
+                .maximumSize(10000)
+                .expireAfterAccess(1, TimeUnit.HOURS)
+                .build();
+        this.recentPremiumUUIDs = Caffeine.newBuilder()
+                .maximumSize(10000)
+                .expireAfterAccess(1, TimeUnit.HOURS)
+                .build();
+        this.circuitBreaker = connector instanceof AuthenticDatabaseConnector<?, ?> authentic ? authentic.getCircuitBreaker() : null;
+        this.statements = new PreparedStatementCache();
+    }
+
+    @Override
+    public boolean isAvailable() {
+        return circuitBreaker == null || circuitBreaker.isAvailable();
     }
 
     @Override
     public Collection<User> getByIP(String ip) {
         plugin.reportMainThread();
-        return connector.runQuery(connection -> {
-            var ps = connection.prepareStatement("SELECT * FROM librepremium_data WHERE ip=?");
-
+        return runStatement("SELECT " + COLUMNS + " FROM librepremium_data WHERE ip=?", ps -> {
             ps.setString(1, ip);
 
-            var rs = ps.executeQuery();
+            return getUsersFromResult(ps);
+        });
+    }
 
-            var users = new ArrayList<User>();
+    @Override
+    public User getByName(String name) {
+        plugin.reportMainThread();
+        return readUser("SELECT " + COLUMNS + " FROM librepremium_data WHERE LOWER(last_nickname)=LOWER(?)", ps -> {
+            ps.setString(1, name);
 
-            User user;
+            return getUserFromResult(ps);
+        }, () -> recentNames.getIfPresent(name.toLowerCase(Locale.ROOT)), user -> user.getLastNickname().equalsIgnoreCase(name));
+    }
 
-            while ((user = getUserFromResult(rs)) != null) {
-                users.add(user);
+    @Override
+    public Collection<User> getAllUsers() {
+        plugin.reportMainThread();
+        return connector.runQuery(connection -> {
+            try (var ps = connection.prepareStatement("SELECT " + COLUMNS + " FROM librepremium_data")) {
+                return getUsersFromResult(ps);
             }
-
-            return users;
         });
     }
 
     @Override
-    public User getByName(String name) {
+    public void forEachIdentity(IdentityConsumer consumer) {
         plugin.reportMainThread();
-        return connector.runQuery(connection -> {
-            var ps = connection.prepareStatement("SELECT * FROM librepremium_data WHERE LOWER(last_nickname)=LOWER(?)");
-
-            ps.setString(1, name);
-
-            var rs = ps.executeQuery();
+        connector.runQuery(connection -> {
+            try (var ps = connection.prepareStatement("SELECT uuid, premium_uuid, last_nickname FROM librepremium_data")) {
+                ps.setFetchSize(1000);
 
-            return getUserFromResult(rs);
+                try (var rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        var premiumUUID = rs.getString(2);
 
+                        consumer.accept(UUID.fromString(rs.getString(1)), premiumUUID == null ? null : UUID.fromString(premiumUUID), rs.getString(3));
+                    }
+                }
+            }
         });
     }
 
     @Override
-    public Collection<User> getAllUsers() {
+    public PreLoginLookup lookupForPreLogin(String name, @Nullable UUID premiumUUID, UUID newUUID) {
         plugin.reportMainThread();
-        return connector.runQuery(connection -> {
-            var ps = connection.prepareStatement("SELECT * FROM librepremium_data");
 
-            var rs = ps.executeQuery();
+        var sql = "SELECT " + COLUMNS + " FROM librepremium_data WHERE LOWER(last_nickname)=LOWER(?) UNION SELECT " + COLUMNS + " FROM librepremium_data WHERE uuid=?";
 
-            var users = new ArrayList<User>();
+        if (premiumUUID != null) {
+            sql += " UNION SELECT " + COLUMNS + " FROM librepremium_data WHERE premium_uuid=?";
+        }
 
-            User user;
+        List<User> users;
 
-            while ((user = getUserFromResult(rs)) != null) {
-                users.add(user);
-            }
+        try {
+            users = runStatement(sql, ps -> {
+                ps.setString(1, name);
+                ps.setString(2, newUUID.toString());
+                if (premiumUUID != null) ps.setString(3, premiumUUID.toString());
 
-            return users;
-        });
+                return getUsersFromResult(ps);
+            });
+        } catch (DatabaseUnavailableException e) {
+            // Let the single lookups try the recently loaded users
+            return super.lookupForPreLogin(name, premiumUUID, newUUID);
+        }
+
+        User byPremiumUUID = null, byName = null, byNewUUID = null;
+
+        for (User user : users) {
+            remember(user);
+
+            if (premiumUUID != null && premiumUUID.equals(user.getPremiumUUID())) byPremiumUUID = user;
+            if (user.getLastNickname().equalsIgnoreCase(name)) byName = user;
+            if (user.getUuid().equals(newUUID)) byNewUUID = user;
+        }
+
+        return new PreLoginLookup(byPremiumUUID, byName, byNewUUID, newUUID);
     }
 
     @Override
     public User getByUUID(UUID uuid) {
         plugin.reportMainThread();
-        return connector.runQuery(connection -> {
-            var ps = connection.prepareStatement("SELECT * FROM librepremium_data WHERE uuid=?");
-
+        return readUser("SELECT " + COLUMNS + " FROM librepremium_data WHERE uuid=?", ps -> {
             ps.setString(1, uuid.toString());
 
-            var rs = ps.executeQuery();
-
-            return getUserFromResult(rs);
-
-        });
+            return getUserFromResult(ps);
+        }, () -> uuid, user -> user.getUuid().equals(uuid));
     }
 
     @Override
     public User getByPremiumUUID(UUID uuid) {
         plugin.reportMainThread();
-        return connector.runQuery(connection -> {
-            var ps = connection.prepareStatement("SELECT * FROM librepremium_data WHERE premium_uuid=?");
-
+        return readUser("SELECT " + COLUMNS + " FROM librepremium_data WHERE premium_uuid=?", ps -> {
             ps.setString(1, uuid.toString());
 
-            var rs = ps.executeQuery();
+            return getUserFromResult(ps);
+        }, () -> recentPremiumUUIDs.getIfPresent(uuid), user -> uuid.equals(user.getPremiumUUID()));
+    }
+
+    /**
+     * Runs a query loading a single user and remembers the result.
+     * If the database is unavailable, a copy of the remembered user is returned instead.
+     *
+     * @param fallback Resolves the UUID of the remembered user
+     * @param matches  Whether the remembered user still matches the query
+     */
+    private User readUser(String sql, ThrowableFunction<PreparedStatement, User, SQLException> action, Supplier<UUID> fallback, Predicate<User> matches) {
+        try {
+            var user = runStatement(sql, action);
+            if (user != null) remember(user);
+            return user;
+        } catch (DatabaseUnavailableException e) {
+            var uuid = fallback.get();
+            var raw = uuid == null ? null : recentUsers.getIfPresent(uuid);
+
+            if (raw != null) {
+                var user = UserSerializer.deserialize(raw);
+
+                if (matches.test(user)) {
+                    plugin.getStatistics().increment("database.cached-reads");
+                    return user;
+                }
+            }
+
+            throw e;
+        }
+    }
+
+    /**
+     * Remembers the user, if they are connected to this proxy. Users of other players are not worth keeping, and would go stale.
+     */
+    private void remember(User user) {
+        if (plugin.getPlayerForUUID(user.getUuid()) == null) {
+            recentUsers.invalidate(user.getUuid());
+            return;
+        }
+
+        recentUsers.put(user.getUuid(), UserSerializer.serialize(user));
+        recentNames.put(user.getLastNickname().toLowerCase(Locale.ROOT), user.getUuid());
+        if (user.getPremiumUUID() != null) recentPremiumUUIDs.put(user.getPremiumUUID(), user.getUuid());
+    }
 
-            return getUserFromResult(rs);
+    /**
+     * Runs the action with a statement reused across calls on the same pooled connection.
+     */
+    protected <V> V runStatement(String sql, ThrowableFunction<PreparedStatement, V, SQLException> action) {
+        return connector.runQuery(connection -> {
+            return statements.withStatement(connection, sql, action);
         });
     }
 
+    /**
+     * Runs a query modifying data. Providers may override this to route writes differently than reads.
+     *
+     * @param retry Whether the query may be retried after a transient failure, must be false for queries which are not idempotent
+     */
+    @SuppressWarnings("unchecked")
+    protected <V> V runWrite(ThrowableFunction<Connection, V, SQLException> function, boolean retry) {
+        return connector instanceof AuthenticDatabaseConnector<?, ?> authentic
+                ? ((AuthenticDatabaseConnector<SQLException, Connection>) authentic).runQuery(function, retry)
+                : connector.runQuery(function);
+    }
+
+    /**
+     * Like {@link #runStatement(String, ThrowableFunction)}, but for statements modifying data.
+     */
+    protected <V> V runWriteStatement(String sql, boolean retry, ThrowableFunction<PreparedStatement, V, SQLException> action) {
+        return runWrite(connection -> {
+            return statements.withStatement(connection, sql, action);
+        }, retry);
+    }
+
+    /**
+     * Performs an idempotent write. If the database is unavailable, the write is deferred until the connection is restored.
+     */
+    private void write(Runnable write) {
+        try {
+            write.run();
+        } catch (DatabaseUnavailableException e) {
+            if (circuitBreaker == null || !circuitBreaker.deferWrite(write)) throw e;
+        }
+    }
+
     @Nullable
-    private User getUserFromResult(ResultSet rs) throws SQLException {
-        if (rs.next()) {
-            var id = UUID.fromString(rs.getString("uuid"));
-            var premiumUUID = rs.getString("premium_uuid");
-            var hashedPassword = rs.getString("hashed_password");
-            var salt = rs.getString("salt");
-            var algo = rs.getString("algo");
-            var lastNickname = rs.getString("last_nickname");
-            var joinDate = rs.getTimestamp("joined");
-            var lastSeen = rs.getTimestamp("last_seen");
-
-            return new AuthenticUser(
-                    id,
-                    premiumUUID == null ? null : UUID.fromString(premiumUUID),
-                    hashedPassword == null ? null : new HashedPassword(
-                            hashedPassword,
-                            salt,
-                            algo
-                    ),
-                    lastNickname,
-                    joinDate,
-                    lastSeen,
-                    rs.getString("secret"),
-                    rs.getString("ip"),
-                    rs.getTimestamp("last_authentication"),
-                    rs.getString("last_server"),
-                    rs.getString("email")
-            );
-        } else return null;
+    private User getUserFromResult(PreparedStatement ps) throws SQLException {
+        try (var rs = ps.executeQuery()) {
+            return rs.next() ? userFromRow(rs) : null;
+        }
+    }
+
+    private List<User> getUsersFromResult(PreparedStatement ps) throws SQLException {
+        try (var rs = ps.executeQuery()) {
+            var users = new ArrayList<User>();
+
+            while (rs.next()) {
+                users.add(userFromRow(rs));
+            }
+
+            return users;
+        }
+    }
+
+    /**
+     * Reads the user from the current row, the columns must be selected in the order of {@link #COLUMNS}.
+     */
+    private User userFromRow(ResultSet rs) throws SQLException {
+        var premiumUUID = rs.getString(PREMIUM_UUID);
+        var hashedPassword = rs.getString(HASHED_PASSWORD);
+
+        return new AuthenticUser(
+                UUID.fromString(rs.getString(UUID_COLUMN)),
+                premiumUUID == null ? null : UUID.fromString(premiumUUID),
+                hashedPassword == null ? null : new HashedPassword(
+                        hashedPassword,
+                        rs.getString(SALT),
+                        rs.getString(ALGO)
+                ),
+                rs.getString(LAST_NICKNAME),
+                rs.getTimestamp(JOINED),
+                rs.getTimestamp(LAST_SEEN),
+                rs.getString(SECRET),
+                rs.getString(IP),
+                rs.getTimestamp(LAST_AUTHENTICATION),
+                rs.getString(LAST_SERVER),
+                rs.getString(EMAIL)
+        );
     }
 
     @Override
     public void insertUser(User user) {
         plugin.reportMainThread();
-        connector.runQuery(connection -> {
-            var ps = connection.prepareStatement("INSERT INTO librepremium_data(uuid, premium_uuid, hashed_password, salt, algo, last_nickname, joined, last_seen, secret, ip, last_authentication, last_server, email) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)");
-
+        // Never deferred nor retried, a replayed insert might fail on a duplicate key, and the user must not be told the registration succeeded
+        runWriteStatement("INSERT INTO librepremium_data(" + COLUMNS + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)", false, ps -> {
             insertToStatement(ps, user);
 
-            ps.executeUpdate();
+            return ps.executeUpdate();
         });
+        remember(user);
     }
 
     @Override
     public void insertUsers(Collection<User> users) {
         plugin.reportMainThread();
-        connector.runQuery(connection -> {
-            var ps = connection.prepareStatement("INSERT " + getIgnoreSyntax() + " INTO librepremium_data(uuid, premium_uuid, hashed_password, salt, algo, last_nickname, joined, last_seen, secret, ip, last_authentication, last_server, email) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)" + getIgnoreSuffix());
+        runWrite(connection -> {
+            try (var ps = connection.prepareStatement("INSERT " + getIgnoreSyntax() + " INTO librepremium_data(" + COLUMNS + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)" + getIgnoreSuffix())) {
+                for (User user : users) {
+                    insertToStatement(ps, user);
 
-            for (User user : users) {
-                insertToStatement(ps, user);
+                    ps.addBatch();
+                }
 
-                ps.addBatch();
+                return ps.executeBatch();
             }
-
-            ps.executeBatch();
-        });
+        }, true);
     }
 
     private void insertToStatement(PreparedStatement ps, User user) throws SQLException {
@@ -194,9 +380,8 @@ public abstract class LibreLoginSQLDatabaseProvider extends AuthenticDatabasePro
     @Override
     public void updateUser(User user) {
         plugin.reportMainThread();
-        connector.runQuery(connection -> {
-            var ps = connection.prepareStatement("UPDATE librepremium_data SET premium_uuid=?, hashed_password=?, salt=?, algo=?, last_nickname=?, joined=?, last_seen=?, secret=?, ip=?, last_authentication=?, last_server=?, email=? WHERE uuid=?");
-
+        remember(user);
+        write(() -> runWriteStatement("UPDATE librepremium_data SET premium_uuid=?, hashed_password=?, salt=?, algo=?, last_nickname=?, joined=?, last_seen=?, secret=?, ip=?, last_authentication=?, last_server=?, email=? WHERE uuid=?", true, ps -> {
             ps.setString(1, user.getPremiumUUID() == null ? null : user.getPremiumUUID().toString());
             ps.setString(2, user.getHashedPassword() == null ? null : user.getHashedPassword().hash());
             ps.setString(3, user.getHashedPassword() == null ? null : user.getHashedPassword().salt());
@@ -210,61 +395,189 @@ public abstract class LibreLoginSQLDatabaseProvider extends AuthenticDatabasePro
             ps.setString(11, user.getLastServer());
             ps.setString(12, user.getEmail());
             ps.setString(13, user.getUuid().toString());
-            ps.executeUpdate();
-        });
+
+            return ps.executeUpdate();
+        }));
     }
 
     @Override
     public void deleteUser(User user) {
         plugin.reportMainThread();
-        connector.runQuery(connection -> {
-            var ps = connection.prepareStatement("DELETE FROM librepremium_data WHERE uuid=?");
-
+        recentUsers.invalidate(user.getUuid());
+        write(() -> runWriteStatement("DELETE FROM librepremium_data WHERE uuid=?", true, ps -> {
             ps.setString(1, user.getUuid().toString());
 
-            ps.executeUpdate();
-        });
+            return ps.executeUpdate();
+        }));
     }
 
     @Override
     public void validateSchema() {
+        var latest = migrations.get(migrations.size() - 1).version();
+
         connector.runQuery(connection -> {
-            connection.prepareStatement(
-                    "CREATE TABLE IF NOT EXISTS librepremium_data(" +
-                            "uuid VARCHAR(255) NOT NULL PRIMARY KEY," +
-                            "premium_uuid VARCHAR(255) UNIQUE," +
-                            "hashed_password VARCHAR(255)," +
-                            "salt VARCHAR(255)," +
-                            "algo VARCHAR(255)," +
-                            "last_nickname VARCHAR(255) NOT NULL," +
-                            "joined TIMESTAMP NULL DEFAULT NULL," +
-                            "last_seen TIMESTAMP NULL DEFAULT NULL," +
-                            "last_server VARCHAR(255)" +
-                            ")"
-            ).executeUpdate();
-
-            var columns = getColumnNames(connection);
+            // Once the schema is up-to-date, a single query is all every start costs
+            var current = getSchemaVersion(connection);
 
-            try {
-                connection.prepareStatement(addUnique("premium_uuid")).executeUpdate();
-            } catch (SQLException ignored) {
+            if (current > latest) {
+                plugin.getLogger().warn("The database schema (version %d) is newer than this version of LibreLogin supports (version %d), did you downgrade?".formatted(current, latest));
+                return;
             }
 
-            if (!columns.contains("secret"))
-                connection.prepareStatement("ALTER TABLE librepremium_data ADD COLUMN secret VARCHAR(255) NULL DEFAULT NULL").executeUpdate();
-            if (!columns.contains("ip"))
-                connection.prepareStatement("ALTER TABLE librepremium_data ADD COLUMN ip VARCHAR(255) NULL DEFAULT NULL").executeUpdate();
-            if (!columns.contains("last_authentication"))
-                connection.prepareStatement("ALTER TABLE librepremium_data ADD COLUMN last_authentication TIMESTAMP NULL DEFAULT NULL").executeUpdate();
-            if (!columns.contains("last_server")) {
-                connection.prepareStatement("ALTER TABLE librepremium_data ADD COLUMN last_server VARCHAR(255) NULL DEFAULT NULL").executeUpdate();
-            }
-            if (!columns.contains("email")) {
-                connection.prepareStatement("ALTER TABLE librepremium_data ADD COLUMN email VARCHAR(255) NULL DEFAULT NULL").executeUpdate();
+            if (current == latest) return;
+
+            lockSchema(connection);
+
+            try {
+                executeUpdate(connection,
+                        "CREATE TABLE IF NOT EXISTS librelogin_schema_version(" +
+                                "version INT NOT NULL PRIMARY KEY," +
+                                "description VARCHAR(255)," +
+                                "applied TIMESTAMP NULL DEFAULT NULL" +
+                                ")"
+                );
+
+                // Another proxy might have migrated the schema while we were waiting for the lock
+                current = getSchemaVersion(connection);
+
+                for (SchemaMigration migration : migrations) {
+                    if (migration.version() <= current) continue;
+
+                    plugin.getLogger().info("Migrating the database schema to version %d: %s".formatted(migration.version(), migration.description()));
+
+                    applyMigration(connection, migration);
+                }
+            } finally {
+                unlockSchema(connection);
             }
         });
     }
 
+    /**
+     * Applies the migration and records its version. If the database supports it, both happen in a single transaction,
+     * so a failure never leaves a half-applied migration behind.
+     */
+    private void applyMigration(Connection connection, SchemaMigration migration) throws SQLException {
+        var transactional = supportsTransactionalSchemaChanges();
+
+        if (transactional) connection.setAutoCommit(false);
+
+        try {
+            migration.migration().accept(connection);
+
+            try (var ps = connection.prepareStatement("INSERT INTO librelogin_schema_version(version, description, applied) VALUES (?, ?, ?)")) {
+                ps.setInt(1, migration.version());
+                ps.setString(2, migration.description());
+                ps.setTimestamp(3, new Timestamp(System.currentTimeMillis()));
+                ps.executeUpdate();
+            }
+
+            if (transactional) connection.commit();
+        } catch (SQLException | RuntimeException e) {
+            if (transactional) connection.rollback();
+            throw e;
+        } finally {
+            if (transactional) connection.setAutoCommit(true);
+        }
+    }
+
+    /**
+     * @return The version of the schema, or 0 if the schema has never been versioned
+     */
+    private static int getSchemaVersion(Connection connection) throws SQLException {
+        var metaData = connection.getMetaData();
+        var escape = metaData.getSearchStringEscape();
+        var table = escape == null || escape.isEmpty() ? "librelogin_schema_version" : "librelogin_schema_version".replace("_", escape + "_");
+
+        // Any other failure must not be mistaken for an unversioned schema, that would run the migrations again
+        try (var rs = metaData.getTables(connection.getCatalog(), connection.getSchema(), table, new String[]{"TABLE"})) {
+            if (!rs.next()) return 0;
+        }
+
+        try (var ps = connection.prepareStatement("SELECT MAX(version) FROM librelogin_schema_version");
+             var rs = ps.executeQuery()) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    /**
+     * The schema as it was before it was versioned. The checks are kept, so that databases created by any older version end up the same.
+     */
+    private void createInitialSchema(Connection connection) throws SQLException {
+        executeUpdate(connection,
+                "CREATE TABLE IF NOT EXISTS librepremium_data(" +
+                        "uuid VARCHAR(255) NOT NULL PRIMARY KEY," +
+                        "premium_uuid VARCHAR(255) UNIQUE," +
+                        "hashed_password VARCHAR(255)," +
+                        "salt VARCHAR(255)," +
+                        "algo VARCHAR(255)," +
+                        "last_nickname VARCHAR(255) NOT NULL," +
+                        "joined TIMESTAMP NULL DEFAULT NULL," +
+                        "last_seen TIMESTAMP NULL DEFAULT NULL," +
+                        "last_server VARCHAR(255)" +
+                        ")"
+        );
+
+        var columns = getColumnNames(connection);
+
+        tryExecuteUpdate(connection, addUnique("premium_uuid"));
+
+        if (!columns.contains("secret"))
+            executeUpdate(connection, "ALTER TABLE librepremium_data ADD COLUMN secret VARCHAR(255) NULL DEFAULT NULL");
+        if (!columns.contains("ip"))
+            executeUpdate(connection, "ALTER TABLE librepremium_data ADD COLUMN ip VARCHAR(255) NULL DEFAULT NULL");
+        if (!columns.contains("last_authentication"))
+            executeUpdate(connection, "ALTER TABLE librepremium_data ADD COLUMN last_authentication TIMESTAMP NULL DEFAULT NULL");
+        if (!columns.contains("last_server")) {
+            executeUpdate(connection, "ALTER TABLE librepremium_data ADD COLUMN last_server VARCHAR(255) NULL DEFAULT NULL");
+        }
+        if (!columns.contains("email")) {
+            executeUpdate(connection, "ALTER TABLE librepremium_data ADD COLUMN email VARCHAR(255) NULL DEFAULT NULL");
+        }
+    }
+
+    /**
+     * Acquires a lock shared by all proxies using the database, so that only one of them migrates the schema.
+     * The lock must be bound to the connection, and is released by {@link #unlockSchema(Connection)}.
+     */
+    protected void lockSchema(Connection connection) throws SQLException {
+    }
+
+    protected void unlockSchema(Connection connection) throws SQLException {
+    }
+
+    /**
+     * Executes a one-off statement, which is not worth caching.
+     */
+    protected static void executeUpdate(Connection connection, String sql) throws SQLException {
+        try (var ps = connection.prepareStatement(sql)) {
+            ps.executeUpdate();
+        }
+    }
+
+    /**
+     * Executes a one-off statement, which is allowed to fail, without aborting the surrounding transaction.
+     */
+    protected static void tryExecuteUpdate(Connection connection, String sql) throws SQLException {
+        var savepoint = connection.getAutoCommit() ? null : connection.setSavepoint();
+
+        try {
+            executeUpdate(connection, sql);
+        } catch (SQLException e) {
+            if (savepoint != null) connection.rollback(savepoint);
+            return;
+        }
+
+        if (savepoint != null) connection.releaseSavepoint(savepoint);
+    }
+
+    /**
+     * @return Whether schema changes can be rolled back as part of a transaction. MySQL commits them implicitly, so it cannot.
+     */
+    protected boolean supportsTransactionalSchemaChanges() {
+        return false;
+    }
+
     protected abstract List<String> getColumnNames(Connection connection) throws SQLException;
 
     protected String getIgnoreSyntax() {
@@ -276,4 +589,8 @@ public abstract class LibreLoginSQLDatabaseProvider extends AuthenticDatabasePro
     }
 
     protected abstract String addUnique(String column);
+
+    private record SchemaMigration(int version, String description, ThrowableConsumer<Connection, SQLException> migration) {
+    }
+
 }
@@ -7,7 +7,9 @@
 package xyz.kyngs.librelogin.common.database.provider;
 
 import xyz.kyngs.librelogin.api.database.connector.SQLiteDatabaseConnector;
+import xyz.kyngs.librelogin.api.util.ThrowableFunction;
 import xyz.kyngs.librelogin.common.AuthenticLibreLogin;
+import xyz.kyngs.librelogin.common.database.connector.AuthenticSQLiteDatabaseConnector;
 
 import java.sql.Connection;
 import java.sql.SQLException;
@@ -19,19 +21,30 @@ public class LibreLoginSQLiteDatabaseProvider extends LibreLoginSQLDatabaseProvi
         super(connector, plugin);
     }
 
+    @Override
+    protected <V> V runWrite(ThrowableFunction<Connection, V, SQLException> function, boolean retry) {
+        return connector instanceof AuthenticSQLiteDatabaseConnector sqlite ? sqlite.runWrite(function, retry) : super.runWrite(function, retry);
+    }
+
     @Override
     protected List<String> getColumnNames(Connection connection) throws SQLException {
         var columns = new ArrayList<String>();
 
-        var rs = connection.prepareStatement("PRAGMA table_info(librepremium_data)").executeQuery();
-
-        while (rs.next()) {
-            columns.add(rs.getString("name"));
+        try (var ps = connection.prepareStatement("PRAGMA table_info(librepremium_data)");
+             var rs = ps.executeQuery()) {
+            while (rs.next()) {
+                columns.add(rs.getString("name"));
+            }
         }
 
         return columns;
     }
 
+    @Override
+    protected boolean supportsTransactionalSchemaChanges() {
+        return true;
+    }
+
     @Override
     protected String getIgnoreSyntax() {
         return "OR IGNORE";
@@ -0,0 +1,119 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package xyz.kyngs.librelogin.common.database.provider;
+
+import xyz.kyngs.librelogin.api.util.ThrowableFunction;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Keeps prepared statements alive for as long as the pooled connection they were prepared on, so they are not re-parsed on every query.
+ * Some drivers (SQLite) have no statement cache of their own.
+ * <br>
+ * The pool closes all statements created through its connection wrapper once the connection is returned, so the statements are prepared on the underlying physical connection instead.
+ * Once the pool retires the physical connection, closing it closes the statements, and the cache forgets them. The cache only holds the connections weakly,
+ * so it never keeps a retired connection alive.
+ * <br>
+ * A physical connection is only ever used by a single thread at a time, which is why the per-connection maps need no further synchronization.<br>
+ * <b>This implementation is thread-safe.</b>
+ */
+public class PreparedStatementCache {
+
+    /**
+     * The maximum amount of statements kept per connection, the least recently used one is closed once exceeded.
+     */
+    private static final int MAX_STATEMENTS = 64;
+
+    private final Map<Connection, Map<String, PreparedStatement>> statements;
+
+    public PreparedStatementCache() {
+        statements = Collections.synchronizedMap(new WeakHashMap<>());
+    }
+
+    /**
+     * Runs the action with a cached statement for the given SQL. The statement is cleared after the action,
+     * and evicted if the action fails, so a broken statement is never reused.
+     *
+     * @param connection The (pooled) connection
+     * @param sql        The SQL
+     * @param action     The action, must close the result sets it opens, but not the statement
+     * @return The result of the action
+     */
+    public <V> V withStatement(Connection connection, String sql, ThrowableFunction<PreparedStatement, V, SQLException> action) throws SQLException {
+        var physical = unwrap(connection);
+        var cached = statements.get(physical);
+
+        if (cached == null) {
+            // A new physical connection likely means an old one has been retired
+            purge();
+            cached = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                    if (size() <= MAX_STATEMENTS) return false;
+
+                    close(eldest.getValue());
+                    return true;
+                }
+            };
+            statements.put(physical, cached);
+        }
+
+        var statement = cached.get(sql);
+
+        if (statement == null || statement.isClosed()) {
+            statement = physical.prepareStatement(sql);
+            cached.put(sql, statement);
+        }
+
+        try {
+            var result = action.apply(statement);
+            statement.clearParameters();
+            return result;
+        } catch (SQLException | RuntimeException e) {
+            cached.remove(sql);
+            close(statement);
+            throw e;
+        }
+    }
+
+    /**
+     * Forgets all statements of connections, which have been closed by the pool.
+     */
+    public void purge() {
+        synchronized (statements) {
+            statements.keySet().removeIf(connection -> {
+                try {
+                    return connection.isClosed();
+                } catch (SQLException e) {
+                    return true;
+                }
+            });
+        }
+    }
+
+    private static void close(PreparedStatement statement) {
+        try {
+            statement.close();
+        } catch (SQLException ignored) {
+        }
+    }
+
+    private static Connection unwrap(Connection connection) {
+        try {
+            return connection.isWrapperFor(Connection.class) ? connection.unwrap(Connection.class) : connection;
+        } catch (SQLException e) {
+            return connection;
+        }
+    }
+
+}
@@ -6,56 +6,324 @@
 
 package xyz.kyngs.librelogin.common.event;
 
-import xyz.kyngs.librelogin.api.event.Event;
-import xyz.kyngs.librelogin.api.event.EventProvider;
-import xyz.kyngs.librelogin.api.event.EventType;
+import xyz.kyngs.librelogin.api.event.*;
+import xyz.kyngs.librelogin.api.event.exception.EventCancelledException;
 import xyz.kyngs.librelogin.common.AuthenticHandler;
 import xyz.kyngs.librelogin.common.AuthenticLibreLogin;
 
-import java.util.HashSet;
+import java.util.Arrays;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
 import java.util.function.Consumer;
 
+/**
+ * Keeps the handlers of every event type in an array sorted by priority. Subscribing replaces the array, so firing never has to lock or copy anything.
+ * <br>
+ * A handler throwing an exception is logged and skipped, the remaining handlers are still called.
+ * Asynchronous handlers have their own queue, which is drained by a small shared pool, one batch at a time, so a single slow handler cannot occupy the whole pool.<br>
+ * <b>This implementation is thread-safe.</b>
+ */
 public class AuthenticEventProvider<P, S> extends AuthenticHandler<P, S> implements EventProvider<P, S> {
 
-    private final Map<EventType<P, S, ?>, Set<Consumer<Event<P, S>>>> listeners;
+    private static final long SLOW_HANDLER = TimeUnit.MILLISECONDS.toNanos(50);
+    private static final int ASYNC_THREADS = 2;
+    private static final int ASYNC_BATCH = 64;
+
+    private final Map<EventType<P, S, ?>, HandlerList> listeners;
+    private final Map<Consumer<?>, Set<HandlerList>> subscriptions;
+    private final ExecutorService asyncExecutor;
 
     public AuthenticEventProvider(AuthenticLibreLogin<P, S> plugin) {
         super(plugin);
         this.listeners = new ConcurrentHashMap<>();
+        this.subscriptions = new ConcurrentHashMap<>();
+
+        var threads = new AtomicInteger();
+
+        this.asyncExecutor = Executors.newFixedThreadPool(ASYNC_THREADS, runnable -> {
+            var thread = new Thread(runnable, "LibreLogin Event Dispatcher #" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public <E extends Event<P, S>> Consumer<E> subscribe(EventType<P, S, E> type, Consumer<E> handler, EventPriority priority) {
+        return subscribe(type, handler, (Consumer<Event<?, ?>>) (Consumer<?>) handler, priority);
     }
 
     @Override
-    public <E extends Event<P, S>> Consumer<E> subscribe(EventType<P, S, E> type, Consumer<E> handler) {
-        listeners.computeIfAbsent(type, x -> new HashSet<>()).add((Consumer<Event<P, S>>) handler);
+    public <E extends Event<P, S>> Consumer<E> subscribeAsync(EventType<P, S, E> type, Consumer<E> handler, int queueSize, AsyncOverflowPolicy overflow) {
+        var clazz = type.getClazz();
+
+        if (CancellableEvent.class.isAssignableFrom(clazz) || ServerChooseEvent.class.isAssignableFrom(clazz))
+            throw new IllegalArgumentException(clazz.getSimpleName() + " cannot be handled asynchronously, as its handlers decide its outcome");
+
+        var list = getList(type);
+
+        // Asynchronous handlers see the event after all the synchronous ones are done with it
+        return subscribe(type, handler, new AsyncHandler(list, handler, Math.max(1, queueSize), overflow), EventPriority.MONITOR);
+    }
+
+    private <E extends Event<P, S>> Consumer<E> subscribe(EventType<P, S, E> type, Consumer<E> handler, Consumer<Event<?, ?>> consumer, EventPriority priority) {
+        var list = getList(type);
+
+        list.add(new Handler(handler, consumer, priority));
+        subscriptions.computeIfAbsent(handler, x -> ConcurrentHashMap.newKeySet()).add(list);
+
         return handler;
     }
 
+    private HandlerList getList(EventType<P, S, ?> type) {
+        return listeners.computeIfAbsent(type, x -> new HandlerList(x.getClazz().getSimpleName()));
+    }
+
+    /**
+     * Stops the asynchronous dispatch, giving the handlers a few seconds to process the queued events.
+     */
+    public void shutdown() {
+        asyncExecutor.shutdown();
+
+        try {
+            if (!asyncExecutor.awaitTermination(5, TimeUnit.SECONDS)) {
+                plugin.getLogger().warn("Some asynchronous event handlers did not finish in time, their events are lost");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
     @Override
     public void unsubscribe(Consumer<? extends Event<P, S>> handler) {
-        listeners.values().forEach(x -> x.remove(handler));
+        var lists = subscriptions.remove(handler);
+
+        if (lists == null) return;
+
+        for (HandlerList list : lists) {
+            list.remove(handler);
+        }
     }
 
     @Override
     public <E extends Event<P, S>> void fire(EventType<P, S, E> type, E event) {
-        var set = listeners.get(type);
+        unsafeFire(type, event);
+    }
+
+    public void unsafeFire(EventType<?, ?, ?> type, Event<?, ?> event) {
+        var list = listeners.get(type);
+
+        if (list == null) return;
+
+        var handlers = list.handlers;
+
+        if (handlers.length == 0) return;
+
+        for (Handler handler : handlers) {
+            invoke(list, handler.key(), handler.consumer(), event, list.microsKey);
+        }
+
+        plugin.getStatistics().increment(list.firedKey);
+    }
 
-        if (set == null || set.isEmpty()) return;
+    private void invoke(HandlerList list, Object key, Consumer<Event<?, ?>> consumer, Event<?, ?> event, String microsKey) {
+        var statistics = plugin.getStatistics();
+        var start = System.nanoTime();
 
-        for (Consumer<Event<P, S>> consumer : set) {
+        try {
             consumer.accept(event);
+        } catch (EventCancelledException e) {
+            throw e;
+        } catch (Exception | LinkageError e) {
+            statistics.increment(list.failuresKey);
+            plugin.getLogger().error("Handler " + key.getClass().getName() + " of " + list.name + " has thrown an exception:");
+            e.printStackTrace();
+        }
+
+        var took = System.nanoTime() - start;
+
+        statistics.add(microsKey, took / 1000);
+
+        if (took > SLOW_HANDLER) {
+            plugin.getLogger().debug("Handler " + key.getClass().getName() + " of " + list.name + " took " + took / 1_000_000 + "ms");
         }
     }
 
-    public void unsafeFire(EventType<?, ?, ?> type, Event<?, ?> event) {
-        var set = listeners.get(type);
+    /**
+     * @param key      The handler as subscribed, used for unsubscribing
+     * @param consumer The consumer to call when the event is fired
+     */
+    private record Handler(Object key, Consumer<Event<?, ?>> consumer, EventPriority priority) {
+    }
+
+    /**
+     * Queues the events for the handler, and calls it from the shared pool.
+     */
+    private final class AsyncHandler implements Consumer<Event<?, ?>> {
 
-        if (set == null || set.isEmpty()) return;
+        private final HandlerList list;
+        private final Consumer<Event<?, ?>> handler;
+        private final int capacity;
+        private final AsyncOverflowPolicy overflow;
+        private final Queue<Event<?, ?>> queue;
+        private final AtomicInteger size;
+        private final AtomicBoolean scheduled;
 
-        for (Consumer<Event<P, S>> consumer : set) {
-            consumer.accept((Event<P, S>) event);
+        private AsyncHandler(HandlerList list, Consumer<?> handler, int capacity, AsyncOverflowPolicy overflow) {
+            this.list = list;
+            this.handler = (Consumer<Event<?, ?>>) handler;
+            this.capacity = capacity;
+            this.overflow = overflow;
+            this.queue = new ConcurrentLinkedQueue<>();
+            this.size = new AtomicInteger();
+            this.scheduled = new AtomicBoolean();
         }
+
+        @Override
+        public void accept(Event<?, ?> event) {
+            if (size.incrementAndGet() > capacity) {
+                switch (overflow) {
+                    case RUN_SYNC -> {
+                        plugin.getStatistics().increment(list.asyncOverflowsKey);
+                        queue.add(event);
+                        drainInline();
+                        return;
+                    }
+                    case DISCARD_NEWEST -> {
+                        size.decrementAndGet();
+                        plugin.getStatistics().increment(list.asyncDiscardedKey);
+                        return;
+                    }
+                    case DISCARD_OLDEST -> {
+                        if (queue.poll() != null) size.decrementAndGet();
+                        plugin.getStatistics().increment(list.asyncDiscardedKey);
+                    }
+                }
+            }
+
+            queue.add(event);
+            schedule();
+        }
+
+        private void schedule() {
+            if (!scheduled.compareAndSet(false, true)) return;
+
+            try {
+                asyncExecutor.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                // The plugin is shutting down
+                drain();
+            }
+        }
+
+        private void drain() {
+            for (int i = 0; i < ASYNC_BATCH; i++) {
+                if (!handleNext()) break;
+            }
+
+            scheduled.set(false);
+
+            // Either the batch was full, or an event was added after the last poll
+            if (!queue.isEmpty()) schedule();
+        }
+
+        /**
+         * Works off the backlog on the firing thread, until the queue has room again. This slows the firing thread down to the pace of the handler,
+         * while the handler is still called by a single thread at a time, in the order the events were fired.
+         */
+        private void drainInline() {
+            while (size.get() > capacity) {
+                if (!scheduled.compareAndSet(false, true)) {
+                    // The pool is draining the queue right now
+                    LockSupport.parkNanos(100_000);
+                    continue;
+                }
+
+                while (size.get() > capacity) {
+                    if (!handleNext()) break;
+                }
+
+                scheduled.set(false);
+            }
+
+            if (!queue.isEmpty()) schedule();
+        }
+
+        /**
+         * @return False if the queue was empty
+         */
+        private boolean handleNext() {
+            var event = queue.poll();
+
+            if (event == null) return false;
+
+            size.decrementAndGet();
+
+            try {
+                invoke(list, handler, handler, event, list.asyncMicrosKey);
+            } catch (EventCancelledException ignored) {
+                // The outcome of the event has already been decided
+            }
+
+            return true;
+        }
+
+    }
+
+    private static final class HandlerList {
+
+        private final String name;
+        private final String firedKey;
+        private final String microsKey;
+        private final String failuresKey;
+        private final String asyncMicrosKey;
+        private final String asyncOverflowsKey;
+        private final String asyncDiscardedKey;
+        private volatile Handler[] handlers;
+
+        private HandlerList(String name) {
+            var prefix = "events." + name;
+
+            this.name = name;
+            this.firedKey = prefix + ".fired";
+            this.microsKey = prefix + ".handler-micros";
+            this.failuresKey = prefix + ".handler-failures";
+            this.asyncMicrosKey = prefix + ".async-handler-micros";
+            this.asyncOverflowsKey = prefix + ".async-overflows";
+            this.asyncDiscardedKey = prefix + ".async-discarded";
+            this.handlers = new Handler[0];
+        }
+
+        private synchronized void add(Handler handler) {
+            var current = handlers;
+
+            for (Handler existing : current) {
+                if (existing.key().equals(handler.key())) return;
+            }
+
+            var index = current.length;
+
+            // Keep the order of subscription among handlers with the same priority
+            while (index > 0 && current[index - 1].priority().compareTo(handler.priority()) > 0) index--;
+
+            var updated = new Handler[current.length + 1];
+
+            System.arraycopy(current, 0, updated, 0, index);
+            updated[index] = handler;
+            System.arraycopy(current, index, updated, index + 1, current.length - index);
+
+            handlers = updated;
+        }
+
+        private synchronized void remove(Object key) {
+            handlers = Arrays.stream(handlers)
+                    .filter(handler -> !handler.key().equals(key))
+                    .toArray(Handler[]::new);
+        }
+
     }
 }
@@ -0,0 +1,25 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package xyz.kyngs.librelogin.common.http;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * A request passed to a {@link HttpTransport}.
+ *
+ * @param uri     The URI
+ * @param method  The method, e.g. GET or POST
+ * @param headers The headers
+ * @param body    The body, or null if there's none
+ * @param timeout The time to wait for the whole response
+ */
+public record HttpRequest(URI uri, String method, Map<String, String> headers, @Nullable byte[] body, Duration timeout) {
+}
@@ -0,0 +1,37 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package xyz.kyngs.librelogin.common.http;
+
+import org.jetbrains.annotations.Nullable;
+import xyz.kyngs.librelogin.common.AuthenticLibreLogin;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * A response returned by a {@link HttpTransport}.
+ *
+ * @param status  The status code
+ * @param headers The headers, with lower-cased names
+ * @param body    The body, already decompressed
+ */
+public record HttpResponse(int status, Map<String, String> headers, byte[] body) {
+
+    @Nullable
+    public String header(String name) {
+        return headers.get(name);
+    }
+
+    public String text() {
+        return new String(body, StandardCharsets.UTF_8);
+    }
+
+    public <T> T json(Class<T> type) {
+        return AuthenticLibreLogin.GSON.fromJson(text(), type);
+    }
+
+}
@@ -0,0 +1,291 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package xyz.kyngs.librelogin.common.http;
+
+import xyz.kyngs.librelogin.api.util.ThrowableFunction;
+import xyz.kyngs.librelogin.common.util.GeneralUtil;
+import xyz.kyngs.librelogin.common.util.Statistics;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * All outgoing HTTP requests of the plugin go through here. Requests are limited per host, transparently decompressed, and measured.
+ * <br>
+ * Requests to a host over its concurrency limit are queued, and sent once another request to the host completes.
+ * The timeout of a request starts once it is submitted, requests which time out while queued are never sent.<br>
+ * <b>This implementation is thread-safe.</b>
+ */
+public class HttpService {
+
+    private static final String USER_AGENT = "LibreLogin";
+
+    private final Statistics statistics;
+    private final HttpTransport transport;
+    private final HostPolicy defaultPolicy;
+    private final Map<String, HostPolicy> policies;
+    private final Map<String, HostLimiter> limiters;
+
+    public HttpService(Statistics statistics, HttpTransport transport, HostPolicy defaultPolicy) {
+        this.statistics = statistics;
+        this.transport = transport;
+        this.defaultPolicy = defaultPolicy;
+        this.policies = new ConcurrentHashMap<>();
+        this.limiters = new ConcurrentHashMap<>();
+    }
+
+    public HttpService(Statistics statistics, HostPolicy defaultPolicy) {
+        this(statistics, new JdkHttpTransport(defaultPolicy.timeout(), GeneralUtil.ASYNC_POOL), defaultPolicy);
+    }
+
+    /**
+     * Overrides the timeout and the concurrency limit for a host. Must be called before the first request to the host.
+     */
+    public void setPolicy(String host, HostPolicy policy) {
+        policies.put(host, policy);
+    }
+
+    public CompletableFuture<HttpResponse> getAsync(String url) {
+        return sendAsync(URI.create(url), "GET", null, null);
+    }
+
+    public CompletableFuture<HttpResponse> postAsync(String url, String contentType, byte[] body) {
+        return sendAsync(URI.create(url), "POST", contentType, body);
+    }
+
+    /**
+     * Sends a GET request and waits for the response.
+     *
+     * @throws IOException If the request fails or times out
+     */
+    public HttpResponse get(String url) throws IOException {
+        return join(getAsync(url));
+    }
+
+    /**
+     * Sends a POST request and waits for the response.
+     *
+     * @throws IOException If the request fails or times out
+     */
+    public HttpResponse post(String url, String contentType, byte[] body) throws IOException {
+        return join(postAsync(url, contentType, body));
+    }
+
+    /**
+     * Sends a GET request and streams the body of the response to the file, without keeping it in memory.
+     * The file is only replaced if the response has the status 200, the body of the returned response is empty.
+     */
+    public CompletableFuture<HttpResponse> downloadAsync(String url, Path file) {
+        var temp = file.resolveSibling(file.getFileName() + ".download");
+
+        return sendAsync(URI.create(url), "GET", null, null, request -> transport.download(request, temp), response -> {
+            try {
+                if (response.status() == 200) decompress(response, temp, file);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+
+            return response;
+        });
+    }
+
+    /**
+     * Sends a GET request, streams the body of the response to the file and waits for it, see {@link #downloadAsync(String, Path)}.
+     *
+     * @throws IOException If the request fails or times out
+     */
+    public HttpResponse download(String url, Path file) throws IOException {
+        return join(downloadAsync(url, file));
+    }
+
+    private CompletableFuture<HttpResponse> sendAsync(URI uri, String method, String contentType, byte[] body) {
+        return sendAsync(uri, method, contentType, body, transport::send, HttpService::decompress);
+    }
+
+    private CompletableFuture<HttpResponse> sendAsync(URI uri, String method, String contentType, byte[] body,
+                                                      Function<HttpRequest, CompletableFuture<HttpResponse>> exchange,
+                                                      ThrowableFunction<HttpResponse, HttpResponse, IOException> process) {
+        var host = uri.getHost();
+        var policy = policies.getOrDefault(host, defaultPolicy);
+        var limiter = limiters.computeIfAbsent(host, x -> new HostLimiter(policy.maxConcurrent(), policy.maxQueued()));
+
+        var headers = contentType == null
+                ? Map.of("User-Agent", USER_AGENT, "Accept-Encoding", "gzip")
+                : Map.of("User-Agent", USER_AGENT, "Accept-Encoding", "gzip", "Content-Type", contentType);
+        var request = new HttpRequest(uri, method, headers, body, policy.timeout());
+        var result = new CompletableFuture<HttpResponse>()
+                .orTimeout(policy.timeout().toMillis(), TimeUnit.MILLISECONDS);
+
+        limiter.submit(result, () -> {
+            var start = System.nanoTime();
+
+            CompletableFuture<HttpResponse> sent;
+
+            try {
+                sent = exchange.apply(request);
+            } catch (RuntimeException e) {
+                sent = CompletableFuture.failedFuture(e);
+            }
+
+            return sent.handle((response, e) -> {
+                statistics.increment("http." + host + ".requests");
+                statistics.add("http." + host + ".micros", (System.nanoTime() - start) / 1000);
+
+                if (e != null) {
+                    statistics.increment("http." + host + ".failures");
+                    result.completeExceptionally(e instanceof CompletionException && e.getCause() != null ? e.getCause() : e);
+                    return null;
+                }
+
+                try {
+                    result.complete(process.apply(response));
+                } catch (IOException | RuntimeException ex) {
+                    statistics.increment("http." + host + ".failures");
+                    result.completeExceptionally(ex);
+                }
+                return null;
+            });
+        });
+
+        return result;
+    }
+
+    private static HttpResponse decompress(HttpResponse response) throws IOException {
+        if (!"gzip".equalsIgnoreCase(response.header("content-encoding"))) return response;
+
+        try (var in = new GZIPInputStream(new ByteArrayInputStream(response.body()))) {
+            return new HttpResponse(response.status(), response.headers(), in.readAllBytes());
+        }
+    }
+
+    private static void decompress(HttpResponse response, Path source, Path target) throws IOException {
+        if (!"gzip".equalsIgnoreCase(response.header("content-encoding"))) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+            return;
+        }
+
+        try (var in = new GZIPInputStream(Files.newInputStream(source))) {
+            Files.copy(in, target, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            // Never leave a partial file behind
+            Files.deleteIfExists(target);
+            throw e;
+        }
+    }
+
+    private static HttpResponse join(CompletableFuture<HttpResponse> future) throws IOException {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            var cause = e.getCause();
+
+            if (cause instanceof IOException io) throw io;
+            if (cause instanceof UncheckedIOException io) throw io.getCause();
+
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * @param timeout       The time to wait for the whole response
+     * @param maxConcurrent The maximum amount of requests to the host at the same time
+     * @param maxQueued     The maximum amount of requests waiting for the host, any more are rejected
+     */
+    public record HostPolicy(Duration timeout, int maxConcurrent, int maxQueued) {
+    }
+
+    /**
+     * Lets only a limited amount of requests through at the same time, without blocking the submitting threads.
+     * <br>
+     * A single thread drains the queue at a time, others only make it go around once more, so completions never recurse into each other.
+     */
+    private static final class HostLimiter {
+
+        private final int limit;
+        private final int maxQueued;
+        private final AtomicInteger inFlight;
+        private final AtomicInteger queued;
+        private final AtomicInteger drainRequests;
+        private final Queue<Task> pending;
+
+        private HostLimiter(int limit, int maxQueued) {
+            this.limit = Math.max(1, limit);
+            this.maxQueued = Math.max(0, maxQueued);
+            this.inFlight = new AtomicInteger();
+            this.queued = new AtomicInteger();
+            this.drainRequests = new AtomicInteger();
+            this.pending = new ConcurrentLinkedQueue<>();
+        }
+
+        /**
+         * @param result The future of the caller, the task is dropped if it completes (e.g. times out) while queued
+         */
+        private void submit(CompletableFuture<?> result, Callable<CompletableFuture<?>> action) {
+            if (queued.incrementAndGet() > maxQueued && inFlight.get() >= limit) {
+                queued.decrementAndGet();
+                result.completeExceptionally(new IOException("Too many requests waiting for the host"));
+                return;
+            }
+
+            pending.add(new Task(result, action));
+            drain();
+        }
+
+        private void drain() {
+            if (drainRequests.getAndIncrement() != 0) return;
+
+            var missed = 1;
+
+            do {
+                while (inFlight.get() < limit) {
+                    var task = pending.poll();
+
+                    if (task == null) break;
+
+                    queued.decrementAndGet();
+
+                    // Nobody is waiting for the response anymore
+                    if (task.result.isDone()) continue;
+
+                    inFlight.incrementAndGet();
+
+                    CompletableFuture<?> future;
+
+                    try {
+                        future = task.action.call();
+                    } catch (Exception e) {
+                        future = CompletableFuture.completedFuture(null);
+                    }
+
+                    future.whenComplete((x, e) -> {
+                        inFlight.decrementAndGet();
+                        drain();
+                    });
+                }
+
+                missed = drainRequests.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private record Task(CompletableFuture<?> result, Callable<CompletableFuture<?>> action) {
+        }
+
+    }
+
+}
@@ -0,0 +1,43 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package xyz.kyngs.librelogin.common.http;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Sends requests over the network on behalf of the {@link HttpService}.
+ * Can be replaced, for example to direct all requests to a local stub server.
+ */
+@FunctionalInterface
+public interface HttpTransport {
+
+    /**
+     * Sends the request. The future completes exceptionally with an {@link java.io.IOException} if the request fails.
+     */
+    CompletableFuture<HttpResponse> send(HttpRequest request);
+
+    /**
+     * Sends the request and writes the body of the response to the file, replacing it, instead of keeping the body in memory.
+     * The body of the returned response is empty.
+     */
+    default CompletableFuture<HttpResponse> download(HttpRequest request, Path file) {
+        return send(request).thenApply(response -> {
+            try {
+                Files.write(file, response.body());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+
+            return new HttpResponse(response.status(), response.headers(), new byte[0]);
+        });
+    }
+
+}
@@ -0,0 +1,71 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package xyz.kyngs.librelogin.common.http;
+
+import java.net.http.HttpClient;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * The default transport, backed by the JDK client. Connections are pooled and kept alive, HTTP/2 is used where the server supports it.
+ */
+public class JdkHttpTransport implements HttpTransport {
+
+    private final HttpClient client;
+
+    public JdkHttpTransport(Duration connectTimeout, Executor executor) {
+        client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(connectTimeout)
+                .executor(executor)
+                .build();
+    }
+
+    @Override
+    public CompletableFuture<HttpResponse> send(HttpRequest request) {
+        return client.sendAsync(build(request), java.net.http.HttpResponse.BodyHandlers.ofByteArray())
+                .thenApply(response -> new HttpResponse(response.statusCode(), headers(response), response.body()));
+    }
+
+    @Override
+    public CompletableFuture<HttpResponse> download(HttpRequest request, Path file) {
+        return client.sendAsync(build(request), java.net.http.HttpResponse.BodyHandlers.ofFile(file, CREATE, WRITE, TRUNCATE_EXISTING))
+                .thenApply(response -> new HttpResponse(response.statusCode(), headers(response), new byte[0]));
+    }
+
+    private static java.net.http.HttpRequest build(HttpRequest request) {
+        var builder = java.net.http.HttpRequest.newBuilder(request.uri())
+                .timeout(request.timeout())
+                .method(request.method(), request.body() == null
+                        ? java.net.http.HttpRequest.BodyPublishers.noBody()
+                        : java.net.http.HttpRequest.BodyPublishers.ofByteArray(request.body())
+                );
+
+        request.headers().forEach(builder::header);
+
+        return builder.build();
+    }
+
+    private static Map<String, String> headers(java.net.http.HttpResponse<?> response) {
+        var headers = new HashMap<String, String>();
+
+        response.headers().map().forEach((name, values) -> {
+            if (!values.isEmpty()) headers.put(name.toLowerCase(Locale.ROOT), values.get(0));
+        });
+
+        return headers;
+    }
+
+}
@@ -0,0 +1,127 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package xyz.kyngs.librelogin.common.listener;
+
+import xyz.kyngs.librelogin.common.AuthenticLibreLogin;
+import xyz.kyngs.librelogin.common.util.RateLimiter;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.util.Arrays;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static xyz.kyngs.librelogin.common.config.ConfigurationKeys.*;
+
+/**
+ * Decides whether a connection may proceed to the pre-login, which contacts the database and the premium API.
+ * Connections are limited per IP address, per subnet, and by the amount of pre-logins running at the same time.
+ * All checks are done in memory, so a bot flood is rejected before it causes any I/O.<br>
+ * <b>This implementation is thread-safe.</b>
+ */
+public class AdmissionController {
+
+    private final AuthenticLibreLogin<?, ?> plugin;
+    private final boolean enabled;
+    private final RateLimiter<InetAddress> ipLimiter;
+    private final RateLimiter<Subnet> subnetLimiter;
+    private final Semaphore inFlight;
+    private final long maxWait;
+    private final int maxWaiting;
+    private final AtomicInteger waiting;
+
+    public AdmissionController(AuthenticLibreLogin<?, ?> plugin) {
+        this.plugin = plugin;
+
+        var configuration = plugin.getConfiguration();
+
+        this.enabled = configuration.get(ADMISSION_ENABLED);
+        this.ipLimiter = new RateLimiter<>(configuration.get(ADMISSION_IP_BURST), configuration.get(ADMISSION_IP_PER_MINUTE), 1, TimeUnit.MINUTES);
+        this.subnetLimiter = new RateLimiter<>(configuration.get(ADMISSION_SUBNET_BURST), configuration.get(ADMISSION_SUBNET_PER_MINUTE), 1, TimeUnit.MINUTES);
+        this.inFlight = new Semaphore(Math.max(1, configuration.get(ADMISSION_MAX_CONCURRENT)));
+        this.maxWait = configuration.get(ADMISSION_MAX_WAIT);
+        this.maxWaiting = configuration.get(ADMISSION_MAX_WAITING);
+        this.waiting = new AtomicInteger();
+    }
+
+    /**
+     * Tries to admit a connection. If admitted, {@link #release()} must be called once the pre-login finishes.
+     *
+     * @param address The address of the connection
+     * @return Null if admitted, otherwise the key of the kick message
+     */
+    public String tryAdmit(InetAddress address) {
+        if (!enabled) return null;
+
+        var statistics = plugin.getStatistics();
+
+        if (ipLimiter.tryAndLimit(address)) {
+            statistics.increment("admission.rejected-ip");
+            return "kick-admission-throttled";
+        }
+
+        if (subnetLimiter.tryAndLimit(Subnet.of(address))) {
+            statistics.increment("admission.rejected-subnet");
+            return "kick-admission-throttled";
+        }
+
+        if (!inFlight.tryAcquire() && !awaitPermit()) {
+            statistics.increment("admission.rejected-overloaded");
+            return "kick-admission-overloaded";
+        }
+
+        statistics.increment("admission.admitted");
+        return null;
+    }
+
+    /**
+     * Waits for a permit, unless too many connections are waiting already. Every waiting connection occupies a thread of the platform.
+     */
+    private boolean awaitPermit() {
+        if (waiting.incrementAndGet() > maxWaiting) {
+            waiting.decrementAndGet();
+            return false;
+        }
+
+        try {
+            return inFlight.tryAcquire(maxWait, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            waiting.decrementAndGet();
+        }
+    }
+
+    public void release() {
+        if (enabled) inFlight.release();
+    }
+
+    /**
+     * The network part of an address, /24 for IPv4 and /48 for IPv6.
+     */
+    private record Subnet(byte[] prefix) {
+
+        private static Subnet of(InetAddress address) {
+            var bytes = address.getAddress();
+            return new Subnet(Arrays.copyOf(bytes, address instanceof Inet4Address ? 3 : 6));
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Subnet subnet && Arrays.equals(prefix, subnet.prefix);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(prefix);
+        }
+
+    }
+
+}
@@ -17,7 +17,10 @@ import xyz.kyngs.librelogin.common.AuthenticLibreLogin;
 import xyz.kyngs.librelogin.common.authorization.ProfileConflictResolutionStrategy;
 import xyz.kyngs.librelogin.common.command.InvalidCommandArgument;
 import xyz.kyngs.librelogin.common.config.ConfigurationKeys;
+import xyz.kyngs.librelogin.common.database.AuthenticDatabaseProvider;
 import xyz.kyngs.librelogin.common.database.AuthenticUser;
+import xyz.kyngs.librelogin.common.database.DatabaseUnavailableException;
+import xyz.kyngs.librelogin.common.database.PreLoginLookup;
 import xyz.kyngs.librelogin.common.event.events.AuthenticAuthenticatedEvent;
 
 import java.net.InetAddress;
@@ -34,10 +37,12 @@ public class AuthenticListeners<Plugin extends AuthenticLibreLogin<P, S>, P, S>
 
     protected final Plugin plugin;
     protected final PlatformHandle<P, S> platformHandle;
+    private final AdmissionController admission;
 
     public AuthenticListeners(Plugin plugin) {
         this.plugin = plugin;
         platformHandle = plugin.getPlatformHandle();
+        admission = new AdmissionController(plugin);
     }
 
     protected void onPostLogin(P player, User user) {
@@ -53,7 +58,7 @@ public class AuthenticListeners<Plugin extends AuthenticLibreLogin<P, S>, P, S>
         if (user.autoLoginEnabled()) {
             plugin.delay(() -> plugin.getPlatformHandle().getAudienceForPlayer(player).sendMessage(plugin.getMessages().getMessage("info-premium-logged-in")), 500);
             plugin.getEventProvider().fire(plugin.getEventTypes().authenticated, new AuthenticAuthenticatedEvent<>(user, player, plugin, AuthenticatedEvent.AuthenticationReason.PREMIUM));
-        } else if (sessionTime != null && user.getLastAuthentication() != null && ip.equals(user.getIp()) && user.getLastAuthentication().toLocalDateTime().plus(sessionTime).isAfter(LocalDateTime.now())) {
+        } else if (hasValidSession(user, ip, sessionTime)) {
             plugin.delay(() -> plugin.getPlatformHandle().getAudienceForPlayer(player).sendMessage(plugin.getMessages().getMessage("info-session-logged-in")), 500);
             plugin.getEventProvider().fire(plugin.getEventTypes().authenticated, new AuthenticAuthenticatedEvent<>(user, player, plugin, AuthenticatedEvent.AuthenticationReason.SESSION));
         } else {
@@ -73,6 +78,27 @@ public class AuthenticListeners<Plugin extends AuthenticLibreLogin<P, S>, P, S>
     }
 
     protected PreLoginResult onPreLogin(String username, InetAddress address) {
+        var rejection = admission.tryAdmit(address);
+
+        if (rejection != null) {
+            return new PreLoginResult(PreLoginState.DENIED, plugin.getMessages().getMessage(rejection), null);
+        }
+
+        try {
+            // Don't let the player wait for the retries, if we already know the database is down
+            if (plugin.getDatabaseProvider() instanceof AuthenticDatabaseProvider<?> provider && !provider.isAvailable()) {
+                return new PreLoginResult(PreLoginState.DENIED, plugin.getMessages().getMessage("kick-database-unavailable"), null);
+            }
+
+            return resolvePreLogin(username, address);
+        } catch (DatabaseUnavailableException e) {
+            return new PreLoginResult(PreLoginState.DENIED, plugin.getMessages().getMessage("kick-database-unavailable"), null);
+        } finally {
+            admission.release();
+        }
+    }
+
+    private PreLoginResult resolvePreLogin(String username, InetAddress address) {
         if (username.length() > 16 || !NAME_PATTERN.matcher(username).matches()) {
             return new PreLoginResult(PreLoginState.DENIED, plugin.getMessages().getMessage("kick-illegal-username"), null);
         }
@@ -94,11 +120,14 @@ public class AuthenticListeners<Plugin extends AuthenticLibreLogin<P, S>, P, S>
             return new PreLoginResult(PreLoginState.DENIED, message, null);
         }
 
+        // Resolve every user we might collide with at once, instead of a query per check
+        var lookup = lookup(username, mojangData == null ? null : mojangData.uuid());
+
         if (mojangData == null) {
             // A user with this name does not exist in the Mojang database. It is impossible for this user to be premium.
             User user;
             try {
-                user = checkAndValidateByName(username, null, true, address);
+                user = checkAndValidateByName(username, lookup, null, true, address);
             } catch (InvalidCommandArgument e) {
                 return new PreLoginResult(PreLoginState.DENIED, e.getUserFuckUp(), null);
             }
@@ -111,12 +140,12 @@ public class AuthenticListeners<Plugin extends AuthenticLibreLogin<P, S>, P, S>
         } else {
             // A user with this name exists in the Mojang database, we need to figure out whether to encrypt
             var premiumID = mojangData.uuid();
-            var user = plugin.getDatabaseProvider().getByPremiumUUID(premiumID);
+            var user = lookup.byPremiumUUID();
 
             if (user == null) {
                 User userByName;
                 try {
-                    userByName = checkAndValidateByName(username, premiumID, true, address);
+                    userByName = checkAndValidateByName(username, lookup, premiumID, true, address);
                 } catch (InvalidCommandArgument e) {
                     return new PreLoginResult(PreLoginState.DENIED, e.getUserFuckUp(), null);
                 }
@@ -128,7 +157,7 @@ public class AuthenticListeners<Plugin extends AuthenticLibreLogin<P, S>, P, S>
             } else {
                 User byName;
                 try {
-                    byName = checkAndValidateByName(username, premiumID, false, address);
+                    byName = checkAndValidateByName(username, lookup, premiumID, false, address);
                 } catch (InvalidCommandArgument e) {
                     return new PreLoginResult(PreLoginState.DENIED, e.getUserFuckUp(), null);
                 }
@@ -172,15 +201,16 @@ public class AuthenticListeners<Plugin extends AuthenticLibreLogin<P, S>, P, S>
      * Checks and validates a user by their username.
      *
      * @param username  The username of the user.
+     * @param lookup    The users resolved for the connection.
      * @param premiumID The premium ID of the user.
      * @param generate  True if a new user should be generated if the user doesn't exist, false otherwise.
      * @param ip        The IP address of the user.
      * @return The validated user, or null if the user doesn't exist and {@code generate} is false.
      * @throws InvalidCommandArgument If the username is invalid or there are other validation issues.
      */
-    private User checkAndValidateByName(String username, @Nullable UUID premiumID, boolean generate, InetAddress ip) throws InvalidCommandArgument {
-        // Get the user by the name not case-sensitively
-        var user = plugin.getDatabaseProvider().getByName(username);
+    private User checkAndValidateByName(String username, PreLoginLookup lookup, @Nullable UUID premiumID, boolean generate, InetAddress ip) throws InvalidCommandArgument {
+        // The user by the name not case-sensitively
+        var user = lookup.byName();
 
         if (user != null) {
             // Check for casing mismatch
@@ -208,12 +238,8 @@ public class AuthenticListeners<Plugin extends AuthenticLibreLogin<P, S>, P, S>
                 }
             }
 
-            var newID = plugin.generateNewUUID(
-                    username,
-                    premiumID
-            );
-
-            var conflictingUser = plugin.getDatabaseProvider().getByUUID(newID);
+            var newID = lookup.newUUID();
+            var conflictingUser = lookup.byNewUUID();
 
             if (conflictingUser != null) {
                 throw new InvalidCommandArgument(plugin.getMessages().getMessage("kick-occupied-username",
@@ -257,6 +283,26 @@ public class AuthenticListeners<Plugin extends AuthenticLibreLogin<P, S>, P, S>
         return user;
     }
 
+    private PreLoginLookup lookup(String username, @Nullable UUID premiumID) {
+        var start = System.nanoTime();
+        var newID = plugin.generateNewUUID(username, premiumID);
+        var provider = plugin.getDatabaseProvider();
+
+        var lookup = provider instanceof AuthenticDatabaseProvider<?> authentic
+                ? authentic.lookupForPreLogin(username, premiumID, newID)
+                : new PreLoginLookup(
+                premiumID == null ? null : provider.getByPremiumUUID(premiumID),
+                provider.getByName(username),
+                provider.getByUUID(newID),
+                newID
+        );
+
+        plugin.getStatistics().increment("pre-login.lookups");
+        plugin.getStatistics().add("pre-login.lookup-micros", (System.nanoTime() - start) / 1000);
+
+        return lookup;
+    }
+
     protected BiHolder<Boolean, S> chooseServer(P player, @Nullable String ip, @Nullable User user) {
         var id = platformHandle.getUUIDForPlayer(player);
         var fromFloodgate = plugin.fromFloodgate(id);
@@ -273,10 +319,23 @@ public class AuthenticListeners<Plugin extends AuthenticLibreLogin<P, S>, P, S>
             ip = platformHandle.getIP(player);
         }
 
-        if (fromFloodgate || user.autoLoginEnabled() || (sessionTime != null && user.getLastAuthentication() != null && ip.equals(user.getIp()) && user.getLastAuthentication().toLocalDateTime().plus(sessionTime).isAfter(LocalDateTime.now()))) {
+        if (fromFloodgate || user.autoLoginEnabled() || hasValidSession(user, ip, sessionTime)) {
             return new BiHolder<>(true, plugin.getServerHandler().chooseLobbyServer(user, player, true, false));
         } else {
             return new BiHolder<>(false, plugin.getServerHandler().chooseLimboServer(user, player));
         }
     }
+
+    private boolean hasValidSession(User user, String ip, Duration sessionTime) {
+        // Sessions are disabled on this proxy, no matter what the others think
+        if (sessionTime == null || sessionTime.isZero() || sessionTime.isNegative() || !user.isRegistered()) return false;
+
+        if (user.getLastAuthentication() != null && ip.equals(user.getIp()) && user.getLastAuthentication().toLocalDateTime().plus(sessionTime).isAfter(LocalDateTime.now()))
+            return true;
+
+        var sharedCache = plugin.getSharedCache();
+
+        // A session created on another proxy may not have reached our copy of the user yet
+        return sharedCache != null && ip.equals(sharedCache.getSession(user.getUuid()));
+    }
 }
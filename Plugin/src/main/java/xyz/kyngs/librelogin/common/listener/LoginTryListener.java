@@ -35,6 +35,9 @@ public class LoginTryListener<P, S> {
         AuthenticationSource source = wrongPasswordEvent.getSource();
         if (source != AuthenticationSource.LOGIN && source != AuthenticationSource.TOTP)
             return;
+        var tracker = plugin.getFailureTracker();
+        if (tracker != null)
+            tracker.recordFailure(wrongPasswordEvent.getUser().getUuid(), plugin.getPlatformHandle().getIP(wrongPasswordEvent.getPlayer()));
         if (plugin.getConfiguration().get(ConfigurationKeys.MAX_LOGIN_ATTEMPTS) == -1)
             return;
         // if key do not exists, put 1 as value
@@ -48,6 +51,9 @@ public class LoginTryListener<P, S> {
 
     private void onAuthenticated(AuthenticatedEvent<P, S> authenticatedEvent) {
         loginTries.invalidate(authenticatedEvent.getPlayer());
+        var tracker = plugin.getFailureTracker();
+        if (tracker != null)
+            tracker.recordSuccess(authenticatedEvent.getUser().getUuid(), plugin.getPlatformHandle().getIP(authenticatedEvent.getPlayer()));
     }
 
 }
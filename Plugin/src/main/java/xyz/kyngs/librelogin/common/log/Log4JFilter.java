@@ -13,18 +13,55 @@ import org.apache.logging.log4j.core.Filter;
 import org.apache.logging.log4j.core.LogEvent;
 import org.apache.logging.log4j.core.Logger;
 import org.apache.logging.log4j.message.Message;
+import org.apache.logging.log4j.util.StringBuilderFormattable;
 
 public class Log4JFilter extends LogFilter implements Filter {
 
+    private static final int MAX_BUFFER = 8192;
+    private static final ThreadLocal<Buffer> BUFFER = ThreadLocal.withInitial(Buffer::new);
+
     @Override
     public void inject() {
         ((Logger) LogManager.getRootLogger()).addFilter(new Log4JFilter());
     }
 
-    private Result checkMessageResult(String message) {
+    private Result checkMessageResult(CharSequence message) {
         return checkMessage(message) ? Result.NEUTRAL : Result.DENY;
     }
 
+    /**
+     * Formats the message into a reused buffer if possible, instead of creating a new string for every log line.
+     */
+    private Result checkMessageResult(Message message) {
+        if (message == null) return Result.NEUTRAL;
+
+        if (!(message instanceof StringBuilderFormattable formattable))
+            return checkMessageResult(message.getFormattedMessage());
+
+        var buffer = BUFFER.get();
+
+        // Formatting the parameters may log something itself
+        if (buffer.inUse) return checkMessageResult(message.getFormattedMessage());
+
+        var builder = buffer.builder;
+
+        buffer.inUse = true;
+
+        try {
+            builder.setLength(0);
+            formattable.formatTo(builder);
+
+            return checkMessageResult(builder);
+        } finally {
+            buffer.inUse = false;
+
+            if (builder.capacity() > MAX_BUFFER) {
+                // Do not keep huge buffers around after logging a stacktrace or a similar monster
+                BUFFER.remove();
+            }
+        }
+    }
+
     @Override
     public Result getOnMatch() {
         return Result.NEUTRAL;
@@ -97,12 +134,12 @@ public class Log4JFilter extends LogFilter implements Filter {
 
     @Override
     public Result filter(Logger logger, Level level, Marker marker, Message msg, Throwable t) {
-        return checkMessageResult(msg.getFormattedMessage());
+        return checkMessageResult(msg);
     }
 
     @Override
     public Result filter(LogEvent event) {
-        return checkMessageResult(event.getMessage().getFormattedMessage());
+        return checkMessageResult(event.getMessage());
     }
 
     @Override
@@ -126,4 +163,9 @@ public class Log4JFilter extends LogFilter implements Filter {
 
     public void stop() {
     }
-}
\ No newline at end of file
+
+    private static final class Buffer {
+        private final StringBuilder builder = new StringBuilder(256);
+        private boolean inUse;
+    }
+}
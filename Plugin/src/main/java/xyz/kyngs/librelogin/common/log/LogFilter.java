@@ -6,12 +6,18 @@
 
 package xyz.kyngs.librelogin.common.log;
 
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 public abstract class LogFilter {
 
     private static final Set<String> PROTECTED_COMMANDS;
+    private static final List<String> COMMAND_MARKERS = List.of("issued server command: /", "executed command /", "executed command: /", "Duplicate key name");
+    private static final int MARKER = 1;
+    private static final int COMMAND = 2;
+    private static final MultiPatternMatcher MATCHER;
 
     static {
         PROTECTED_COMMANDS = new HashSet<>();
@@ -32,17 +38,51 @@ public abstract class LogFilter {
         PROTECTED_COMMANDS.add("setemail");
         PROTECTED_COMMANDS.add("librelogin user register");
         PROTECTED_COMMANDS.add("librelogin user pass-change");
-    }
 
-    protected boolean checkMessage(String message) {
-        if (!message.contains("issued server command: /") && !message.contains("executed command /") && !message.contains("executed command: /") && !message.contains("Duplicate key name"))
-            return true;
+        var patterns = new HashMap<String, Integer>();
 
         for (String command : PROTECTED_COMMANDS) {
-            if (message.contains(command)) return false;
+            patterns.merge(command, COMMAND, (a, b) -> a | b);
+        }
+        for (String marker : COMMAND_MARKERS) {
+            patterns.merge(marker, MARKER, (a, b) -> a | b);
+        }
+
+        MATCHER = new MultiPatternMatcher(patterns);
+    }
+
+    /**
+     * @return false, if the message is a command line containing one of the protected commands, and should not be logged
+     */
+    protected boolean checkMessage(CharSequence message) {
+        if (message == null) return true;
+
+        // Most lines are not commands, and can be skipped by a much faster search than the automaton
+        if (!contains(message, "command") && !contains(message, "Duplicate key name")) return true;
+
+        return MATCHER.match(message, MARKER | COMMAND) != (MARKER | COMMAND);
+    }
+
+    /**
+     * Log4J hands over a reused {@link StringBuilder}, which is searched in place instead of being copied to a string.
+     */
+    private static boolean contains(CharSequence message, String value) {
+        if (message instanceof String string) return string.contains(value);
+        if (message instanceof StringBuilder builder) return builder.indexOf(value) >= 0;
+
+        var first = value.charAt(0);
+
+        for (int i = 0, last = message.length() - value.length(); i <= last; i++) {
+            if (message.charAt(i) != first) continue;
+
+            var j = 1;
+
+            while (j < value.length() && message.charAt(i + j) == value.charAt(j)) j++;
+
+            if (j == value.length()) return true;
         }
 
-        return true;
+        return false;
     }
 
     public abstract void inject();
@@ -0,0 +1,154 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package xyz.kyngs.librelogin.common.log;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * An Aho-Corasick automaton, finding all the patterns in a text in a single pass, without allocating.
+ * Every pattern belongs to a group, represented by a bit, and the search reports which groups were found.
+ * <br>
+ * Only ASCII patterns are supported. Any other character in the text just resets the automaton.<br>
+ * <b>This implementation is thread-safe.</b>
+ */
+class MultiPatternMatcher {
+
+    private static final int ALPHABET = 128;
+
+    private final int[] transitions;
+    private final int[] outputs;
+
+    /**
+     * @param patterns The patterns mapped to their group bits
+     */
+    MultiPatternMatcher(Map<String, Integer> patterns) {
+        var goTo = new ArrayList<int[]>();
+        var output = new ArrayList<Integer>();
+
+        goTo.add(newState());
+        output.add(0);
+
+        patterns.forEach((pattern, group) -> {
+            var state = 0;
+
+            for (int i = 0; i < pattern.length(); i++) {
+                var c = pattern.charAt(i);
+
+                if (c >= ALPHABET) throw new IllegalArgumentException("Only ASCII patterns are supported: " + pattern);
+
+                var next = goTo.get(state)[c];
+
+                if (next < 0) {
+                    next = goTo.size();
+                    goTo.get(state)[c] = next;
+                    goTo.add(newState());
+                    output.add(0);
+                }
+
+                state = next;
+            }
+
+            output.set(state, output.get(state) | group);
+        });
+
+        var states = goTo.size();
+        var fail = new int[states];
+
+        transitions = new int[states * ALPHABET];
+        outputs = new int[states];
+
+        // Breadth-first, so the failure state of every state is complete before it is used
+        var queue = new ArrayDeque<Integer>();
+
+        for (int c = 0; c < ALPHABET; c++) {
+            var next = goTo.get(0)[c];
+
+            if (next < 0) {
+                transitions[c] = 0;
+            } else {
+                transitions[c] = next;
+                fail[next] = 0;
+                queue.add(next);
+            }
+        }
+
+        outputs[0] = output.get(0);
+
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+
+            outputs[state] = output.get(state) | outputs[fail[state]];
+
+            for (int c = 0; c < ALPHABET; c++) {
+                var next = goTo.get(state)[c];
+
+                if (next < 0) {
+                    transitions[state * ALPHABET + c] = transitions[fail[state] * ALPHABET + c];
+                } else {
+                    transitions[state * ALPHABET + c] = next;
+                    fail[next] = transitions[fail[state] * ALPHABET + c];
+                    queue.add(next);
+                }
+            }
+        }
+    }
+
+    private static int[] newState() {
+        var state = new int[ALPHABET];
+        Arrays.fill(state, -1);
+        return state;
+    }
+
+    /**
+     * Searches the text for the patterns.
+     *
+     * @param text The text
+     * @param stop Once all these group bits are found, the search stops early
+     * @return The group bits of all the found patterns
+     */
+    int match(CharSequence text, int stop) {
+        // Strings are by far the most common, let the JIT see the concrete type
+        if (text instanceof String string) return match(string, stop);
+
+        var state = 0;
+        var found = 0;
+
+        for (int i = 0; i < text.length(); i++) {
+            var c = text.charAt(i);
+
+            state = c < ALPHABET ? transitions[state * ALPHABET + c] : 0;
+            found |= outputs[state];
+
+            if ((found & stop) == stop) return found;
+        }
+
+        return found;
+    }
+
+    private int match(String text, int stop) {
+        var transitions = this.transitions;
+        var outputs = this.outputs;
+        var length = text.length();
+        var state = 0;
+        var found = 0;
+
+        for (int i = 0; i < length; i++) {
+            var c = text.charAt(i);
+
+            state = c < ALPHABET ? transitions[state * ALPHABET + c] : 0;
+            found |= outputs[state];
+
+            if ((found & stop) == stop) return found;
+        }
+
+        return found;
+    }
+
+}
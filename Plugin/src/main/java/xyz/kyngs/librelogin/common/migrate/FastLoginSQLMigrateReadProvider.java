@@ -13,17 +13,18 @@ import xyz.kyngs.librelogin.api.database.User;
 import xyz.kyngs.librelogin.api.database.connector.DatabaseConnector;
 import xyz.kyngs.librelogin.api.database.connector.SQLDatabaseConnector;
 import xyz.kyngs.librelogin.api.premium.PremiumException;
-import xyz.kyngs.librelogin.api.premium.PremiumProvider;
 import xyz.kyngs.librelogin.api.premium.PremiumUser;
+import xyz.kyngs.librelogin.common.premium.AuthenticPremiumProvider;
+import xyz.kyngs.librelogin.common.premium.RequestGovernor;
 import xyz.kyngs.librelogin.common.util.GeneralUtil;
 
 import java.util.*;
 
 public class FastLoginSQLMigrateReadProvider extends SQLMigrateReadProvider {
     private final DatabaseConnector<?, ?> main;
-    private final PremiumProvider provider;
+    private final AuthenticPremiumProvider provider;
 
-    public FastLoginSQLMigrateReadProvider(String tableName, Logger logger, SQLDatabaseConnector connector, DatabaseConnector<?, ?> main, PremiumProvider provider) {
+    public FastLoginSQLMigrateReadProvider(String tableName, Logger logger, SQLDatabaseConnector connector, DatabaseConnector<?, ?> main, AuthenticPremiumProvider provider) {
         super(tableName, logger, connector);
         this.main = main;
         this.provider = provider;
@@ -69,7 +70,7 @@ public class FastLoginSQLMigrateReadProvider extends SQLMigrateReadProvider {
 
                     while (true) {
                         try {
-                            user = provider.getUserForUUID(premiumUUID);
+                            user = provider.getUserForUUID(premiumUUID, RequestGovernor.Priority.BACKGROUND);
                             break;
                         } catch (PremiumException e) {
                             if (e.getIssue() == PremiumException.Issue.THROTTLED) {
@@ -10,13 +10,13 @@ import xyz.kyngs.librelogin.api.Logger;
 import xyz.kyngs.librelogin.api.database.User;
 import xyz.kyngs.librelogin.api.database.connector.SQLDatabaseConnector;
 import xyz.kyngs.librelogin.api.premium.PremiumException;
+import xyz.kyngs.librelogin.api.premium.PremiumUser;
 import xyz.kyngs.librelogin.common.AuthenticLibreLogin;
 import xyz.kyngs.librelogin.common.database.AuthenticUser;
+import xyz.kyngs.librelogin.common.premium.RequestGovernor;
 import xyz.kyngs.librelogin.common.util.GeneralUtil;
 
-import java.util.Collection;
-import java.util.HashSet;
-import java.util.UUID;
+import java.util.*;
 
 public class UniqueCodeAuthSQLMigrateReadProvider extends SQLMigrateReadProvider {
 
@@ -34,7 +34,7 @@ public class UniqueCodeAuthSQLMigrateReadProvider extends SQLMigrateReadProvider
 
             var rs = ps.executeQuery();
 
-            var users = new HashSet<User>();
+            var rows = new ArrayList<Row>();
 
             while (rs.next()) {
                 try {
@@ -45,6 +45,32 @@ public class UniqueCodeAuthSQLMigrateReadProvider extends SQLMigrateReadProvider
                     if (password.equals("n"))
                         password = null; //The horrible plugin uses "n" as an indicator for null, makes me think what happens when someone uses "n" as a password
 
+                    rows.add(new Row(name, password, premium));
+                } catch (Exception e) {
+                    e.printStackTrace();
+                    logger.error("Error while reading user from database");
+                }
+            }
+
+            var premiumNames = rows.stream()
+                    .filter(Row::premium)
+                    .map(Row::name)
+                    .toList();
+
+            Map<String, PremiumUser> premiumUsers = Map.of();
+
+            if (!premiumNames.isEmpty()) {
+                logger.info("Attempting to get premium UUIDs for " + premiumNames.size() + " users");
+                premiumUsers = getPremiumUsers(premiumNames);
+            }
+
+            var users = new HashSet<User>();
+
+            for (Row row : rows) {
+                try {
+                    var name = row.name();
+                    var password = row.password();
+
                     var hashed = password == null
                             ? null
                             : plugin.getDefaultCryptoProvider().createHash(password);
@@ -52,18 +78,13 @@ public class UniqueCodeAuthSQLMigrateReadProvider extends SQLMigrateReadProvider
                     var uuid = GeneralUtil.getCrackedUUIDFromName(name);
                     UUID premiumUUID = null;
 
-                    if (premium) {
-                        logger.info("Attempting to get premium UUID for " + name);
-                        try {
-                            var premiumUser = plugin.getPremiumProvider().getUserForName(name);
-                            if (premiumUser == null) {
-                                logger.warn("User " + name + " is no longer premium, skipping");
-                            } else {
-                                premiumUUID = premiumUser.uuid();
-                                logger.info("Got premium UUID for " + name + ": " + uuid);
-                            }
-                        } catch (PremiumException e) {
-                            logger.error("Error while getting premium UUID for " + name + ": " + e.getMessage());
+                    if (row.premium()) {
+                        var premiumUser = premiumUsers.get(name.toLowerCase());
+                        if (premiumUser == null) {
+                            logger.warn("User " + name + " is no longer premium, skipping");
+                        } else {
+                            premiumUUID = premiumUser.uuid();
+                            logger.info("Got premium UUID for " + name + ": " + uuid);
                         }
                     }
 
@@ -89,4 +110,34 @@ public class UniqueCodeAuthSQLMigrateReadProvider extends SQLMigrateReadProvider
             return users;
         });
     }
+
+    /**
+     * Looks the names up in bulk, and one by one if that fails. If a name cannot be looked up at all, the migration is aborted,
+     * as the user would otherwise lose their premium status.
+     */
+    private Map<String, PremiumUser> getPremiumUsers(List<String> names) {
+        var provider = plugin.getPremiumProvider();
+
+        try {
+            return provider.getUsersForNames(names, RequestGovernor.Priority.BACKGROUND);
+        } catch (PremiumException e) {
+            logger.warn("Error while getting premium UUIDs in bulk, getting them one by one: " + e.getMessage());
+        }
+
+        var users = new HashMap<String, PremiumUser>();
+
+        for (String name : names) {
+            try {
+                // Names resolved before the failure are cached
+                users.put(name.toLowerCase(), provider.getUserForName(name, RequestGovernor.Priority.BACKGROUND));
+            } catch (PremiumException e) {
+                throw new IllegalStateException("Failed to get premium UUID for " + name + ", please try again later", e);
+            }
+        }
+
+        return users;
+    }
+
+    private record Row(String name, String password, boolean premium) {
+    }
 }
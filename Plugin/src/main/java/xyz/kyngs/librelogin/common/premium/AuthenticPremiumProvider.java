@@ -8,28 +8,38 @@ package xyz.kyngs.librelogin.common.premium;
 
 import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 import xyz.kyngs.librelogin.api.premium.PremiumException;
 import xyz.kyngs.librelogin.api.premium.PremiumProvider;
 import xyz.kyngs.librelogin.api.premium.PremiumUser;
-import xyz.kyngs.librelogin.api.util.ThrowableFunction;
 import xyz.kyngs.librelogin.common.AuthenticLibreLogin;
+import xyz.kyngs.librelogin.common.premium.RequestGovernor.Priority;
 import xyz.kyngs.librelogin.common.util.GeneralUtil;
 
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
-import java.net.URL;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.UUID;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.TimeUnit;
 
+import static xyz.kyngs.librelogin.common.config.ConfigurationKeys.*;
+
 public class AuthenticPremiumProvider implements PremiumProvider {
 
+    private static final String BULK_URL = "https://api.minecraftservices.com/minecraft/profile/lookup/bulk/byname";
+    private static final int BULK_LIMIT = 10;
+    private static final long BATCH_WINDOW = 50;
+
     private final Cache<String, PremiumUser> userCache;
-    private final List<ThrowableFunction<String, PremiumUser, PremiumException>> fetchers;
+    private final List<Fetcher> fetchers;
     private final AuthenticLibreLogin<?, ?> plugin;
+    private final RequestGovernor nameGovernor;
+    private final RequestGovernor profileGovernor;
+    private final RequestGovernor bulkGovernor;
+    private final NameBatcher batcher;
+    private final long backgroundMaxWait;
 
     public AuthenticPremiumProvider(AuthenticLibreLogin<?, ?> plugin) {
         this.plugin = plugin;
@@ -37,6 +47,18 @@ public class AuthenticPremiumProvider implements PremiumProvider {
                 .expireAfterWrite(20, TimeUnit.MINUTES)
                 .build();
 
+        var configuration = plugin.getConfiguration();
+        var limit = configuration.get(MOJANG_RATE_LIMIT_REQUESTS);
+        var period = TimeUnit.SECONDS.toMillis(configuration.get(MOJANG_RATE_LIMIT_PERIOD));
+        var reserve = configuration.get(MOJANG_RATE_LIMIT_LOGIN_RESERVE) / 100D;
+
+        // Mojang limits each endpoint separately
+        nameGovernor = new RequestGovernor(limit, period, reserve);
+        profileGovernor = new RequestGovernor(limit, period, reserve);
+        bulkGovernor = new RequestGovernor(limit, period, reserve);
+        batcher = new NameBatcher();
+        backgroundMaxWait = configuration.get(MOJANG_RATE_LIMIT_BACKGROUND_MAX_WAIT);
+
         fetchers = new ArrayList<>(3);
 
         fetchers.add(this::getUserFromMojang);
@@ -46,51 +68,201 @@ public class AuthenticPremiumProvider implements PremiumProvider {
 
     @Override
     public PremiumUser getUserForName(String name) throws PremiumException {
+        return getUserForName(name, Priority.LOGIN);
+    }
+
+    /**
+     * Fetches a user by their username. {@link Priority#BACKGROUND} lookups may wait for the Mojang rate limit to recover.
+     *
+     * @see PremiumProvider#getUserForName(String)
+     */
+    public PremiumUser getUserForName(String name, Priority priority) throws PremiumException {
+        return getUserForName(name, priority, priority == Priority.BACKGROUND);
+    }
+
+    private PremiumUser getUserForName(String name, Priority priority, boolean batch) throws PremiumException {
         name = name.toLowerCase();
 
-        var ex = new PremiumException[1];
+        // Never resolve inside the cache, the lookup may wait for the network or the rate limit, and would block other lookups meanwhile
+        var cached = userCache.getIfPresent(name);
 
-        var result = userCache.get(name, x -> {
-            for (int i = 0; i < fetchers.size(); i++) {
-                var fetcher = fetchers.get(i);
+        if (cached != null) return cached;
 
-                try {
-                    return fetcher.apply(x);
-                } catch (PremiumException e) {
-                    if (i == 0 && e.getIssue() == PremiumException.Issue.UNDEFINED) {
-                        ex[0] = e;
-                        break;
-                    }
+        var user = resolve(name, priority, batch);
 
-                    if (i == fetchers.size() - 1) {
-                        ex[0] = e;
-                    }
-                } catch (RuntimeException e) {
-                    if (i == fetchers.size() - 1) {
-                        ex[0] = new PremiumException(PremiumException.Issue.UNDEFINED, e);
-                    }
+        if (user != null) userCache.put(name, user);
+
+        return user;
+    }
+
+    private PremiumUser resolve(String name, Priority priority, boolean batch) throws PremiumException {
+        var sharedCache = plugin.getSharedCache();
+
+        if (sharedCache != null) {
+            var shared = sharedCache.getPremiumUser(name);
+
+            if (shared != null) return shared.user();
+        }
+
+        if (batch) {
+            try {
+                var user = batcher.resolve(name);
+
+                if (sharedCache != null) sharedCache.putPremiumUser(name, user);
+
+                return user;
+            } catch (PremiumException e) {
+                // Try the lookup on its own
+            }
+        }
+
+        PremiumException ex = null;
+
+        for (int i = 0; i < fetchers.size(); i++) {
+            var fetcher = fetchers.get(i);
+
+            try {
+                var user = fetcher.fetch(name, priority);
+
+                if (sharedCache != null) sharedCache.putPremiumUser(name, user);
+
+                return user;
+            } catch (PremiumException e) {
+                if (i == 0 && e.getIssue() == PremiumException.Issue.UNDEFINED) {
+                    ex = e;
+                    break;
+                }
+
+                if (i == fetchers.size() - 1) {
+                    ex = e;
+                }
+            } catch (RuntimeException e) {
+                if (i == fetchers.size() - 1) {
+                    ex = new PremiumException(PremiumException.Issue.UNDEFINED, e);
                 }
             }
-            return null;
-        });
+        }
 
-        if (ex[0] != null) {
-            throw ex[0];
+        if (ex != null) {
+            throw ex;
+        }
+
+        return null;
+    }
+
+    /**
+     * Fetches users by their usernames, up to ten usernames per request. The results are cached, just as with {@link #getUserForName(String)}.
+     *
+     * @see PremiumProvider#getUsersForNames(Collection)
+     */
+    public Map<String, PremiumUser> getUsersForNames(Collection<String> names, Priority priority) throws PremiumException {
+        var sharedCache = plugin.getSharedCache();
+        var result = new HashMap<String, PremiumUser>();
+        var missing = new ArrayList<String>();
+
+        for (String name : names) {
+            name = name.toLowerCase();
+
+            if (result.containsKey(name)) continue;
+
+            var cached = userCache.getIfPresent(name);
+
+            if (cached == null && sharedCache != null) {
+                var shared = sharedCache.getPremiumUser(name);
+
+                if (shared != null) {
+                    result.put(name, shared.user());
+                    continue;
+                }
+            }
+
+            result.put(name, cached);
+
+            if (cached == null) missing.add(name);
+        }
+
+        for (int i = 0; i < missing.size(); i += BULK_LIMIT) {
+            var chunk = missing.subList(i, Math.min(missing.size(), i + BULK_LIMIT));
+
+            Map<String, PremiumUser> found;
+
+            try {
+                found = getUsersFromMojang(chunk, priority);
+            } catch (PremiumException e) {
+                // The fetchers of single lookups have fallbacks
+                for (String name : chunk) {
+                    result.put(name, getUserForName(name, priority, false));
+                }
+                continue;
+            }
+
+            for (String name : chunk) {
+                var user = found.get(name);
+
+                if (user != null) userCache.put(name, user);
+                if (sharedCache != null) sharedCache.putPremiumUser(name, user);
+
+                result.put(name, user);
+            }
         }
 
         return result;
     }
 
-    private PremiumUser getUserFromAschon(String name) throws PremiumException {
+    @Override
+    public Map<String, PremiumUser> getUsersForNames(Collection<String> names) throws PremiumException {
+        return getUsersForNames(names, Priority.BACKGROUND);
+    }
+
+    private Map<String, PremiumUser> getUsersFromMojang(List<String> names, Priority priority) throws PremiumException {
         try {
             plugin.reportMainThread();
-            var connection = (HttpURLConnection) new URL("https://api.ashcon.app/mojang/v2/user/" + name).openConnection();
-            connection.setConnectTimeout(5000);
-            connection.setReadTimeout(5000);
+            acquire(bulkGovernor, priority);
 
-            switch (connection.getResponseCode()) {
+            var body = AuthenticLibreLogin.GSON.toJson(names).getBytes(StandardCharsets.UTF_8);
+            var response = plugin.getHttpService().post(BULK_URL, "application/json", body);
+
+            return switch (response.status()) {
+                case 429 -> {
+                    bulkGovernor.throttled();
+                    throw new PremiumException(PremiumException.Issue.THROTTLED, response.text());
+                }
                 case 200 -> {
-                    var data = AuthenticLibreLogin.GSON.fromJson(new InputStreamReader(connection.getInputStream()), JsonObject.class);
+                    var found = new HashMap<String, PremiumUser>();
+
+                    // Names, which do not exist, are left out of the response
+                    for (var element : response.json(JsonArray.class)) {
+                        var data = element.getAsJsonObject();
+
+                        if (data.get("demo") != null) continue;
+
+                        var name = data.get("name").getAsString();
+
+                        found.put(name.toLowerCase(), new PremiumUser(GeneralUtil.fromUnDashedUUID(data.get("id").getAsString()), name));
+                    }
+
+                    plugin.getStatistics().add("premium.mojang.bulk-names", names.size());
+
+                    yield found;
+                }
+                case 500 ->
+                        throw new PremiumException(PremiumException.Issue.SERVER_EXCEPTION, response.text());
+                default ->
+                        throw new PremiumException(PremiumException.Issue.UNDEFINED, response.text());
+            };
+        } catch (IOException e) {
+            throw new PremiumException(PremiumException.Issue.UNDEFINED, e);
+        }
+    }
+
+    private PremiumUser getUserFromAschon(String name, Priority priority) throws PremiumException {
+        try {
+            plugin.reportMainThread();
+            var response = plugin.getHttpService().get("https://api.ashcon.app/mojang/v2/user/" + name);
+
+            switch (response.status()) {
+                case 200 -> {
+                    var data = response.json(JsonObject.class);
 
                     var uuid = data.get("uuid");
 
@@ -100,25 +272,23 @@ public class AuthenticPremiumProvider implements PremiumProvider {
                     return null;
                 }
                 case 429 ->
-                        throw new PremiumException(PremiumException.Issue.THROTTLED, GeneralUtil.readInput(connection.getErrorStream()));
+                        throw new PremiumException(PremiumException.Issue.THROTTLED, response.text());
                 default ->
-                        throw new PremiumException(PremiumException.Issue.UNDEFINED, GeneralUtil.readInput(connection.getErrorStream()));
+                        throw new PremiumException(PremiumException.Issue.UNDEFINED, response.text());
             }
         } catch (IOException e) {
             throw new PremiumException(PremiumException.Issue.SERVER_EXCEPTION, e);
         }
     }
 
-    private PremiumUser getUserFromPlayerDB(String name) throws PremiumException {
+    private PremiumUser getUserFromPlayerDB(String name, Priority priority) throws PremiumException {
         try {
             plugin.reportMainThread();
-            var connection = (HttpURLConnection) new URL("https://playerdb.co/api/player/minecraft/" + name).openConnection();
-            connection.setConnectTimeout(5000);
-            connection.setReadTimeout(5000);
+            var response = plugin.getHttpService().get("https://playerdb.co/api/player/minecraft/" + name);
 
-            switch (connection.getResponseCode()) {
+            switch (response.status()) {
                 case 200 -> {
-                    var data = AuthenticLibreLogin.GSON.fromJson(new InputStreamReader(connection.getInputStream()), JsonObject.class);
+                    var data = response.json(JsonObject.class);
 
                     var id = data.get("data").getAsJsonObject().get("player").getAsJsonObject().get("id").getAsString();
 
@@ -131,28 +301,31 @@ public class AuthenticPremiumProvider implements PremiumProvider {
                     return null;
                 }
                 default ->
-                        throw new PremiumException(PremiumException.Issue.UNDEFINED, GeneralUtil.readInput(connection.getErrorStream()));
+                        throw new PremiumException(PremiumException.Issue.UNDEFINED, response.text());
             }
         } catch (IOException e) {
             throw new PremiumException(PremiumException.Issue.SERVER_EXCEPTION, e);
         }
     }
 
-    private PremiumUser getUserFromMojang(String name) throws PremiumException {
+    private PremiumUser getUserFromMojang(String name, Priority priority) throws PremiumException {
         try {
             plugin.reportMainThread();
-            var connection = (HttpURLConnection) new URL("https://api.mojang.com/users/profiles/minecraft/" + name).openConnection();
-            connection.setConnectTimeout(5000);
-            connection.setReadTimeout(5000);
+            // Let the fallbacks handle the lookup, instead of getting refused by Mojang
+            acquire(nameGovernor, priority);
 
-            return switch (connection.getResponseCode()) {
-                case 429 ->
-                        throw new PremiumException(PremiumException.Issue.THROTTLED, GeneralUtil.readInput(connection.getErrorStream()));
+            var response = plugin.getHttpService().get("https://api.mojang.com/users/profiles/minecraft/" + name);
+
+            return switch (response.status()) {
+                case 429 -> {
+                    nameGovernor.throttled();
+                    throw new PremiumException(PremiumException.Issue.THROTTLED, response.text());
+                }
                 case 204, 404 -> null;
                 default ->
-                        throw new PremiumException(PremiumException.Issue.UNDEFINED, GeneralUtil.readInput(connection.getErrorStream()));
+                        throw new PremiumException(PremiumException.Issue.UNDEFINED, response.text());
                 case 200 -> {
-                    var data = AuthenticLibreLogin.GSON.fromJson(new InputStreamReader(connection.getInputStream()), JsonObject.class);
+                    var data = response.json(JsonObject.class);
 
                     var id = data.get("id").getAsString();
                     var demo = data.get("demo");
@@ -163,7 +336,7 @@ public class AuthenticPremiumProvider implements PremiumProvider {
                     );
                 }
                 case 500 ->
-                        throw new PremiumException(PremiumException.Issue.SERVER_EXCEPTION, GeneralUtil.readInput(connection.getErrorStream()));
+                        throw new PremiumException(PremiumException.Issue.SERVER_EXCEPTION, response.text());
             };
         } catch (IOException e) {
             throw new PremiumException(PremiumException.Issue.UNDEFINED, e);
@@ -172,28 +345,145 @@ public class AuthenticPremiumProvider implements PremiumProvider {
 
     @Override
     public PremiumUser getUserForUUID(UUID uuid) throws PremiumException {
+        return getUserForUUID(uuid, Priority.LOGIN);
+    }
+
+    /**
+     * Fetches a user by their UUID. {@link Priority#BACKGROUND} lookups may wait for the Mojang rate limit to recover.
+     *
+     * @see PremiumProvider#getUserForUUID(UUID)
+     */
+    public PremiumUser getUserForUUID(UUID uuid, Priority priority) throws PremiumException {
         try {
             plugin.reportMainThread();
-            var connection = (HttpURLConnection) new URL("https://sessionserver.mojang.com/session/minecraft/profile/" + uuid.toString()).openConnection();
+            acquire(profileGovernor, priority);
 
-            return switch (connection.getResponseCode()) {
-                case 429 ->
-                        throw new PremiumException(PremiumException.Issue.THROTTLED, GeneralUtil.readInput(connection.getErrorStream()));
+            var response = plugin.getHttpService().get("https://sessionserver.mojang.com/session/minecraft/profile/" + uuid.toString());
+
+            return switch (response.status()) {
+                case 429 -> {
+                    profileGovernor.throttled();
+                    throw new PremiumException(PremiumException.Issue.THROTTLED, response.text());
+                }
                 case 204, 404 -> null;
                 case 200 -> {
-                    var data = AuthenticLibreLogin.GSON.fromJson(new InputStreamReader(connection.getInputStream()), JsonObject.class);
+                    var data = response.json(JsonObject.class);
 
                     var name = data.get("name").getAsString();
 
                     yield new PremiumUser(uuid, name);
                 }
                 case 500 ->
-                        throw new PremiumException(PremiumException.Issue.SERVER_EXCEPTION, GeneralUtil.readInput(connection.getErrorStream()));
+                        throw new PremiumException(PremiumException.Issue.SERVER_EXCEPTION, response.text());
                 default ->
-                        throw new PremiumException(PremiumException.Issue.UNDEFINED, GeneralUtil.readInput(connection.getErrorStream()));
+                        throw new PremiumException(PremiumException.Issue.UNDEFINED, response.text());
             };
         } catch (IOException e) {
             throw new PremiumException(PremiumException.Issue.UNDEFINED, e);
         }
     }
+
+    private void acquire(RequestGovernor governor, Priority priority) throws PremiumException {
+        boolean acquired;
+
+        if (priority == Priority.LOGIN) {
+            acquired = governor.tryAcquire(priority);
+        } else {
+            var start = System.nanoTime();
+
+            try {
+                acquired = governor.acquire(priority, backgroundMaxWait);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new PremiumException(PremiumException.Issue.UNDEFINED, e);
+            }
+
+            plugin.getStatistics().add("premium.mojang.background-wait-millis", (System.nanoTime() - start) / 1_000_000);
+        }
+
+        if (!acquired) {
+            plugin.getStatistics().increment("premium.mojang.predicted-throttles");
+            throw new PremiumException(PremiumException.Issue.THROTTLED, "Mojang rate limit would be exceeded");
+        }
+    }
+
+    /**
+     * Collects background lookups for a short while, and resolves them together in a single bulk request.
+     */
+    private final class NameBatcher {
+
+        private List<PendingLookup> pending = new ArrayList<>(BULK_LIMIT);
+
+        private PremiumUser resolve(String name) throws PremiumException {
+            var future = new CompletableFuture<PremiumUser>();
+            List<PendingLookup> full = null;
+            boolean first;
+
+            synchronized (this) {
+                pending.add(new PendingLookup(name, future));
+                first = pending.size() == 1;
+
+                if (pending.size() >= BULK_LIMIT) full = take();
+            }
+
+            if (full != null) {
+                send(full);
+            } else if (first) {
+                plugin.delay(this::flush, BATCH_WINDOW);
+            }
+
+            try {
+                return future.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof PremiumException premium) throw premium;
+
+                throw new PremiumException(PremiumException.Issue.UNDEFINED, e);
+            }
+        }
+
+        private void flush() {
+            List<PendingLookup> batch;
+
+            synchronized (this) {
+                batch = take();
+            }
+
+            if (!batch.isEmpty()) send(batch);
+        }
+
+        private List<PendingLookup> take() {
+            var batch = pending;
+            pending = new ArrayList<>(BULK_LIMIT);
+            return batch;
+        }
+
+        private void send(List<PendingLookup> batch) {
+            var names = batch.stream()
+                    .map(PendingLookup::name)
+                    .distinct()
+                    .toList();
+
+            try {
+                var found = getUsersFromMojang(names, Priority.BACKGROUND);
+
+                for (PendingLookup lookup : batch) {
+                    lookup.future().complete(found.get(lookup.name()));
+                }
+            } catch (PremiumException | RuntimeException e) {
+                for (PendingLookup lookup : batch) {
+                    lookup.future().completeExceptionally(e);
+                }
+            }
+        }
+
+    }
+
+    private record PendingLookup(String name, CompletableFuture<PremiumUser> future) {
+    }
+
+    @FunctionalInterface
+    private interface Fetcher {
+        PremiumUser fetch(String name, Priority priority) throws PremiumException;
+    }
+
 }
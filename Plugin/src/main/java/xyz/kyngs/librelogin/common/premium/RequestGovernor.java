@@ -0,0 +1,118 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package xyz.kyngs.librelogin.common.premium;
+
+/**
+ * Keeps track of our own request rate to a rate-limited endpoint, so we can stop sending requests before the endpoint starts refusing them.
+ * <br>
+ * The governor is a token bucket, refilling at the endpoint's limit. A part of the bucket is reserved for {@link Priority#LOGIN} requests,
+ * {@link Priority#BACKGROUND} requests wait until there are tokens above the reserve.<br>
+ * <b>This implementation is thread-safe.</b>
+ */
+public class RequestGovernor {
+
+    private final double capacity;
+    private final double reserve;
+    private final double tokensPerNano;
+    private double tokens;
+    private long lastRefill;
+
+    /**
+     * @param limit    The amount of requests the endpoint allows per period
+     * @param periodMs The period in milliseconds
+     * @param reserve  The fraction of the limit, which can only be used by {@link Priority#LOGIN} requests
+     */
+    public RequestGovernor(int limit, long periodMs, double reserve) {
+        this.capacity = Math.max(1, limit);
+        this.reserve = Math.min(capacity - 1, capacity * Math.max(0, reserve));
+        this.tokensPerNano = capacity / (Math.max(1, periodMs) * 1_000_000D);
+        this.tokens = capacity;
+        this.lastRefill = System.nanoTime();
+    }
+
+    /**
+     * Takes a token for a request, if one is available.
+     *
+     * @param priority The priority of the request
+     * @return Whether the request can be sent
+     */
+    public synchronized boolean tryAcquire(Priority priority) {
+        refill();
+
+        if (tokens - threshold(priority) < 1) return false;
+
+        tokens--;
+        return true;
+    }
+
+    /**
+     * Takes a token for a request, waiting at most the given time for one to become available.
+     *
+     * @param priority The priority of the request
+     * @param maxWait  The maximum time to wait in milliseconds
+     * @return Whether the request can be sent
+     * @throws InterruptedException If the thread was interrupted while waiting
+     */
+    public synchronized boolean acquire(Priority priority, long maxWait) throws InterruptedException {
+        var deadline = System.nanoTime() + maxWait * 1_000_000L;
+
+        while (true) {
+            refill();
+
+            var missing = 1 - (tokens - threshold(priority));
+
+            if (missing <= 0) {
+                tokens--;
+                return true;
+            }
+
+            var remaining = deadline - System.nanoTime();
+            var needed = (long) Math.ceil(missing / tokensPerNano);
+
+            if (needed > remaining) return false;
+
+            // Wake up at least every second, the endpoint may have throttled us in the meantime
+            wait(Math.max(1, Math.min(1000, needed / 1_000_000L)));
+        }
+    }
+
+    /**
+     * Empties the bucket. Called once the endpoint refuses a request, as our estimate was apparently too optimistic.
+     */
+    public synchronized void throttled() {
+        refill();
+        tokens = 0;
+    }
+
+    public synchronized int available() {
+        refill();
+        return (int) tokens;
+    }
+
+    private double threshold(Priority priority) {
+        return priority == Priority.LOGIN ? 0 : reserve;
+    }
+
+    private void refill() {
+        var now = System.nanoTime();
+
+        tokens = Math.min(capacity, tokens + (now - lastRefill) * tokensPerNano);
+        lastRefill = now;
+    }
+
+    public enum Priority {
+        /**
+         * A player is waiting for the lookup to finish, before they can join.
+         */
+        LOGIN,
+        /**
+         * Nobody is actively waiting, for example migrations or staff commands.
+         */
+        BACKGROUND
+    }
+
+}
@@ -0,0 +1,92 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package xyz.kyngs.librelogin.common.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A bloom filter over strings. {@link #mightContain(CharSequence)} never returns false for a string which has been added,
+ * but may return true for a string, which has not.<br>
+ * <b>This implementation is thread-safe.</b>
+ */
+public class BloomFilter {
+
+    private final AtomicLongArray bits;
+    private final long size;
+    private final int hashes;
+
+    /**
+     * @param expected              The expected amount of strings
+     * @param falsePositiveRate     The desired probability of a false positive, once the expected amount of strings is added
+     */
+    public BloomFilter(long expected, double falsePositiveRate) {
+        expected = Math.max(expected, 1);
+
+        var optimal = (long) Math.ceil(-expected * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        var words = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(1, (optimal + 63) >>> 6));
+
+        this.bits = new AtomicLongArray(words);
+        this.size = (long) words << 6;
+        this.hashes = (int) Math.max(1, Math.min(16, Math.round((double) size / expected * Math.log(2))));
+    }
+
+    public void put(CharSequence value) {
+        var hash = hash(value);
+        var first = (int) hash;
+        var second = (int) (hash >>> 32);
+
+        for (int i = 1; i <= hashes; i++) {
+            var index = index(first + i * second);
+            var word = (int) (index >>> 6);
+            var mask = 1L << index;
+
+            long current;
+            while (((current = bits.get(word)) & mask) == 0) {
+                if (bits.compareAndSet(word, current, current | mask)) break;
+            }
+        }
+    }
+
+    public boolean mightContain(CharSequence value) {
+        var hash = hash(value);
+        var first = (int) hash;
+        var second = (int) (hash >>> 32);
+
+        for (int i = 1; i <= hashes; i++) {
+            var index = index(first + i * second);
+
+            if ((bits.get((int) (index >>> 6)) & (1L << index)) == 0) return false;
+        }
+
+        return true;
+    }
+
+    private long index(int combined) {
+        return (combined & 0x7FFFFFFFL) % size;
+    }
+
+    /**
+     * 64-bit FNV-1a, followed by a final mix, so both halves can be used as independent hashes.
+     */
+    private static long hash(CharSequence value) {
+        var hash = 0xcbf29ce484222325L;
+
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+
+        return hash;
+    }
+
+}
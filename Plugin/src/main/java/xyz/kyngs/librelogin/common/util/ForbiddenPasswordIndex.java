@@ -0,0 +1,236 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package xyz.kyngs.librelogin.common.util;
+
+import org.jetbrains.annotations.Nullable;
+import xyz.kyngs.librelogin.api.Logger;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * A case-insensitive set of forbidden passwords, stored as a sorted array of 64-bit hashes.
+ * <br>
+ * The array is built from the text list once, written next to it, and memory-mapped on later starts, so only the parts of it which are actually searched are read.
+ * The index remembers the size and the modification time of the list, and is rebuilt once the list changes.
+ * With 64-bit hashes, a password wrongly reported as forbidden is practically impossible even for lists with hundreds of millions of entries.<br>
+ * <b>This implementation is thread-safe.</b>
+ */
+public class ForbiddenPasswordIndex {
+
+    private static final int MAGIC = 0x4C4C4650; // LLFP
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 4 + 4 + 8 + 8 + 4;
+
+    private final LongBuffer hashes;
+
+    private ForbiddenPasswordIndex(LongBuffer hashes) {
+        this.hashes = hashes;
+    }
+
+    /**
+     * Opens the index of the list, building it first if it does not exist or is outdated.
+     *
+     * @param list   The text list in UTF-8, one password per line, lines starting with "# " are ignored
+     * @param index  The file to store the index in
+     * @param logger The logger to report the progress to
+     * @throws IOException If the list cannot be read
+     */
+    public static ForbiddenPasswordIndex open(Path list, Path index, Logger logger) throws IOException {
+        var existing = openExisting(list, index);
+
+        if (existing != null) return existing;
+
+        var size = Files.size(list);
+        var modified = Files.getLastModifiedTime(list).toMillis();
+
+        logger.info("Building the forbidden passwords index, this may take a while for large lists...");
+
+        var hashes = read(list, logger);
+
+        try {
+            write(index, hashes, size, modified);
+        } catch (IOException e) {
+            logger.warn("Failed to store the forbidden passwords index, it will be rebuilt on the next start: " + e.getMessage());
+        }
+
+        return new ForbiddenPasswordIndex(LongBuffer.wrap(hashes).asReadOnlyBuffer());
+    }
+
+    /**
+     * Opens the index of the list only if it has already been built, which merely maps the file.
+     *
+     * @param list  The text list
+     * @param index The file the index is stored in
+     * @return The index, or null if the list does not exist, or the index does not exist or is outdated
+     * @throws IOException If the index cannot be read
+     */
+    @Nullable
+    public static ForbiddenPasswordIndex openExisting(Path list, Path index) throws IOException {
+        if (!Files.exists(list) || !Files.exists(index)) return null;
+
+        var size = Files.size(list);
+        var modified = Files.getLastModifiedTime(list).toMillis();
+
+        try (var channel = FileChannel.open(index, StandardOpenOption.READ)) {
+            var header = ByteBuffer.allocate(HEADER_SIZE);
+
+            while (header.hasRemaining()) {
+                if (channel.read(header) < 0) break;
+            }
+            header.flip();
+
+            if (header.remaining() == HEADER_SIZE
+                    && header.getInt() == MAGIC
+                    && header.getInt() == VERSION
+                    && header.getLong() == size
+                    && header.getLong() == modified) {
+                var count = header.getInt();
+
+                if (channel.size() == HEADER_SIZE + count * 8L) {
+                    return new ForbiddenPasswordIndex(channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, count * 8L).asLongBuffer());
+                }
+            }
+        }
+
+        return null;
+    }
+
+    public int size() {
+        return hashes.limit();
+    }
+
+    /**
+     * Checks whether the password is forbidden, without allocating.
+     */
+    public boolean contains(CharSequence password) {
+        var hash = hash(password);
+        var low = 0;
+        var high = hashes.limit() - 1;
+
+        while (low <= high) {
+            var middle = (low + high) >>> 1;
+            var value = hashes.get(middle);
+
+            if (value < hash) {
+                low = middle + 1;
+            } else if (value > hash) {
+                high = middle - 1;
+            } else {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static long[] read(Path list, Logger logger) throws IOException {
+        var hashes = new long[1024];
+        var count = 0;
+        var malformed = 0;
+
+        // Lists found online are often not valid UTF-8, a single bad line must not discard the whole list
+        var decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(Files.newInputStream(list), decoder))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith("# ")) {
+                    continue;
+                }
+                if (line.indexOf('\uFFFD') >= 0) {
+                    malformed++;
+                }
+                if (count == hashes.length) {
+                    hashes = Arrays.copyOf(hashes, hashes.length * 2);
+                }
+                hashes[count++] = hash(line);
+            }
+        }
+
+        if (malformed > 0) {
+            logger.warn("%d lines of the forbidden passwords list are not valid UTF-8, they will only match passwords with the same replaced characters".formatted(malformed));
+        }
+
+        Arrays.sort(hashes, 0, count);
+
+        var unique = 0;
+
+        for (int i = 0; i < count; i++) {
+            if (unique == 0 || hashes[unique - 1] != hashes[i]) {
+                hashes[unique++] = hashes[i];
+            }
+        }
+
+        return Arrays.copyOf(hashes, unique);
+    }
+
+    private static void write(Path index, long[] hashes, long size, long modified) throws IOException {
+        var temp = index.resolveSibling(index.getFileName() + ".tmp");
+
+        try (var channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            var buffer = ByteBuffer.allocate(64 * 1024);
+
+            buffer.putInt(MAGIC)
+                    .putInt(VERSION)
+                    .putLong(size)
+                    .putLong(modified)
+                    .putInt(hashes.length);
+
+            for (long hash : hashes) {
+                if (buffer.remaining() < 8) {
+                    flush(channel, buffer);
+                }
+                buffer.putLong(hash);
+            }
+
+            flush(channel, buffer);
+        }
+
+        Files.move(temp, index, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) channel.write(buffer);
+        buffer.clear();
+    }
+
+    /**
+     * 64-bit FNV-1a over upper-cased characters, followed by a final mix.
+     */
+    private static long hash(CharSequence value) {
+        var hash = 0xcbf29ce484222325L;
+
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= Character.toUpperCase(value.charAt(i));
+            hash *= 0x100000001b3L;
+        }
+
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb3f53fcd9ec1L;
+        hash ^= hash >>> 33;
+
+        return hash;
+    }
+
+}
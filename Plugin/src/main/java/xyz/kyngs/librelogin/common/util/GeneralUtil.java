@@ -16,6 +16,7 @@ import xyz.kyngs.librelogin.common.command.InvalidCommandArgument;
 import xyz.kyngs.librelogin.common.config.ConfigurationKeys;
 import xyz.kyngs.librelogin.common.config.HoconPluginConfiguration;
 import xyz.kyngs.librelogin.common.config.key.ConfigurationKey;
+import xyz.kyngs.librelogin.common.database.DatabaseUnavailableException;
 
 import java.io.IOException;
 import java.io.InputStream;
@@ -146,7 +147,7 @@ public class GeneralUtil {
             try {
                 runnable.run();
                 future.complete(null);
-            } catch (InvalidCommandArgument e) {
+            } catch (InvalidCommandArgument | DatabaseUnavailableException e) {
                 future.completeExceptionally(e);
             } catch (Throwable e) {
                 e.printStackTrace();
@@ -6,14 +6,15 @@
 
 package xyz.kyngs.librelogin.common.util;
 
-import com.github.benmanes.caffeine.cache.Cache;
-import com.github.benmanes.caffeine.cache.Caffeine;
-
+import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
- * Basic rate limiter using Caffeine's cache as a backend.<br>
+ * Rate limiter, which keeps a token bucket for every key. Each attempt takes one token, the tokens refill at a constant rate up to the burst size.
+ * <br>
+ * The buckets are spread over independently locked stripes, so attempts with different keys rarely contend.
+ * Once a key is known, an attempt allocates nothing. Buckets which have refilled completely are equal to new ones, and are swept away from time to time.<br>
  * <b>This implementation is thread-safe.</b>
  *
  * @param <T> key type
@@ -21,12 +22,36 @@ import java.util.concurrent.atomic.AtomicBoolean;
  */
 public class RateLimiter<T> {
 
-    private final Cache<T, Object> expiring;
+    private static final int STRIPES = 32;
+    private static final int SWEEP_INTERVAL = 1024;
+
+    private final Stripe<T>[] stripes;
+    private final double capacity;
+    private final double tokensPerNano;
+    private final long refillNanos;
 
-    public RateLimiter(long amount, TimeUnit unit) {
-        expiring = Caffeine.newBuilder()
-                .expireAfterWrite(amount, unit)
-                .build();
+    /**
+     * @param burst  The maximum amount of attempts in a quick succession
+     * @param amount The amount of attempts per period
+     * @param period The period
+     * @param unit   The unit of the period
+     */
+    public RateLimiter(int burst, int amount, long period, TimeUnit unit) {
+        this.capacity = Math.max(1, burst);
+        this.tokensPerNano = (double) Math.max(1, amount) / Math.max(1, unit.toNanos(period));
+        this.refillNanos = (long) Math.ceil(capacity / tokensPerNano);
+        this.stripes = new Stripe[STRIPES];
+
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe<>();
+        }
+    }
+
+    /**
+     * Allows a single attempt per period.
+     */
+    public RateLimiter(long period, TimeUnit unit) {
+        this(1, 1, period, unit);
     }
 
     /**
@@ -34,12 +59,60 @@ public class RateLimiter<T> {
      * @return true, if rate limiting occurred, false otherwise
      */
     public boolean tryAndLimit(T t) {
-        var wasLimited = new AtomicBoolean(true);
-        expiring.get(t, x -> {
-            wasLimited.set(false);
-            return new Object();
-        });
-        return wasLimited.get();
+        var hash = t.hashCode();
+        var stripe = stripes[(hash ^ (hash >>> 16)) & (STRIPES - 1)];
+        var now = System.nanoTime();
+
+        synchronized (stripe) {
+            if (++stripe.operations >= SWEEP_INTERVAL) {
+                stripe.operations = 0;
+                stripe.buckets.values().removeIf(bucket -> now - bucket.lastRefill >= refillNanos);
+            }
+
+            var bucket = stripe.buckets.get(t);
+
+            if (bucket == null) {
+                bucket = new Bucket(capacity, now);
+                stripe.buckets.put(t, bucket);
+            } else {
+                bucket.tokens = Math.min(capacity, bucket.tokens + (now - bucket.lastRefill) * tokensPerNano);
+                bucket.lastRefill = now;
+            }
+
+            if (bucket.tokens < 1) return true;
+
+            bucket.tokens--;
+            return false;
+        }
+    }
+
+    /**
+     * Forgets all previous attempts of the key.
+     */
+    public void reset(T t) {
+        var hash = t.hashCode();
+        var stripe = stripes[(hash ^ (hash >>> 16)) & (STRIPES - 1)];
+
+        synchronized (stripe) {
+            stripe.buckets.remove(t);
+        }
+    }
+
+    private static final class Stripe<T> {
+        private final Map<T, Bucket> buckets = new HashMap<>();
+        private int operations;
+    }
+
+    private static final class Bucket {
+
+        private double tokens;
+        private long lastRefill;
+
+        private Bucket(double tokens, long lastRefill) {
+            this.tokens = tokens;
+            this.lastRefill = lastRefill;
+        }
+
     }
 
 }
@@ -0,0 +1,226 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package xyz.kyngs.librelogin.common.util;
+
+import xyz.kyngs.librelogin.api.Logger;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Runs the startup of the plugin in phases. Independent steps run in parallel, each one once its dependencies have finished.
+ * Steps nobody has to wait for are deferred until the startup is complete.
+ * <br>
+ * The time of every step is recorded and logged once the startup is complete.
+ * A failure of any step is rethrown on the thread waiting for the startup.<br>
+ * <b>This implementation is thread-safe.</b>
+ */
+public class StartupOrchestrator {
+
+    private final Logger logger;
+    private final ExecutorService executor;
+    private final List<Step> steps;
+    private final Map<String, Runnable> deferred;
+    private final Map<String, Long> timings;
+    private final long start;
+
+    public StartupOrchestrator(Logger logger) {
+        this.logger = logger;
+        this.steps = new ArrayList<>();
+        this.deferred = new LinkedHashMap<>();
+        this.timings = new LinkedHashMap<>();
+        this.start = System.nanoTime();
+
+        // Some libraries (e.g. JDBC drivers) are looked up through the context class loader, which is the one of the plugin here
+        var classLoader = Thread.currentThread().getContextClassLoader();
+
+        this.executor = Executors.newCachedThreadPool(runnable -> {
+            var thread = new Worker(runnable);
+            thread.setDaemon(true);
+            thread.setContextClassLoader(classLoader);
+            return thread;
+        });
+    }
+
+    /**
+     * Platforms may only allow some operations (e.g. shutting down, creating worlds) on the enabling thread.
+     *
+     * @return True if the calling thread runs a parallel step
+     */
+    public static boolean inParallelStep() {
+        return Thread.currentThread() instanceof Worker;
+    }
+
+    /**
+     * Runs the step on the calling thread.
+     */
+    public void run(String name, Runnable action) {
+        timed(name, action).run();
+    }
+
+    /**
+     * Starts the step in parallel, once all of its dependencies have finished.
+     *
+     * @param name         The name of the step, used in the timing breakdown
+     * @param action       The step
+     * @param dependencies The steps, which have to finish first
+     * @return The started step
+     */
+    public Step submit(String name, Runnable action, Step... dependencies) {
+        var futures = new CompletableFuture<?>[dependencies.length];
+
+        for (int i = 0; i < dependencies.length; i++) {
+            futures[i] = dependencies[i].future;
+        }
+
+        var step = new Step(CompletableFuture.allOf(futures).thenRunAsync(timed(name, action), executor));
+
+        synchronized (steps) {
+            steps.add(step);
+        }
+
+        return step;
+    }
+
+    /**
+     * Remembers the step, to be run after the startup is complete.
+     */
+    public void defer(String name, Runnable action) {
+        synchronized (deferred) {
+            deferred.put(name, action);
+        }
+    }
+
+    /**
+     * Waits for the steps to finish.
+     *
+     * @param awaited The steps to wait for, all the submitted steps if none are given
+     * @throws RuntimeException The exception of the first failed step
+     */
+    public void await(Step... awaited) {
+        CompletableFuture<?>[] futures;
+
+        if (awaited.length > 0) {
+            futures = new CompletableFuture<?>[awaited.length];
+
+            for (int i = 0; i < awaited.length; i++) {
+                futures[i] = awaited[i].future;
+            }
+        } else {
+            synchronized (steps) {
+                futures = steps.stream().map(step -> step.future).toArray(CompletableFuture[]::new);
+            }
+        }
+
+        try {
+            CompletableFuture.allOf(futures).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) throw runtime;
+            if (e.getCause() instanceof Error error) throw error;
+            throw e;
+        }
+    }
+
+    /**
+     * Waits for all the submitted steps, logs the timing breakdown and hands the deferred steps over to the scheduler.
+     *
+     * @param scheduler Runs the deferred steps in the background
+     */
+    public void complete(Consumer<Runnable> scheduler) {
+        await();
+        executor.shutdown();
+
+        String breakdown;
+
+        synchronized (timings) {
+            breakdown = timings.entrySet().stream()
+                    .map(entry -> "%s %dms".formatted(entry.getKey(), entry.getValue()))
+                    .collect(Collectors.joining(", "));
+        }
+
+        logger.info("Startup took %dms (%s)".formatted(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), breakdown));
+
+        synchronized (deferred) {
+            deferred.forEach((name, action) -> {
+                scheduler.accept(() -> {
+                    var stepStart = System.nanoTime();
+
+                    try {
+                        action.run();
+                    } catch (Exception e) {
+                        logger.warn("Deferred startup step %s failed: %s: %s".formatted(name, e.getClass().getSimpleName(), e.getMessage()));
+                        return;
+                    }
+
+                    logger.debug("Deferred startup step %s took %dms".formatted(name, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - stepStart)));
+                });
+            });
+
+            deferred.clear();
+        }
+    }
+
+    private Runnable timed(String name, Runnable action) {
+        return () -> {
+            var stepStart = System.nanoTime();
+
+            try {
+                action.run();
+            } finally {
+                synchronized (timings) {
+                    timings.put(name, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - stepStart));
+                }
+            }
+        };
+    }
+
+    /**
+     * Thrown by a parallel step to abort the startup, the proxy should be shut down by the enabling thread.
+     */
+    public static final class AbortException extends RuntimeException {
+
+        private final int code;
+
+        public AbortException(int code) {
+            super("Startup aborted with code " + code);
+            this.code = code;
+        }
+
+        public int getCode() {
+            return code;
+        }
+
+    }
+
+    private static final class Worker extends Thread {
+
+        private Worker(Runnable runnable) {
+            super(runnable, "LibreLogin Startup");
+        }
+
+    }
+
+    public static final class Step {
+
+        private final CompletableFuture<Void> future;
+
+        private Step(CompletableFuture<Void> future) {
+            this.future = future;
+        }
+
+    }
+
+}
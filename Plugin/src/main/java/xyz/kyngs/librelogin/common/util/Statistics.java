@@ -0,0 +1,48 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package xyz.kyngs.librelogin.common.util;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Simple named counters, included in the output of /librelogin dump.<br>
+ * <b>This implementation is thread-safe.</b>
+ */
+public class Statistics {
+
+    private final Map<String, LongAdder> counters;
+
+    public Statistics() {
+        counters = new ConcurrentHashMap<>();
+    }
+
+    public void increment(String key) {
+        add(key, 1);
+    }
+
+    public void add(String key, long amount) {
+        counters.computeIfAbsent(key, x -> new LongAdder()).add(amount);
+    }
+
+    public long get(String key) {
+        var counter = counters.get(key);
+        return counter == null ? 0 : counter.sum();
+    }
+
+    /**
+     * @return A sorted copy of all the counters
+     */
+    public Map<String, Long> snapshot() {
+        var snapshot = new TreeMap<String, Long>();
+        counters.forEach((key, value) -> snapshot.put(key, value.sum()));
+        return snapshot;
+    }
+
+}
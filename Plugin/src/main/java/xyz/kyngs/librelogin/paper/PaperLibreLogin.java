@@ -25,12 +25,14 @@ import xyz.kyngs.librelogin.common.AuthenticLibreLogin;
 import xyz.kyngs.librelogin.common.SLF4JLogger;
 import xyz.kyngs.librelogin.common.image.AuthenticImageProjector;
 import xyz.kyngs.librelogin.common.util.CancellableTask;
+import xyz.kyngs.librelogin.paper.protocollib.PacketBlocker;
 
 import java.io.File;
 import java.io.InputStream;
 import java.util.UUID;
 
 import static xyz.kyngs.librelogin.common.config.ConfigurationKeys.DEBUG;
+import static xyz.kyngs.librelogin.common.config.ConfigurationKeys.PACKET_LEVEL_BLOCKING;
 
 public class PaperLibreLogin extends AuthenticLibreLogin<Player, World> {
 
@@ -107,6 +109,7 @@ public class PaperLibreLogin extends AuthenticLibreLogin<Player, World> {
     @Override
     protected void disable() {
         ProtocolLibrary.getProtocolManager().getAsynchronousManager().unregisterAsyncHandlers(bootstrap);
+        ProtocolLibrary.getProtocolManager().removePacketListeners(bootstrap);
         if (getDatabaseProvider() == null) return; //Not initialized
 
         super.disable();
@@ -149,6 +152,10 @@ public class PaperLibreLogin extends AuthenticLibreLogin<Player, World> {
         Bukkit.getPluginManager().registerEvents(listeners, bootstrap);
         Bukkit.getPluginManager().registerEvents(new Blockers(this), bootstrap);
 
+        if (getConfiguration().get(PACKET_LEVEL_BLOCKING)) {
+            new PacketBlocker(this);
+        }
+
         started = true;
     }
 
@@ -49,14 +49,15 @@ import xyz.kyngs.librelogin.paper.protocollib.ClientPublicKey;
 import xyz.kyngs.librelogin.paper.protocollib.EncryptionUtil;
 import xyz.kyngs.librelogin.paper.protocollib.ProtocolListener;
 
-import java.io.IOException;
 import java.lang.reflect.Method;
 import java.net.*;
+import java.net.http.HttpTimeoutException;
 import java.nio.charset.StandardCharsets;
 import java.security.*;
 import java.util.Optional;
 import java.util.Random;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 import javax.crypto.*;
@@ -273,69 +274,87 @@ public class PaperListeners extends AuthenticListeners<PaperLibreLogin, Player,
                 ProtocolLibrary.getProtocolManager().getAsynchronousManager().signalPacketTransmission(event);
             }
         } else {
-            var sharedSecret = packet.getByteArrays().read(0);
+            //this is a fake packet; it shouldn't be sent to the server
+            synchronized (event.getAsyncMarker().getProcessingLock()) {
+                event.setCancelled(true);
+            }
 
-            var data = encryptionDataCache.getIfPresent(sender.getAddress().toString());
+            // Keep the packet (and the following ones) queued until the session is verified, without blocking the handler thread
+            event.getAsyncMarker().incrementProcessingDelay();
 
-            if (data == null) {
-                kickPlayer("Illegal encryption state", sender);
-                return;
+            try {
+                verifySession(event, sender, packet);
+            } catch (RuntimeException e) {
+                kickPlayer("Cannot verify session", sender);
+                ProtocolLibrary.getProtocolManager().getAsynchronousManager().signalPacketTransmission(event);
+                throw e;
             }
+        }
+    }
 
-            var expectedToken = data.token().clone();
+    /**
+     * Verifies the session of the player, the packet transmission is signalled once the verification is done.
+     */
+    private void verifySession(PacketEvent event, Player sender, PacketContainer packet) {
+        var sharedSecret = packet.getByteArrays().read(0);
 
-            if (!verifyNonce(packet, data.publicKey(), expectedToken)) {
-                kickPlayer("Invalid nonce", sender);
-            }
+        var data = encryptionDataCache.getIfPresent(sender.getAddress().toString());
 
-            //Verify session
+        if (data == null) {
+            kickPlayer("Illegal encryption state", sender);
+            ProtocolLibrary.getProtocolManager().getAsynchronousManager().signalPacketTransmission(event);
+            return;
+        }
 
-            try {
-                var privateKey = keyPair.getPrivate();
+        var expectedToken = data.token().clone();
 
-                SecretKey loginKey;
+        if (!verifyNonce(packet, data.publicKey(), expectedToken)) {
+            kickPlayer("Invalid nonce", sender);
+        }
 
-                try {
-                    loginKey = EncryptionUtil.decryptSharedKey(privateKey, sharedSecret);
-                } catch (GeneralSecurityException securityEx) {
-                    kickPlayer("Cannot decrypt shared secret", sender);
-                    return;
-                }
+        var privateKey = keyPair.getPrivate();
 
-                try {
-                    if (!enableEncryption(loginKey, sender)) {
-                        return;
-                    }
-                } catch (Exception e) {
-                    kickPlayer("Cannot decrypt shared secret", sender);
-                    return;
-                }
+        SecretKey loginKey;
 
-                var serverId = EncryptionUtil.getServerIdHashString("", loginKey, keyPair.getPublic());
-                var username = data.username();
-                var address = sender.getAddress();
+        try {
+            loginKey = EncryptionUtil.decryptSharedKey(privateKey, sharedSecret);
+        } catch (GeneralSecurityException securityEx) {
+            kickPlayer("Cannot decrypt shared secret", sender);
+            ProtocolLibrary.getProtocolManager().getAsynchronousManager().signalPacketTransmission(event);
+            return;
+        }
 
-                try {
-                    if (hasJoined(username, serverId, address.getAddress())) {
-                        receiveFakeStartPacket(username, data.publicKey(), sender, data.uuid());
-                    } else {
-                        kickPlayer("Invalid session", sender);
-                    }
-                } catch (IOException e) {
-                    if (e instanceof SocketTimeoutException) {
-                        plugin.getLogger().warn("Session verification timed out (5 seconds) for " + username);
+        try {
+            if (!enableEncryption(loginKey, sender)) {
+                ProtocolLibrary.getProtocolManager().getAsynchronousManager().signalPacketTransmission(event);
+                return;
+            }
+        } catch (Exception e) {
+            kickPlayer("Cannot decrypt shared secret", sender);
+            ProtocolLibrary.getProtocolManager().getAsynchronousManager().signalPacketTransmission(event);
+            return;
+        }
+
+        var serverId = EncryptionUtil.getServerIdHashString("", loginKey, keyPair.getPublic());
+        var username = data.username();
+        var address = sender.getAddress();
+
+        hasJoined(username, serverId, address.getAddress()).whenComplete((joined, e) -> {
+            try {
+                if (e != null) {
+                    if (GeneralUtil.getFurthestCause(e) instanceof HttpTimeoutException) {
+                        plugin.getLogger().warn("Session verification timed out (%s ms) for %s".formatted(plugin.getConfiguration().get(ConfigurationKeys.SESSION_VERIFICATION_TIMEOUT), username));
                     }
                     kickPlayer("Cannot verify session", sender);
+                } else if (joined) {
+                    receiveFakeStartPacket(username, data.publicKey(), sender, data.uuid());
+                } else {
+                    kickPlayer("Invalid session", sender);
                 }
             } finally {
-                //this is a fake packet; it shouldn't be sent to the server
-                synchronized (event.getAsyncMarker().getProcessingLock()) {
-                    event.setCancelled(true);
-                }
-
                 ProtocolLibrary.getProtocolManager().getAsynchronousManager().signalPacketTransmission(event);
             }
-        }
+        });
     }
 
     /**
@@ -373,7 +392,7 @@ public class PaperListeners extends AuthenticListeners<PaperLibreLogin, Player,
         ProtocolLibrary.getProtocolManager().receiveClientPacket(player, startPacket, false);
     }
 
-    public boolean hasJoined(String username, String serverHash, InetAddress hostIp) throws IOException {
+    public CompletableFuture<Boolean> hasJoined(String username, String serverHash, InetAddress hostIp) {
         String url;
         if (hostIp instanceof Inet6Address || plugin.getConfiguration().get(ConfigurationKeys.ALLOW_PROXY_CONNECTIONS)) {
             url = String.format("https://sessionserver.mojang.com/session/minecraft/hasJoined?username=%s&serverId=%s", username, serverHash);
@@ -382,13 +401,8 @@ public class PaperListeners extends AuthenticListeners<PaperLibreLogin, Player,
             url = String.format("https://sessionserver.mojang.com/session/minecraft/hasJoined?username=%s&serverId=%s&ip=%s", username, serverHash, encodedIP);
         }
 
-        var conn = (HttpURLConnection) new URL(url).openConnection();
-        conn.setConnectTimeout(5000);
-        conn.setReadTimeout(5000);
-        conn.connect();
-        int responseCode = conn.getResponseCode();
-        conn.disconnect();
-        return responseCode != 204;
+        return plugin.getHttpService().getAsync(url)
+                .thenApply(response -> response.status() != 204);
     }
 
     /**
@@ -0,0 +1,70 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package xyz.kyngs.librelogin.paper.protocollib;
+
+import com.comphenix.protocol.PacketType;
+import com.comphenix.protocol.ProtocolLibrary;
+import com.comphenix.protocol.events.ListenerPriority;
+import com.comphenix.protocol.events.PacketAdapter;
+import com.comphenix.protocol.events.PacketEvent;
+import org.bukkit.entity.Player;
+import xyz.kyngs.librelogin.api.authorization.AuthorizationProvider;
+import xyz.kyngs.librelogin.common.util.Statistics;
+import xyz.kyngs.librelogin.paper.PaperLibreLogin;
+
+/**
+ * Drops gameplay packets of players, who are not authorized, before the server processes them.
+ * Without this, the server has to decode, handle and then cancel every movement and interaction, and send corrections back.
+ * Chat and commands are left to the {@link xyz.kyngs.librelogin.paper.Blockers}, as the players need them to log in.
+ */
+public class PacketBlocker extends PacketAdapter {
+
+    private final AuthorizationProvider<Player> authorizationProvider;
+    private final Statistics statistics;
+
+    public PacketBlocker(PaperLibreLogin plugin) {
+        super(params()
+                .plugin(plugin.getBootstrap())
+                .listenerPriority(ListenerPriority.LOWEST)
+                .types(
+                        PacketType.Play.Client.POSITION,
+                        PacketType.Play.Client.POSITION_LOOK,
+                        PacketType.Play.Client.LOOK,
+                        PacketType.Play.Client.VEHICLE_MOVE,
+                        PacketType.Play.Client.STEER_VEHICLE,
+                        PacketType.Play.Client.USE_ENTITY,
+                        PacketType.Play.Client.USE_ITEM,
+                        PacketType.Play.Client.BLOCK_DIG,
+                        PacketType.Play.Client.BLOCK_PLACE,
+                        PacketType.Play.Client.ARM_ANIMATION,
+                        PacketType.Play.Client.ENTITY_ACTION,
+                        PacketType.Play.Client.HELD_ITEM_SLOT,
+                        PacketType.Play.Client.WINDOW_CLICK,
+                        PacketType.Play.Client.SET_CREATIVE_SLOT,
+                        PacketType.Play.Client.PICK_ITEM
+                )
+        );
+        this.authorizationProvider = plugin.getAuthorizationProvider();
+        this.statistics = plugin.getStatistics();
+
+        ProtocolLibrary.getProtocolManager().addPacketListener(this);
+    }
+
+    @Override
+    public void onPacketReceiving(PacketEvent event) {
+        if (event.isPlayerTemporary()) return;
+
+        var player = event.getPlayer();
+
+        if (player == null || (authorizationProvider.isAuthorized(player) && !authorizationProvider.isAwaiting2FA(player)))
+            return;
+
+        event.setCancelled(true);
+        statistics.increment("packet-blocker.dropped");
+    }
+
+}
@@ -0,0 +1,348 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package xyz.kyngs.librelogin.common.cache;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.*;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RespClientTest {
+
+    private StubServer server;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = new StubServer();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        server.close();
+    }
+
+    @Test
+    void repliesAreParsed() throws IOException {
+        try (var client = new RespClient("localhost", server.port(), "", 0, 2000)) {
+            assertEquals("PONG", client.command("PING"));
+            assertEquals("OK", client.command("SET", "key", "value"));
+            assertEquals("value", client.command("GET", "key"));
+            assertNull(client.command("GET", "missing"));
+            assertEquals(1L, client.command("DEL", "key"));
+            assertEquals(List.of("message", "channel", "payload"), client.command("ECHO-ARRAY", "message", "channel", "payload"));
+        }
+    }
+
+    @Test
+    void valuesAreUtf8() throws IOException {
+        try (var client = new RespClient("localhost", server.port(), "", 0, 2000)) {
+            client.command("SET", "key", "žluťoučký kůň");
+
+            assertEquals("žluťoučký kůň", client.command("GET", "key"));
+        }
+    }
+
+    @Test
+    void pipelinedRepliesAreReadInOrder() throws IOException {
+        try (var client = new RespClient("localhost", server.port(), "", 0, 2000)) {
+            var replies = client.pipeline(List.of(
+                    new String[]{"SET", "key", "value"},
+                    new String[]{"GET", "key"},
+                    new String[]{"GET", "missing"},
+                    new String[]{"DEL", "key"}
+            ));
+
+            assertEquals(Arrays.asList("OK", "value", null, 1L), replies);
+            assertEquals(1, server.connections());
+        }
+    }
+
+    @Test
+    void authAndSelectAreSentOnConnect() throws IOException {
+        try (var client = new RespClient("localhost", server.port(), "secret", 3, 2000)) {
+            client.command("PING");
+        }
+
+        assertEquals(List.of("AUTH", "SELECT", "PING"), server.commands());
+    }
+
+    @Test
+    void errorReplyIsThrown() throws IOException {
+        try (var client = new RespClient("localhost", server.port(), "", 0, 2000)) {
+            assertThrows(RespClient.ErrorReplyException.class, () -> client.command("FAIL"));
+            assertEquals("PONG", client.command("PING"));
+        }
+    }
+
+    @Test
+    void reconnectsAfterTheServerDropsTheConnection() throws IOException {
+        try (var client = new RespClient("localhost", server.port(), "", 0, 2000)) {
+            assertEquals("PONG", client.command("PING"));
+
+            assertThrows(IOException.class, () -> client.command("QUIT"));
+            assertEquals("PONG", client.command("PING"));
+        }
+
+        assertEquals(2, server.connections());
+    }
+
+    @Test
+    void poolRunsCommandsOnSeparateConnections() throws Exception {
+        try (var pool = new RespPool("localhost", server.port(), "", 0, 2000, 2, 10000)) {
+            var threads = new ArrayList<Thread>();
+            var failures = new AtomicInteger();
+
+            for (int i = 0; i < 2; i++) {
+                var thread = new Thread(() -> {
+                    try {
+                        pool.command("SLOW");
+                    } catch (IOException e) {
+                        failures.incrementAndGet();
+                    }
+                });
+                thread.start();
+                threads.add(thread);
+            }
+
+            for (Thread thread : threads) {
+                thread.join();
+            }
+
+            assertEquals(0, failures.get());
+            assertEquals(2, server.connections());
+            assertEquals(2, server.maxConcurrent());
+        }
+    }
+
+    @Test
+    void poolBacksOffAfterAFailure() throws IOException {
+        // A closed port is not reliable, the client might get the same port and connect to itself
+        server.dropConnections(true);
+
+        try (var pool = new RespPool("localhost", server.port(), "", 0, 2000, 2, 60000)) {
+            assertTrue(pool.isAvailable());
+            assertThrows(IOException.class, () -> pool.command("PING"));
+            assertFalse(pool.isAvailable());
+
+            // The server is back, but the pool must not try again yet
+            server.dropConnections(false);
+
+            var connections = server.connections();
+
+            assertThrows(IOException.class, () -> pool.command("PING"));
+            assertEquals(connections, server.connections());
+        }
+    }
+
+    @Test
+    void poolDoesNotBackOffAfterAnErrorReply() throws IOException {
+        try (var pool = new RespPool("localhost", server.port(), "", 0, 2000, 1, 60000)) {
+            assertThrows(RespClient.ErrorReplyException.class, () -> pool.command("FAIL"));
+            assertTrue(pool.isAvailable());
+            assertEquals("PONG", pool.command("PING"));
+        }
+    }
+
+    /**
+     * Understands just enough commands to test the client, every connection is served by its own thread.
+     */
+    private static final class StubServer implements Closeable {
+
+        private final ServerSocket socket;
+        private final Map<String, String> values;
+        private final List<String> commands;
+        private final AtomicInteger connections;
+        private final AtomicInteger concurrent;
+        private final AtomicInteger maxConcurrent;
+        private volatile boolean dropping;
+
+        private StubServer() throws IOException {
+            this.socket = new ServerSocket(0);
+            this.values = new ConcurrentHashMap<>();
+            this.commands = new ArrayList<>();
+            this.connections = new AtomicInteger();
+            this.concurrent = new AtomicInteger();
+            this.maxConcurrent = new AtomicInteger();
+
+            var thread = new Thread(this::accept, "RESP Stub Server");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        private int port() {
+            return socket.getLocalPort();
+        }
+
+        /**
+         * @param dropping Whether new connections should be closed right after they are accepted
+         */
+        private void dropConnections(boolean dropping) {
+            this.dropping = dropping;
+        }
+
+        private int connections() {
+            return connections.get();
+        }
+
+        private int maxConcurrent() {
+            return maxConcurrent.get();
+        }
+
+        private List<String> commands() {
+            synchronized (commands) {
+                return List.copyOf(commands);
+            }
+        }
+
+        private void accept() {
+            while (!socket.isClosed()) {
+                try {
+                    var connection = socket.accept();
+
+                    connections.incrementAndGet();
+
+                    if (dropping) {
+                        connection.close();
+                        continue;
+                    }
+
+                    var thread = new Thread(() -> serve(connection), "RESP Stub Connection");
+                    thread.setDaemon(true);
+                    thread.start();
+                } catch (IOException e) {
+                    return;
+                }
+            }
+        }
+
+        private void serve(Socket connection) {
+            try (connection) {
+                var in = new DataInputStream(new BufferedInputStream(connection.getInputStream()));
+                var out = connection.getOutputStream();
+
+                while (true) {
+                    var args = readCommand(in);
+
+                    if (args == null) return;
+
+                    synchronized (commands) {
+                        commands.add(args.get(0));
+                    }
+
+                    var reply = switch (args.get(0)) {
+                        case "AUTH", "SELECT" -> "+OK\r\n";
+                        case "PING" -> "+PONG\r\n";
+                        case "SET" -> {
+                            values.put(args.get(1), args.get(2));
+                            yield "+OK\r\n";
+                        }
+                        case "GET" -> bulk(values.get(args.get(1)));
+                        case "DEL" -> ":" + (values.remove(args.get(1)) == null ? 0 : 1) + "\r\n";
+                        case "ECHO-ARRAY" -> {
+                            var builder = new StringBuilder("*" + (args.size() - 1) + "\r\n");
+
+                            for (String arg : args.subList(1, args.size())) {
+                                builder.append(bulk(arg));
+                            }
+
+                            yield builder.toString();
+                        }
+                        case "SLOW" -> {
+                            var current = concurrent.incrementAndGet();
+                            maxConcurrent.accumulateAndGet(current, Math::max);
+
+                            pause();
+
+                            concurrent.decrementAndGet();
+                            yield "+OK\r\n";
+                        }
+                        case "QUIT" -> null;
+                        default -> "-ERR unknown command\r\n";
+                    };
+
+                    if (reply == null) return;
+
+                    out.write(reply.getBytes(StandardCharsets.UTF_8));
+                    out.flush();
+                }
+            } catch (IOException ignored) {
+            }
+        }
+
+        private static List<String> readCommand(DataInputStream in) throws IOException {
+            var type = in.read();
+
+            if (type == -1) return null;
+            if (type != '*') throw new IOException("Expected an array");
+
+            var count = Integer.parseInt(readLine(in));
+            var args = new ArrayList<String>(count);
+
+            for (int i = 0; i < count; i++) {
+                if (in.read() != '$') throw new IOException("Expected a bulk string");
+
+                var bytes = new byte[Integer.parseInt(readLine(in))];
+
+                in.readFully(bytes);
+                readLine(in);
+
+                args.add(new String(bytes, StandardCharsets.UTF_8));
+            }
+
+            return args;
+        }
+
+        private static String readLine(DataInputStream in) throws IOException {
+            var builder = new StringBuilder();
+
+            int b;
+            while ((b = in.read()) != '\r') {
+                if (b == -1) throw new EOFException();
+                builder.append((char) b);
+            }
+
+            in.read();
+
+            return builder.toString();
+        }
+
+        private static void pause() {
+            try {
+                Thread.sleep(300);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private static String bulk(String value) {
+            if (value == null) return "$-1\r\n";
+
+            var bytes = value.getBytes(StandardCharsets.UTF_8);
+
+            return "$" + bytes.length + "\r\n" + value + "\r\n";
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+
+    }
+
+}
@@ -0,0 +1,268 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package xyz.kyngs.librelogin.common.database.embedded;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import xyz.kyngs.librelogin.api.Logger;
+import xyz.kyngs.librelogin.api.crypto.HashedPassword;
+import xyz.kyngs.librelogin.api.database.User;
+import xyz.kyngs.librelogin.common.database.AuthenticUser;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static org.junit.jupiter.api.Assertions.*;
+
+class EmbeddedUserStoreTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void usersSurviveReopening() throws IOException {
+        var path = directory.resolve("users.db");
+        var alice = user("Alice");
+        var bob = user("Bob");
+
+        var store = new EmbeddedUserStore(path, false, new RecordingLogger());
+        store.open();
+        store.put(alice);
+        store.put(bob);
+        store.delete(bob.getUuid());
+        store.close();
+
+        store = new EmbeddedUserStore(path, false, new RecordingLogger());
+        store.open();
+
+        assertEquals(1, store.size());
+        assertEquals(alice, store.get(alice.getUuid()));
+        assertEquals(alice.getHashedPassword(), store.get(alice.getUuid()).getHashedPassword());
+        assertEquals("Alice", store.getByName("alice").getLastNickname());
+        assertNull(store.get(bob.getUuid()));
+
+        store.close();
+    }
+
+    @Test
+    void truncatedRecordIsDiscardedOnReplay() throws IOException {
+        var path = directory.resolve("users.db");
+        var alice = user("Alice");
+        var bob = user("Bob");
+
+        var store = new EmbeddedUserStore(path, false, new RecordingLogger());
+        store.open();
+        store.put(alice);
+        store.put(bob);
+        store.close();
+
+        // Simulate a crash in the middle of writing the last record
+        try (var channel = FileChannel.open(path, READ, WRITE)) {
+            var last = lastRecord(channel);
+            var length = readInt(channel, last);
+
+            channel.truncate(last + 8 + length / 2);
+        }
+
+        var logger = new RecordingLogger();
+
+        store = new EmbeddedUserStore(path, false, logger);
+        store.open();
+
+        assertEquals(1, store.size());
+        assertEquals(alice, store.get(alice.getUuid()));
+        assertNull(store.get(bob.getUuid()));
+        assertEquals(1, logger.warnings.size());
+
+        // The remains of the torn record must not resurface behind a new one
+        var charlie = user("Charlie");
+        store.put(charlie);
+        store.close();
+
+        logger = new RecordingLogger();
+
+        store = new EmbeddedUserStore(path, false, logger);
+        store.open();
+
+        assertEquals(2, store.size());
+        assertEquals(alice, store.get(alice.getUuid()));
+        assertEquals(charlie, store.get(charlie.getUuid()));
+        assertTrue(logger.warnings.isEmpty());
+
+        store.close();
+    }
+
+    @Test
+    void corruptedRecordIsDiscardedOnReplay() throws IOException {
+        var path = directory.resolve("users.db");
+        var alice = user("Alice");
+        var bob = user("Bob");
+
+        var store = new EmbeddedUserStore(path, false, new RecordingLogger());
+        store.open();
+        store.put(alice);
+        store.put(bob);
+        store.close();
+
+        // Pages written out of order, the length made it to the disk, but the payload did not
+        try (var channel = FileChannel.open(path, READ, WRITE)) {
+            var position = lastRecord(channel) + 8 + 2;
+            var flipped = ByteBuffer.allocate(1);
+
+            channel.read(flipped, position);
+            flipped.put(0, (byte) ~flipped.get(0));
+            channel.write(flipped.rewind(), position);
+        }
+
+        store = new EmbeddedUserStore(path, false, new RecordingLogger());
+        store.open();
+
+        assertEquals(1, store.size());
+        assertNull(store.get(bob.getUuid()));
+
+        store.close();
+    }
+
+    @Test
+    void compactionKeepsTheLatestRecords() throws IOException {
+        var path = directory.resolve("users.db");
+        var alice = user("Alice");
+        var bob = user("Bob");
+
+        var store = new EmbeddedUserStore(path, false, new RecordingLogger());
+        store.open();
+        store.put(alice);
+
+        // Enough dead records to trigger a compaction
+        for (int i = 0; i < 20_000; i++) {
+            store.put(bob);
+        }
+
+        store.close();
+
+        assertFalse(Files.exists(directory.resolve("users.db.compact")));
+        assertTrue(Files.size(path) < 4 << 20, "The file has not been compacted");
+
+        store = new EmbeddedUserStore(path, false, new RecordingLogger());
+        store.open();
+
+        assertEquals(2, store.size());
+        assertEquals(alice, store.get(alice.getUuid()));
+        assertEquals(bob, store.get(bob.getUuid()));
+
+        store.close();
+    }
+
+    @Test
+    void pendingCompactionIsCompletedOnOpen() throws IOException {
+        var path = directory.resolve("users.db");
+        var alice = user("Alice");
+
+        var store = new EmbeddedUserStore(path, false, new RecordingLogger());
+        store.open();
+        store.put(alice);
+        store.close();
+
+        // A crash while the compacted copy was being copied over the original file
+        Files.copy(path, directory.resolve("users.db.compact-pending"));
+
+        try (var channel = FileChannel.open(path, READ, WRITE)) {
+            channel.write(ByteBuffer.allocate(64), 8);
+        }
+
+        store = new EmbeddedUserStore(path, false, new RecordingLogger());
+        store.open();
+
+        assertEquals(1, store.size());
+        assertEquals(alice, store.get(alice.getUuid()));
+        assertFalse(Files.exists(directory.resolve("users.db.compact-pending")));
+
+        store.close();
+    }
+
+    /**
+     * @return The position of the last record in the file
+     */
+    private static long lastRecord(FileChannel channel) throws IOException {
+        long position = 8;
+        long last = -1;
+
+        while (position + 8 < channel.size()) {
+            var length = readInt(channel, position);
+
+            if (length == 0) break;
+
+            last = position;
+            position += 8 + length;
+        }
+
+        assertTrue(last > 0, "The file contains no records");
+
+        return last;
+    }
+
+    private static int readInt(FileChannel channel, long position) throws IOException {
+        var buffer = ByteBuffer.allocate(4);
+
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) throw new IOException("Unexpected end of file");
+        }
+
+        return buffer.flip().getInt();
+    }
+
+    private static User user(String name) {
+        var now = new Timestamp(System.currentTimeMillis());
+
+        return new AuthenticUser(
+                UUID.randomUUID(),
+                null,
+                new HashedPassword("hash-of-" + name, "salt", "SHA-256"),
+                name,
+                now,
+                now,
+                null,
+                "127.0.0.1",
+                null,
+                null,
+                null
+        );
+    }
+
+    private static final class RecordingLogger implements Logger {
+
+        private final List<String> warnings = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void info(String message) {
+        }
+
+        @Override
+        public void warn(String message) {
+            warnings.add(message);
+        }
+
+        @Override
+        public void error(String message) {
+        }
+
+        @Override
+        public void debug(String message) {
+        }
+
+    }
+
+}
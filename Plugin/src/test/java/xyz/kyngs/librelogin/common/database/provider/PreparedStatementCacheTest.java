@@ -0,0 +1,142 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package xyz.kyngs.librelogin.common.database.provider;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PreparedStatementCacheTest {
+
+    @Test
+    void statementIsReusedAcrossLeasesOfTheSameConnection() throws SQLException {
+        var cache = new PreparedStatementCache();
+        var physical = new FakeConnection();
+
+        var first = cache.withStatement(physical.pooled(), "SELECT 1", statement -> statement);
+        var second = cache.withStatement(physical.pooled(), "SELECT 1", statement -> statement);
+
+        assertSame(first, second);
+        assertEquals(1, physical.prepared.size());
+    }
+
+    @Test
+    void statementsAreNotSharedBetweenConnections() throws SQLException {
+        var cache = new PreparedStatementCache();
+        var a = new FakeConnection();
+        var b = new FakeConnection();
+
+        cache.withStatement(a.pooled(), "SELECT 1", statement -> null);
+        cache.withStatement(b.pooled(), "SELECT 1", statement -> null);
+
+        assertEquals(1, a.prepared.size());
+        assertEquals(1, b.prepared.size());
+    }
+
+    @Test
+    void closedStatementIsPreparedAgain() throws SQLException {
+        var cache = new PreparedStatementCache();
+        var physical = new FakeConnection();
+
+        cache.withStatement(physical.pooled(), "SELECT 1", statement -> null);
+        physical.prepared.get(0).closed = true;
+        cache.withStatement(physical.pooled(), "SELECT 1", statement -> null);
+
+        assertEquals(2, physical.prepared.size());
+    }
+
+    @Test
+    void failedStatementIsClosedAndNotReused() throws SQLException {
+        var cache = new PreparedStatementCache();
+        var physical = new FakeConnection();
+
+        assertThrows(SQLException.class, () -> cache.withStatement(physical.pooled(), "SELECT 1", statement -> {
+            throw new SQLException("broken");
+        }));
+
+        cache.withStatement(physical.pooled(), "SELECT 1", statement -> null);
+
+        assertEquals(2, physical.prepared.size());
+        assertTrue(physical.prepared.get(0).closed);
+        assertFalse(physical.prepared.get(1).closed);
+    }
+
+    @Test
+    void leastRecentlyUsedStatementIsClosedWhenTheLimitIsExceeded() throws SQLException {
+        var cache = new PreparedStatementCache();
+        var physical = new FakeConnection();
+
+        for (int i = 0; i <= 64; i++) {
+            cache.withStatement(physical.pooled(), "SELECT " + i, statement -> null);
+        }
+
+        assertTrue(physical.prepared.get(0).closed);
+        assertFalse(physical.prepared.get(1).closed);
+    }
+
+    /**
+     * A physical connection, which hands out pool-like wrappers of itself.
+     */
+    private static final class FakeConnection {
+
+        private final List<FakeStatement> prepared = new ArrayList<>();
+        private final Connection connection;
+
+        private FakeConnection() {
+            connection = (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{Connection.class}, (proxy, method, args) -> switch (method.getName()) {
+                case "prepareStatement" -> {
+                    var statement = new FakeStatement();
+                    prepared.add(statement);
+                    yield statement.statement;
+                }
+                case "isClosed" -> false;
+                case "isWrapperFor" -> false;
+                case "hashCode" -> System.identityHashCode(proxy);
+                case "equals" -> proxy == args[0];
+                default -> throw new UnsupportedOperationException(method.getName());
+            });
+        }
+
+        private Connection pooled() {
+            return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{Connection.class}, (proxy, method, args) -> switch (method.getName()) {
+                case "isWrapperFor" -> true;
+                case "unwrap" -> connection;
+                default -> throw new UnsupportedOperationException(method.getName());
+            });
+        }
+
+    }
+
+    private static final class FakeStatement {
+
+        private final PreparedStatement statement;
+        private boolean closed;
+
+        private FakeStatement() {
+            statement = (PreparedStatement) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{PreparedStatement.class}, (proxy, method, args) -> switch (method.getName()) {
+                case "close" -> {
+                    closed = true;
+                    yield null;
+                }
+                case "isClosed" -> closed;
+                case "clearParameters" -> null;
+                case "hashCode" -> System.identityHashCode(proxy);
+                case "equals" -> proxy == args[0];
+                default -> throw new UnsupportedOperationException(method.getName());
+            });
+        }
+
+    }
+
+}
@@ -0,0 +1,227 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package xyz.kyngs.librelogin.common.http;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import xyz.kyngs.librelogin.common.util.Statistics;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HttpServiceTest {
+
+    private static final HttpService.HostPolicy POLICY = new HttpService.HostPolicy(Duration.ofSeconds(5), 2, 16);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void responseIsDecompressed() throws IOException {
+        var body = new ByteArrayOutputStream();
+
+        try (var gzip = new GZIPOutputStream(body)) {
+            gzip.write("hello".getBytes(StandardCharsets.UTF_8));
+        }
+
+        var service = new HttpService(new Statistics(), request -> CompletableFuture.completedFuture(
+                new HttpResponse(200, Map.of("content-encoding", "gzip"), body.toByteArray())
+        ), POLICY);
+
+        assertEquals("hello", service.get("https://example.com/").text());
+    }
+
+    @Test
+    void downloadIsDecompressedIntoTheFile() throws IOException {
+        var body = new ByteArrayOutputStream();
+
+        try (var gzip = new GZIPOutputStream(body)) {
+            gzip.write("hello".getBytes(StandardCharsets.UTF_8));
+        }
+
+        var service = new HttpService(new Statistics(), request -> CompletableFuture.completedFuture(
+                new HttpResponse(200, Map.of("content-encoding", "gzip"), body.toByteArray())
+        ), POLICY);
+        var file = directory.resolve("list.txt");
+
+        var response = service.download("https://example.com/", file);
+
+        assertEquals(0, response.body().length);
+        assertEquals("hello", Files.readString(file));
+        assertFalse(Files.exists(directory.resolve("list.txt.download")));
+    }
+
+    @Test
+    void failedDownloadDoesNotReplaceTheFile() throws IOException {
+        var service = new HttpService(new Statistics(), request -> CompletableFuture.completedFuture(
+                new HttpResponse(404, Map.of(), "not found".getBytes(StandardCharsets.UTF_8))
+        ), POLICY);
+        var file = directory.resolve("list.txt");
+
+        Files.writeString(file, "old");
+
+        assertEquals(404, service.download("https://example.com/", file).status());
+        assertEquals("old", Files.readString(file));
+        assertFalse(Files.exists(directory.resolve("list.txt.download")));
+    }
+
+    @Test
+    void requestsAreSentWithHeaders() throws IOException {
+        var requests = new CopyOnWriteArrayList<HttpRequest>();
+        var service = new HttpService(new Statistics(), request -> {
+            requests.add(request);
+            return CompletableFuture.completedFuture(new HttpResponse(200, Map.of(), new byte[0]));
+        }, POLICY);
+
+        service.post("https://example.com/path", "application/json", "[]".getBytes(StandardCharsets.UTF_8));
+
+        var request = requests.get(0);
+
+        assertEquals("POST", request.method());
+        assertEquals("/path", request.uri().getPath());
+        assertEquals("application/json", request.headers().get("Content-Type"));
+        assertEquals("gzip", request.headers().get("Accept-Encoding"));
+    }
+
+    @Test
+    void failureIsThrownAsIOException() {
+        var statistics = new Statistics();
+        var service = new HttpService(statistics, request -> CompletableFuture.failedFuture(new IOException("refused")), POLICY);
+
+        var e = assertThrows(IOException.class, () -> service.get("https://example.com/"));
+
+        assertEquals("refused", e.getMessage());
+        assertEquals(1, statistics.get("http.example.com.failures"));
+    }
+
+    @Test
+    void concurrentRequestsAreLimitedPerHost() {
+        var transport = new PendingTransport();
+        var service = new HttpService(new Statistics(), transport, POLICY);
+
+        for (int i = 0; i < 5; i++) {
+            service.getAsync("https://example.com/" + i);
+        }
+
+        service.getAsync("https://other.com/");
+
+        assertEquals(3, transport.pending.size());
+
+        transport.completeFirst();
+
+        assertEquals(3, transport.pending.size());
+        assertEquals("/2", transport.pending.get(2).request().uri().getPath());
+    }
+
+    @Test
+    void timeoutStartsAtSubmit() throws Exception {
+        var transport = new PendingTransport();
+        var policy = new HttpService.HostPolicy(Duration.ofMillis(100), 1, 16);
+        var service = new HttpService(new Statistics(), transport, policy);
+
+        service.getAsync("https://example.com/first");
+
+        var queued = service.getAsync("https://example.com/queued");
+
+        var e = assertThrows(Exception.class, () -> queued.get(1, TimeUnit.SECONDS));
+
+        assertInstanceOf(TimeoutException.class, e.getCause());
+
+        // Nobody is waiting for the queued request anymore, so it must never be sent
+        transport.completeFirst();
+
+        assertTrue(transport.pending.isEmpty());
+        assertEquals(1, transport.sent);
+    }
+
+    @Test
+    void fullQueueRejectsImmediately() {
+        var transport = new PendingTransport();
+        var policy = new HttpService.HostPolicy(Duration.ofSeconds(5), 1, 2);
+        var service = new HttpService(new Statistics(), transport, policy);
+
+        var futures = new ArrayList<CompletableFuture<HttpResponse>>();
+
+        for (int i = 0; i < 4; i++) {
+            futures.add(service.getAsync("https://example.com/" + i));
+        }
+
+        assertFalse(futures.get(2).isDone());
+        assertTrue(futures.get(3).isCompletedExceptionally());
+    }
+
+    @Test
+    void synchronousTransportDoesNotRecurse() {
+        var policy = new HttpService.HostPolicy(Duration.ofSeconds(5), 1, 100_000);
+        var held = new CompletableFuture<HttpResponse>();
+        var first = new boolean[]{true};
+        var service = new HttpService(new Statistics(), request -> {
+            if (first[0]) {
+                first[0] = false;
+                return held;
+            }
+            return CompletableFuture.completedFuture(new HttpResponse(200, Map.of(), new byte[0]));
+        }, policy);
+
+        var futures = new ArrayList<CompletableFuture<HttpResponse>>();
+
+        futures.add(service.getAsync("https://example.com/"));
+
+        for (int i = 0; i < 50_000; i++) {
+            futures.add(service.getAsync("https://example.com/"));
+        }
+
+        // Completes all the queued requests on this thread
+        held.complete(new HttpResponse(200, Map.of(), new byte[0]));
+
+        for (CompletableFuture<HttpResponse> future : futures) {
+            assertEquals(200, future.join().status());
+        }
+    }
+
+    /**
+     * Never responds on its own, the test completes the requests.
+     */
+    private static final class PendingTransport implements HttpTransport {
+
+        private final List<Pending> pending = new CopyOnWriteArrayList<>();
+        private int sent;
+
+        @Override
+        public CompletableFuture<HttpResponse> send(HttpRequest request) {
+            var future = new CompletableFuture<HttpResponse>();
+
+            sent++;
+            pending.add(new Pending(request, future));
+
+            return future;
+        }
+
+        private void completeFirst() {
+            pending.remove(0).future().complete(new HttpResponse(200, Map.of(), new byte[0]));
+        }
+
+    }
+
+    private record Pending(HttpRequest request, CompletableFuture<HttpResponse> future) {
+    }
+
+}